@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Sink that hands output to a background thread. The calling thread only
+ * appends text to a local batch; full batches are passed through a bounded
+ * queue to a writer thread that encodes them and performs the actual
+ * writes, so character encoding and system calls leave the database
+ * thread. A full queue makes the caller wait.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class AsyncSink implements OutputSink {
+
+    private static final int BATCH_SIZE = 1 << 13;
+    private static final int QUEUE_BATCHES = 64;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final Object STOP = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Writer writer;
+    private final Thread writerThread;
+    private final StringBuilder pending;
+    private volatile IOException failure;
+
+    /**
+     * Creates a sink writing to the given stream from a background thread.
+     *
+     * @param stream The stream to write to, usually System.out.
+     */
+    public AsyncSink(OutputStream stream) {
+        this(new OutputStreamWriter(stream, BufferedSink.consoleCharset()));
+    }
+
+    /**
+     * Creates a sink writing to the given writer from a background thread.
+     *
+     * @param target The writer to write to.
+     */
+    public AsyncSink(Writer target) {
+        this.writer = target;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        this.pending = new StringBuilder(BATCH_SIZE * 2);
+        this.writerThread = new Thread(this::drain, "output-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void print(String text) {
+        pending.append(text);
+        if (pending.length() >= BATCH_SIZE) {
+            handOff(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    @Override
+    public void print(char c) {
+        pending.append(c);
+        if (pending.length() >= BATCH_SIZE) {
+            handOff(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    @Override
+    public void print(char[] chars, int offset, int length) {
+        pending.append(chars, offset, length);
+        if (pending.length() >= BATCH_SIZE) {
+            handOff(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    @Override
+    public void println(String line) {
+        pending.append(line).append(LINE_SEPARATOR);
+        if (pending.length() >= BATCH_SIZE) {
+            handOff(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    /**
+     * Waits until everything printed so far has been written.
+     */
+    @Override
+    public void flush() {
+        if (pending.length() > 0) {
+            handOff(pending.toString());
+            pending.setLength(0);
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        handOff(written);
+        try {
+            written.await();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Flushes the sink and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        flush();
+        handOff(STOP);
+        try {
+            writerThread.join();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handOff(Object item) {
+        checkFailure();
+        try {
+            queue.put(item);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Body of the writer thread.
+     */
+    private void drain() {
+        try {
+            Object item = queue.take();
+            while (item != STOP) {
+                if (item instanceof CountDownLatch) {
+                    flushWriter();
+                    ((CountDownLatch) item).countDown();
+                }
+                else if (failure == null) {
+                    writeBatch((String) item);
+                }
+                item = queue.take();
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBatch(String batch) {
+        try {
+            writer.write(batch);
+        }
+        catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    private void flushWriter() {
+        try {
+            writer.flush();
+        }
+        catch (IOException ex) {
+            failure = ex;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.StringWriter;
+import student.TestCase;
+
+/**
+ * Test class for AsyncSink
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class AsyncSinkTest extends TestCase {
+
+    /**
+     * Tests that every line arrives in order once the sink is flushed,
+     * including batches handed off before the flush.
+     */
+    public void testOrderAfterFlush() {
+        StringWriter target = new StringWriter();
+        AsyncSink sink = new AsyncSink(target);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sink.println("line " + i);
+            expected.append("line ").append(i)
+                .append(System.lineSeparator());
+        }
+        sink.print("tail");
+        expected.append("tail");
+        sink.flush();
+        assertEquals(expected.toString(), target.toString());
+        sink.close();
+    }
+}
@@ -0,0 +1,448 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Micro-benchmarks for the data structures behind SeminarDB, run from the
+ * command line. Each workload is timed several times after a warm-up and
+ * the fastest run is reported, in nanoseconds per operation.
+ *
+ * Usage: java Benchmark tables [entries] [load-factor]
+ *        java Benchmark concurrent [entries] [operations]
+ *        java Benchmark allocator [operations]
+ *        java Benchmark fragmentation command-file [memory-size]
+ *
+ * tables compares the hash tables on IDs with a stride of eight, like
+ * the blocks of seminars a deployment hands out: hit looks up present
+ * IDs, miss looks up absent ones, and churn deletes a present ID and
+ * inserts a new one, keeping the number of entries steady.
+ *
+ * concurrent runs lookups mixed with 5% inserts and 5% deletes on 1, 2,
+ * 4... threads at once, on ConcurrentTable and on a HashTable behind a
+ * read-write lock, and reports the total throughput in operations per
+ * microsecond, so it should grow with the threads up to the number of
+ * processors.
+ *
+ * allocator has each thread keep 64 records of mixed sizes, removing one
+ * and inserting a new one at random, on ConcurrentBuddyStorage with and
+ * without magazines and on a MemoryManager, an InPoolBuddyStorage and a
+ * TlsfStorage behind one lock, and reports operations per microsecond
+ * the same way.
+ *
+ * fragmentation runs a command file on every engine in StorageRegistry
+ * and reports, for the records left at the end, how many bytes of the
+ * engine's space they take up and what share of that is not record data.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class Benchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int STRIDE = 8;
+    private static final long SEED = 42;
+
+    // Keeps results alive so the timed loops are not optimized away
+    private static long sink;
+
+    /**
+     * Runs a benchmark named on the command line.
+     *
+     * @param args The benchmark name and its parameters.
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("tables")) {
+            tables(args.length > 1 ? Integer.parseInt(args[1]) : 100000,
+                args.length > 2
+                    ? Double.parseDouble(args[2])
+                    : HashTable.DEFAULT_LOAD_FACTOR);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("concurrent")) {
+            concurrent(args.length > 1 ? Integer.parseInt(args[1]) : 100000,
+                args.length > 2 ? Integer.parseInt(args[2]) : 1000000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("allocator")) {
+            allocator(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("fragmentation")) {
+            fragmentation(new File(args[1]),
+                args.length > 2 ? Integer.parseInt(args[2]) : 1024);
+            return;
+        }
+        System.out.println(
+            "Usage: java Benchmark tables [entries] [load-factor]\n"
+            + "       java Benchmark concurrent [entries] [operations]\n"
+            + "       java Benchmark allocator [operations]\n"
+            + "       java Benchmark fragmentation command-file"
+            + " [memory-size]");
+    }
+
+    /**
+     * Times hit, miss and churn workloads on every probing scheme and
+     * hash function.
+     *
+     * @param entries Number of IDs in each table.
+     * @param loadFactor Load factor of the tables.
+     */
+    public static void tables(int entries, double loadFactor) {
+        System.out.println(entries + " entries, load factor " + loadFactor);
+        for (String scheme : new String[] { "double", "robinhood" }) {
+            for (HashFunction function : HashFunction.values()) {
+                HashIndex index = scheme.equals("double")
+                    ? new HashTable(16, loadFactor, function,
+                        new CountingSink())
+                    : new RobinHoodTable(16, loadFactor, function,
+                        new CountingSink());
+                runTable(scheme + "/" + function.name().toLowerCase(),
+                    index, entries);
+            }
+        }
+        // Cuckoo tables cannot be loaded past half their slots
+        runTable("cuckoo", new CuckooTable(16, Math.min(loadFactor,
+            CuckooTable.DEFAULT_LOAD_FACTOR), new CountingSink()), entries);
+    }
+
+    /**
+     * Times a mixed workload on the lock-free and the locked table with
+     * more and more threads.
+     *
+     * @param entries Number of IDs each table starts with.
+     * @param operations Operations done by each thread.
+     */
+    public static void concurrent(int entries, int operations) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println(entries + " entries, " + operations
+            + " operations per thread, " + processors + " processors");
+        for (int threads = 1; threads <= Math.max(4, processors);
+            threads *= 2) {
+            HashIndex lockFree = new ConcurrentTable(16,
+                HashTable.DEFAULT_LOAD_FACTOR, HashFunction.MURMUR3,
+                new CountingSink());
+            HashIndex locked = new HashTable(16,
+                HashTable.DEFAULT_LOAD_FACTOR, HashFunction.MURMUR3,
+                new CountingSink());
+            ReadWriteLock lock = new ReentrantReadWriteLock();
+            fill(lockFree, entries);
+            fill(locked, entries);
+            System.out.println(threads + " threads: lock-free "
+                + throughput(threads, operations, worker -> mixed(lockFree,
+                    null, entries, operations, SEED + worker))
+                + " ops/us, read-write lock "
+                + throughput(threads, operations, worker -> mixed(locked,
+                    lock, entries, operations, SEED + worker))
+                + " ops/us");
+        }
+    }
+
+    /**
+     * Times inserts and removes of mixed sizes on the per-order locked
+     * buddy allocator, with and without magazines, and on the two buddy
+     * allocators and the TLSF allocator behind a single lock, with more
+     * and more threads.
+     *
+     * @param operations Operations done by each thread.
+     */
+    public static void allocator(int operations) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println(operations + " operations per thread, "
+            + processors + " processors");
+        for (int threads = 1; threads <= Math.max(4, processors);
+            threads *= 2) {
+            Storage perOrder =
+                new ConcurrentBuddyStorage(1 << 16, new CountingSink());
+            Storage cached = new ConcurrentBuddyStorage(1 << 16,
+                ConcurrentBuddyStorage.DEFAULT_MAGAZINE_SIZE,
+                new CountingSink());
+            Storage single = new MemoryManager(1 << 16, new CountingSink());
+            Storage inPool =
+                new InPoolBuddyStorage(1 << 16, new CountingSink());
+            Storage tlsf = new TlsfStorage(1 << 16, new CountingSink());
+            Lock lock = new ReentrantLock();
+            System.out.println(threads + " threads: per-order locks "
+                + throughput(threads, operations, worker -> allocations(
+                    perOrder, null, operations, SEED + worker))
+                + " ops/us, magazines "
+                + throughput(threads, operations, worker -> allocations(
+                    cached, null, operations, SEED + worker))
+                + " ops/us, one lock "
+                + throughput(threads, operations, worker -> allocations(
+                    single, lock, operations, SEED + worker))
+                + " ops/us, in-pool lists with one lock "
+                + throughput(threads, operations, worker -> allocations(
+                    inPool, lock, operations, SEED + worker))
+                + " ops/us, TLSF with one lock "
+                + throughput(threads, operations, worker -> allocations(
+                    tlsf, lock, operations, SEED + worker))
+                + " ops/us");
+        }
+    }
+
+    /**
+     * Runs a command file on every registered storage engine and prints
+     * how much of its space each holds for the records left.
+     *
+     * @param commands The command file.
+     * @param memorySize Initial size of the engines.
+     */
+    public static void fragmentation(File commands, int memorySize) {
+        for (String kind : StorageRegistry.names()) {
+            OutputSink output = new CountingSink();
+            Storage storage = StorageRegistry.create(kind, memorySize,
+                new Options(), output);
+            HashIndex index = new HashTable(1024, output);
+            SeminarDB db = new SeminarDB(storage, index, output);
+            try (CommandParser parser = new CommandParser(
+                new Scanner(commands))) {
+                Command slot = new Command();
+                while (parser.next(slot)) {
+                    slot.applyTo(db);
+                }
+            }
+            catch (FileNotFoundException e) {
+                System.out.println(e.toString());
+                return;
+            }
+            long[] records = new long[2];
+            index.forEachId(id -> {
+                records[0]++;
+                records[1] += index.retrieve(id).getDataLength();
+            });
+            long allocated = storage.capacity() - storage.freeBytes();
+            System.out.println(kind + ": " + records[0] + " records of "
+                + records[1] + " bytes in " + allocated
+                + " allocated bytes, "
+                + Math.round(1000.0 * (allocated - records[1])
+                    / Math.max(1, allocated)) / 10.0
+                + "% fragmentation, capacity " + storage.capacity()
+                + " bytes");
+        }
+    }
+
+    private static void runTable(String name, HashIndex index,
+        int entries) {
+        int[] ids = fill(index, entries);
+        System.out.println(name + ": hit "
+            + time(() -> lookUp(index, ids, 0), entries) + " ns, miss "
+            + time(() -> lookUp(index, ids, 3), entries) + " ns, churn "
+            + time(() -> churn(index, ids), entries) + " ns");
+    }
+
+    private static int[] fill(HashIndex index, int entries) {
+        int[] ids = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            ids[i] = i * STRIDE;
+            index.addEntry(ids[i], new Handle(i, 1));
+        }
+        // Look IDs up in random order, not in the order they went in
+        Random random = new Random(SEED);
+        for (int i = entries - 1; i > 0; i--) {
+            int other = random.nextInt(i + 1);
+            int swap = ids[i];
+            ids[i] = ids[other];
+            ids[other] = swap;
+        }
+        return ids;
+    }
+
+    private static void lookUp(HashIndex index, int[] ids, int offset) {
+        for (int id : ids) {
+            if (index.retrieve(id + offset) != null) {
+                sink++;
+            }
+        }
+    }
+
+    /**
+     * Replaces every ID by one not used before, in random order. The IDs
+     * array is updated so later runs find the table's current IDs.
+     */
+    private static void churn(HashIndex index, int[] ids) {
+        int next = maxId(ids) + STRIDE;
+        for (int i = 0; i < ids.length; i++) {
+            index.deleteEntry(ids[i]);
+            index.addEntry(next, new Handle(i, 1));
+            ids[i] = next;
+            next += STRIDE;
+        }
+    }
+
+    private static int maxId(int[] ids) {
+        int max = 0;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        return max;
+    }
+
+    /**
+     * Runs a workload on several threads once to warm up and ROUNDS more
+     * times, returning the best throughput in operations per microsecond.
+     */
+    private static double throughput(int threads, int operations,
+        IntToLongFunction workload) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long elapsed = runThreads(threads, workload);
+            if (round > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return Math.round(10000.0 * operations * threads / best) / 10.0;
+    }
+
+    /**
+     * Starts the threads together, passing each its number, and waits for
+     * them all to finish.
+     *
+     * @return The time taken in nanoseconds.
+     */
+    private static long runThreads(int threads, IntToLongFunction workload) {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] results = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                results[worker] = workload.applyAsLong(worker);
+            });
+            workers[i].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.nanoTime() - begin;
+        for (long result : results) {
+            sink += result;
+        }
+        return elapsed;
+    }
+
+    /**
+     * Looks up, adds and deletes random IDs out of twice as many as the
+     * index starts with, so about half of the lookups hit.
+     *
+     * @return The number of lookups that hit.
+     */
+    private static long mixed(HashIndex index, ReadWriteLock lock,
+        int entries, int operations, long seed) {
+        Random random = new Random(seed);
+        Handle handle = new Handle(0, 1);
+        long hits = 0;
+        for (int i = 0; i < operations; i++) {
+            int id = random.nextInt(2 * entries) * STRIDE;
+            int choice = random.nextInt(20);
+            if (choice < 2) {
+                if (lock != null) {
+                    lock.writeLock().lock();
+                }
+                try {
+                    if (choice == 0) {
+                        index.addEntry(id, handle);
+                    }
+                    else {
+                        index.deleteEntry(id);
+                    }
+                }
+                finally {
+                    if (lock != null) {
+                        lock.writeLock().unlock();
+                    }
+                }
+                continue;
+            }
+            if (lock != null) {
+                lock.readLock().lock();
+            }
+            try {
+                if (index.retrieve(id) != null) {
+                    hits++;
+                }
+            }
+            finally {
+                if (lock != null) {
+                    lock.readLock().unlock();
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Keeps 64 records, replacing a random one each time, and removes
+     * them at the end. Like seminars, most records are 24 to 96 bytes and
+     * one in eight is 192 or 384. The lock is left out when it is null.
+     *
+     * @return The sum of the record offsets.
+     */
+    private static long allocations(Storage storage, Lock lock,
+        int operations, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[384];
+        Handle[] records = new Handle[64];
+        long offsets = 0;
+        for (int i = 0; i < operations + records.length; i++) {
+            int slot = i < operations ? random.nextInt(records.length)
+                : i - operations;
+            int length = random.nextInt(8) == 0
+                ? 192 << random.nextInt(2)
+                : 24 << random.nextInt(3);
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                if (records[slot] != null) {
+                    storage.remove(records[slot]);
+                    records[slot] = null;
+                }
+                if (i < operations) {
+                    records[slot] = storage.insert(data, 0, length);
+                    offsets += records[slot].getStartPosition();
+                }
+            }
+            finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Runs a workload once to warm up and ROUNDS more times, returning the
+     * fastest time per operation.
+     */
+    private static double time(Runnable workload, int operations) {
+        workload.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            workload.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.round(best * 10.0 / operations) / 10.0;
+    }
+}
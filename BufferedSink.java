@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Sink that collects output in a large unsynchronized buffer and writes it
+ * out in big blocks, instead of paying for a synchronized and often
+ * autoflushing System.out call on every line. Text is encoded with the
+ * same charset System.out uses, so the bytes written are identical.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class BufferedSink implements OutputSink {
+
+    /** Default buffer size in characters. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private final char[] buffer;
+    private int used;
+
+    /**
+     * Creates a sink writing to the given stream with the default buffer.
+     *
+     * @param stream The stream to write to, usually System.out.
+     */
+    public BufferedSink(OutputStream stream) {
+        this(new OutputStreamWriter(stream, consoleCharset()),
+            DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a sink writing to the given writer.
+     *
+     * @param target The writer to write to.
+     * @param bufferSize Size of the buffer in characters.
+     */
+    public BufferedSink(Writer target, int bufferSize) {
+        this.writer = target;
+        this.buffer = new char[bufferSize];
+        this.used = 0;
+    }
+
+    /**
+     * Finds the charset System.out encodes with, so buffered output matches
+     * it byte for byte.
+     *
+     * @return The console charset.
+     */
+    static Charset consoleCharset() {
+        String name = System.getProperty("sun.stdout.encoding");
+        if (name != null && Charset.isSupported(name)) {
+            return Charset.forName(name);
+        }
+        return Charset.defaultCharset();
+    }
+
+    @Override
+    public void print(String text) {
+        int copied = 0;
+        while (copied < text.length()) {
+            if (used == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(text.length() - copied,
+                buffer.length - used);
+            text.getChars(copied, copied + chunk, buffer, used);
+            used += chunk;
+            copied += chunk;
+        }
+    }
+
+    @Override
+    public void print(char c) {
+        if (used == buffer.length) {
+            drain();
+        }
+        buffer[used++] = c;
+    }
+
+    @Override
+    public void print(char[] chars, int offset, int length) {
+        int copied = 0;
+        while (copied < length) {
+            if (used == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(length - copied, buffer.length - used);
+            System.arraycopy(chars, offset + copied, buffer, used, chunk);
+            used += chunk;
+            copied += chunk;
+        }
+    }
+
+    @Override
+    public void println(String line) {
+        print(line);
+        print(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void flush() {
+        drain();
+        try {
+            writer.flush();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Hands the buffered characters to the writer in one call.
+     */
+    private void drain() {
+        if (used == 0) {
+            return;
+        }
+        try {
+            writer.write(buffer, 0, used);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        used = 0;
+    }
+}
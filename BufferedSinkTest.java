@@ -0,0 +1,42 @@
+import java.io.StringWriter;
+import student.TestCase;
+
+/**
+ * Test class for BufferedSink
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class BufferedSinkTest extends TestCase {
+
+    /**
+     * Tests that nothing reaches the writer until the sink is flushed.
+     */
+    public void testBuffersUntilFlush() {
+        StringWriter target = new StringWriter();
+        BufferedSink sink = new BufferedSink(target, 1024);
+        sink.println("Hashtable:");
+        sink.print("1: 1");
+        assertEquals("", target.toString());
+        sink.close();
+        assertEquals("Hashtable:" + System.lineSeparator() + "1: 1",
+            target.toString());
+    }
+
+    /**
+     * Tests that a database run through the sink prints the same text
+     * as a run straight to the console.
+     */
+    public void testMatchesConsoleOutput() {
+        Seminar seminar = new Seminar(1, "Title", "2405231000", 75,
+            (short) 15, (short) 33, 125, new String[] { "A", "B" }, "Desc");
+        new SeminarDB(64, 4).addSeminar(1, seminar);
+        String console = systemOut().getHistory();
+        systemOut().clearHistory();
+
+        OutputSink sink = new BufferedSink(System.out);
+        new SeminarDB(64, 4, sink).addSeminar(1, seminar);
+        sink.close();
+        assertEquals(console, systemOut().getHistory());
+    }
+}
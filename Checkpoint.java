@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Incremental checkpoints layered on top of a base Snapshot. Each
+ * checkpoint appends one delta to the file "{base}.inc" holding only what
+ * changed since the previous snapshot or checkpoint: the pool pages
+ * written since then, the hash table slots that changed, and the (small)
+ * free lists in full. Checkpoint cost therefore follows the write rate
+ * rather than the pool size.
+ *
+ * Loading applies the deltas to the base in order. compact folds them
+ * into a new base snapshot and removes the delta file.
+ *
+ * Delta layout: magic, body length, then the body (log position, pool
+ * length, free list section length and section, dirty slot section length
+ * and section, page count and each page as its number followed by its
+ * bytes) and a CRC32 of the body. A torn delta at the end is dropped.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class Checkpoint {
+
+    /** First four bytes of every delta ("INC1"). */
+    public static final int MAGIC = 0x494E4331;
+
+    private Checkpoint() {
+        // Static helpers only
+    }
+
+    /**
+     * Gets the delta file that belongs to a base snapshot.
+     *
+     * @param base The base snapshot.
+     * @return The delta file.
+     */
+    public static File deltaFile(File base) {
+        return new File(base.getPath() + ".inc");
+    }
+
+    /**
+     * Appends a delta with everything marked dirty since the last
+     * snapshot or checkpoint, forces it to disk and clears the marks.
+     *
+     * @param base The base snapshot the delta belongs to.
+     * @param logPosition Write-ahead log position the delta covers.
+     * @param memoryManager The memory pool.
+     * @param hashTable The hash table.
+     * @return Number of bytes appended.
+     * @throws IOException if the delta cannot be written.
+     */
+    public static long append(File base, long logPosition,
+        MemoryManager memoryManager, HashTable hashTable)
+        throws IOException {
+        byte[] pool = memoryManager.getPool();
+        ByteBuffer freeLists = memoryManager.exportFreeLists();
+        ByteBuffer slots = hashTable.exportDirtyEntries();
+        BitSet pages = memoryManager.getDirtyPages();
+        int pageSize = MemoryManager.PAGE_SIZE;
+
+        List<ByteBuffer> body = new ArrayList<>();
+        ByteBuffer fixed = ByteBuffer.allocate(8 + 4 + 4);
+        fixed.putLong(logPosition).putInt(pool.length)
+            .putInt(freeLists.remaining()).flip();
+        body.add(fixed);
+        body.add(freeLists);
+        body.add(ByteBuffer.allocate(4).putInt(slots.remaining()).flip());
+        body.add(slots);
+
+        int pageCount = 0;
+        ByteBuffer pageNumbers = ByteBuffer.allocate(
+            4 + 4 * pages.cardinality());
+        pageNumbers.position(4);
+        List<ByteBuffer> pageData = new ArrayList<>();
+        for (int page = pages.nextSetBit(0); page >= 0
+            && page * (long) pageSize < pool.length;
+            page = pages.nextSetBit(page + 1)) {
+            int start = page * pageSize;
+            pageNumbers.putInt(page);
+            pageData.add(ByteBuffer.wrap(pool, start,
+                Math.min(pageSize, pool.length - start)));
+            pageCount++;
+        }
+        pageNumbers.putInt(0, pageCount).flip();
+        body.add(pageNumbers);
+        body.addAll(pageData);
+
+        CRC32 checksum = new CRC32();
+        long bodyLength = 0;
+        for (ByteBuffer part : body) {
+            bodyLength += part.remaining();
+            checksum.update(part.duplicate());
+        }
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(MAGIC).putInt((int) bodyLength).flip();
+        ByteBuffer trailer = ByteBuffer.allocate(4);
+        trailer.putInt((int) checksum.getValue()).flip();
+
+        List<ByteBuffer> record = new ArrayList<>();
+        record.add(header);
+        record.addAll(body);
+        record.add(trailer);
+        ByteBuffer[] gather = record.toArray(new ByteBuffer[0]);
+        try (FileChannel channel = FileChannel.open(deltaFile(base).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)) {
+            while (trailer.hasRemaining()) {
+                channel.write(gather);
+            }
+            channel.force(false);
+        }
+        memoryManager.clearDirty();
+        hashTable.clearDirty();
+        return bodyLength + 12;
+    }
+
+    /**
+     * Applies every intact delta of a base snapshot to the restored
+     * structures, cutting off a torn delta at the end.
+     *
+     * @param base The base snapshot.
+     * @param snapshot The loaded base snapshot.
+     * @return Write-ahead log position covered by the last delta, or the
+     *         snapshot's own position if there are no deltas.
+     * @throws IOException if the delta file cannot be read.
+     */
+    public static long applyAll(File base, Snapshot snapshot)
+        throws IOException {
+        long logPosition = snapshot.getLogPosition();
+        File deltas = deltaFile(base);
+        if (!deltas.exists()) {
+            return logPosition;
+        }
+        MemoryManager memoryManager = snapshot.getMemoryManager();
+        HashTable hashTable = snapshot.getHashTable();
+        try (FileChannel channel = FileChannel.open(deltas.toPath(),
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long good = 0;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (good + 12 <= size) {
+                header.clear();
+                channel.read(header, good);
+                header.flip();
+                int bodyLength = header.getInt(4);
+                if (header.getInt(0) != MAGIC || bodyLength < 0
+                    || good + 12 + bodyLength > size) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(bodyLength + 4);
+                while (body.hasRemaining()) {
+                    channel.read(body, good + 8 + body.position());
+                }
+                body.flip();
+                CRC32 checksum = new CRC32();
+                checksum.update(body.array(), 0, bodyLength);
+                if (body.getInt(bodyLength) != (int) checksum.getValue()) {
+                    break;
+                }
+                logPosition = apply(body, memoryManager, hashTable);
+                good += 12 + bodyLength;
+            }
+            channel.truncate(good);
+        }
+        memoryManager.clearDirty();
+        hashTable.clearDirty();
+        return logPosition;
+    }
+
+    private static long apply(ByteBuffer body, MemoryManager memoryManager,
+        HashTable hashTable) {
+        long logPosition = body.getLong();
+        int poolLength = body.getInt();
+        ByteBuffer freeLists = slice(body, body.getInt());
+        memoryManager.applyCheckpoint(poolLength, freeLists);
+        hashTable.applyDirtyEntries(slice(body, body.getInt()));
+
+        byte[] pool = memoryManager.getPool();
+        int pageSize = MemoryManager.PAGE_SIZE;
+        int pageCount = body.getInt();
+        int[] pageNumbers = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageNumbers[i] = body.getInt();
+        }
+        for (int page : pageNumbers) {
+            int start = page * pageSize;
+            body.get(pool, start, Math.min(pageSize, pool.length - start));
+        }
+        return logPosition;
+    }
+
+    private static ByteBuffer slice(ByteBuffer body, int length) {
+        ByteBuffer part = body.slice();
+        part.limit(length);
+        body.position(body.position() + length);
+        return part;
+    }
+
+    /**
+     * Folds every delta into the base snapshot, writing a new base and
+     * removing the delta file.
+     *
+     * @param base The base snapshot.
+     * @throws IOException if the files cannot be read or written.
+     */
+    public static void compact(File base) throws IOException {
+        Snapshot snapshot = Snapshot.load(base, new CountingSink());
+        long logPosition = applyAll(base, snapshot);
+        Snapshot.write(base, logPosition, snapshot.getMemoryManager(),
+            snapshot.getHashTable());
+        deltaFile(base).delete();
+    }
+
+    /**
+     * Compacts a snapshot from the command line.
+     *
+     * @param args The base snapshot file.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java Checkpoint {snapshot-file}");
+            return;
+        }
+        try {
+            compact(new File(args[0]));
+        }
+        catch (IOException ex) {
+            System.out.println(ex);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+import student.TestCase;
+
+/**
+ * Test class for Checkpoint
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CheckpointTest extends TestCase {
+
+    // Large enough that a few deltas stay well under half the base
+    private static final int POOL_SIZE = 65536;
+
+    private File baseFile;
+    private Seminar seminar;
+
+    /**
+     * Sets up a snapshot file name and a seminar before each test.
+     */
+    @Override
+    public void setUp() {
+        baseFile = new File("test.ckpt");
+        seminar = new Seminar(1, "Title", "2405231000", 75, (short) 15,
+            (short) 33, 125, new String[] { "A", "B" }, "Desc");
+    }
+
+    /**
+     * Removes the snapshot and its deltas after each test.
+     */
+    @Override
+    public void tearDown() {
+        baseFile.delete();
+        Checkpoint.deltaFile(baseFile).delete();
+    }
+
+    private String describe(SeminarDB db) {
+        systemOut().clearHistory();
+        db.showHashTableContents();
+        db.listFreeBlocks();
+        db.findSeminar(3);
+        String state = systemOut().getHistory();
+        systemOut().clearHistory();
+        return state;
+    }
+
+    /**
+     * Tests that the first checkpoint writes a full snapshot and later
+     * ones only append deltas that restore to the same state.
+     * 
+     * @throws Exception if the checkpoint cannot be used
+     */
+    public void testDeltasRestore() throws Exception {
+        SeminarDB original = new SeminarDB(POOL_SIZE, 4);
+        original.addSeminar(1, seminar);
+        systemOut().clearHistory();
+        assertTrue(original.saveCheckpoint(baseFile.getPath()));
+        assertFuzzyEquals("Checkpoint saved to test.ckpt (full)",
+            systemOut().getHistory());
+        assertFalse(Checkpoint.deltaFile(baseFile).exists());
+        long baseLength = baseFile.length();
+
+        original.addSeminar(2, seminar);
+        original.addSeminar(3, seminar);
+        assertTrue(original.saveCheckpoint(baseFile.getPath()));
+        original.eraseSeminar(2);
+        assertTrue(original.saveCheckpoint(baseFile.getPath()));
+        assertEquals(baseLength, baseFile.length());
+        assertTrue(Checkpoint.deltaFile(baseFile).length() > 0);
+        String expected = describe(original);
+
+        SeminarDB restored = SeminarDB.fromSnapshot(
+            baseFile, new ConsoleSink());
+        assertEquals(expected, describe(restored));
+        assertFalse(restored.findSeminar(2));
+    }
+
+    /**
+     * Tests that a torn delta at the end is dropped and cut off.
+     * 
+     * @throws Exception if the checkpoint cannot be used
+     */
+    public void testTornDelta() throws Exception {
+        SeminarDB original = new SeminarDB(POOL_SIZE, 4);
+        original.addSeminar(1, seminar);
+        original.saveSnapshot(baseFile.getPath());
+        original.addSeminar(3, seminar);
+        original.saveCheckpoint(baseFile.getPath());
+        String expected = describe(original);
+        File deltas = Checkpoint.deltaFile(baseFile);
+        long intact = deltas.length();
+
+        original.addSeminar(4, seminar);
+        original.saveCheckpoint(baseFile.getPath());
+        try (RandomAccessFile file = new RandomAccessFile(deltas, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        SeminarDB restored = SeminarDB.fromSnapshot(
+            baseFile, new ConsoleSink());
+        assertEquals(expected, describe(restored));
+        assertEquals(intact, deltas.length());
+    }
+
+    /**
+     * Tests that compacting folds the deltas into the base.
+     * 
+     * @throws Exception if the checkpoint cannot be used
+     */
+    public void testCompact() throws Exception {
+        SeminarDB original = new SeminarDB(POOL_SIZE, 4);
+        original.addSeminar(1, seminar);
+        original.saveSnapshot(baseFile.getPath());
+        original.addSeminar(3, seminar);
+        original.saveCheckpoint(baseFile.getPath());
+        String expected = describe(original);
+
+        Checkpoint.compact(baseFile);
+        assertFalse(Checkpoint.deltaFile(baseFile).exists());
+        SeminarDB restored = SeminarDB.fromSnapshot(
+            baseFile, new ConsoleSink());
+        assertEquals(expected, describe(restored));
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * A reusable slot holding a single parsed command from a command file.
+ * The parser fills a slot in place and applyTo runs it against a
+ * SeminarDB, so the same slot can be recycled for every command.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class Command {
+
+    /** Opcode for a token that is not a recognized command. */
+    public static final int INVALID = 0;
+    /** Opcode for the insert command. */
+    public static final int INSERT = 1;
+    /** Opcode for the delete command. */
+    public static final int DELETE = 2;
+    /** Opcode for the search command. */
+    public static final int SEARCH = 3;
+    /** Opcode for "print hashtable". */
+    public static final int PRINT_HASHTABLE = 4;
+    /** Opcode for "print blocks" (or any other print parameter). */
+    public static final int PRINT_BLOCKS = 5;
+    /** Opcode for "snapshot {file}". */
+    public static final int SNAPSHOT = 6;
+    /** Opcode for "checkpoint {file}". */
+    public static final int CHECKPOINT = 7;
+
+    private int opcode;
+    private int id;
+    private Seminar seminar;
+    private String argument;
+
+    /**
+     * Creates an empty slot holding an invalid command.
+     */
+    public Command() {
+        clear();
+    }
+
+    /**
+     * Resets the slot so it no longer references a seminar.
+     */
+    public void clear() {
+        opcode = INVALID;
+        id = 0;
+        seminar = null;
+        argument = null;
+    }
+
+    /**
+     * Fills the slot with an insert command.
+     *
+     * @param seminarId ID of the seminar to insert.
+     * @param record The seminar to insert.
+     */
+    public void setInsert(int seminarId, Seminar record) {
+        opcode = INSERT;
+        id = seminarId;
+        seminar = record;
+        argument = null;
+    }
+
+    /**
+     * Fills the slot with a command that only carries an ID or nothing
+     * at all (delete, search, print or invalid).
+     *
+     * @param code One of the opcodes declared by this class.
+     * @param seminarId ID the command refers to, ignored for print.
+     */
+    public void set(int code, int seminarId) {
+        opcode = code;
+        id = seminarId;
+        seminar = null;
+        argument = null;
+    }
+
+    /**
+     * Fills the slot with a command that takes a text argument, such as
+     * the file name of snapshot or checkpoint.
+     *
+     * @param code One of the opcodes declared by this class.
+     * @param text The argument.
+     */
+    public void setArgument(int code, String text) {
+        opcode = code;
+        id = 0;
+        seminar = null;
+        argument = text;
+    }
+
+    /**
+     * Copies another slot into this one.
+     *
+     * @param other The slot to copy.
+     */
+    public void copyFrom(Command other) {
+        opcode = other.opcode;
+        id = other.id;
+        seminar = other.seminar;
+        argument = other.argument;
+    }
+
+    /**
+     * Gets the opcode of this command.
+     *
+     * @return The opcode.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Gets the seminar ID of this command.
+     *
+     * @return The ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the seminar carried by an insert command.
+     *
+     * @return The seminar, or null for other commands.
+     */
+    public Seminar getSeminar() {
+        return seminar;
+    }
+
+    /**
+     * Gets the text argument of this command.
+     *
+     * @return The argument, or null if the command has none.
+     */
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Runs this command against the database.
+     *
+     * @param db The database to apply the command to.
+     */
+    public void applyTo(SeminarDB db) {
+        switch (opcode) {
+            case INSERT:
+                db.addSeminar(id, seminar);
+                break;
+            case DELETE:
+                db.eraseSeminar(id);
+                break;
+            case SEARCH:
+                db.findSeminar(id);
+                break;
+            case PRINT_HASHTABLE:
+                db.showHashTableContents();
+                break;
+            case PRINT_BLOCKS:
+                db.listFreeBlocks();
+                break;
+            case SNAPSHOT:
+                db.saveSnapshot(argument);
+                break;
+            case CHECKPOINT:
+                db.saveCheckpoint(argument);
+                break;
+            default:
+                db.getOutput().println("Invalid command");
+        }
+    }
+}
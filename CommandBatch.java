@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * A compact, append-only run of parsed commands kept in parallel arrays
+ * rather than one object per command. A batch remembers a parse failure
+ * so it can be raised only after the commands before it have been applied.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandBatch {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] opcodes;
+    private int[] ids;
+    private Seminar[] seminars;
+    private String[] arguments;
+    private int size;
+    private RuntimeException failure;
+
+    /**
+     * Creates an empty batch.
+     */
+    public CommandBatch() {
+        opcodes = new byte[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        seminars = new Seminar[INITIAL_CAPACITY];
+        arguments = new String[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Appends a copy of the given command.
+     *
+     * @param command The parsed command.
+     */
+    public void add(Command command) {
+        if (size == opcodes.length) {
+            int grown = size * 2;
+            opcodes = Arrays.copyOf(opcodes, grown);
+            ids = Arrays.copyOf(ids, grown);
+            seminars = Arrays.copyOf(seminars, grown);
+            arguments = Arrays.copyOf(arguments, grown);
+        }
+        opcodes[size] = (byte) command.getOpcode();
+        ids[size] = command.getId();
+        seminars[size] = command.getSeminar();
+        arguments[size] = command.getArgument();
+        size++;
+    }
+
+    /**
+     * Gets the number of commands in the batch.
+     *
+     * @return The command count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies the command at the given position into a slot.
+     *
+     * @param index Position of the command.
+     * @param slot The slot to fill.
+     */
+    public void get(int index, Command slot) {
+        if (opcodes[index] == Command.INSERT) {
+            slot.setInsert(ids[index], seminars[index]);
+        }
+        else if (arguments[index] != null) {
+            slot.setArgument(opcodes[index], arguments[index]);
+        }
+        else {
+            slot.set(opcodes[index], ids[index]);
+        }
+    }
+
+    /**
+     * Records the error that stopped parsing of this batch.
+     *
+     * @param error The parse error.
+     */
+    public void setFailure(RuntimeException error) {
+        failure = error;
+    }
+
+    /**
+     * Gets the error that stopped parsing of this batch.
+     *
+     * @return The parse error, or null if the whole chunk was parsed.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Applies every command in order, then raises the parse failure
+     * if there was one.
+     *
+     * @param dbInstance The database commands are applied to.
+     */
+    public void applyTo(SeminarDB dbInstance) {
+        Command slot = new Command();
+        for (int i = 0; i < size; i++) {
+            get(i, slot);
+            slot.applyTo(dbInstance);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
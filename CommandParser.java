@@ -0,0 +1,99 @@
+import java.util.Scanner;
+
+/**
+ * Parses commands from a Scanner into reusable Command slots.
+ * The insert command spans five lines (the keyword with its ID, the title,
+ * the date/length/coordinates/cost line, the keywords and the description);
+ * every other command fits on one line. Besides the four seminar commands,
+ * "snapshot {file}" saves the whole database to a file and
+ * "checkpoint {file}" saves what changed since the last one.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandParser implements AutoCloseable {
+
+    private final Scanner fileScanner;
+
+    /**
+     * Creates a parser reading from the given scanner.
+     *
+     * @param fileScanner Source of command text.
+     */
+    public CommandParser(Scanner fileScanner) {
+        this.fileScanner = fileScanner;
+    }
+
+    /**
+     * Parses the next command into the given slot.
+     *
+     * @param slot The slot to fill.
+     * @return true if a command was parsed, false at the end of input.
+     */
+    public boolean next(Command slot) {
+        if (!fileScanner.hasNext()) {
+            return false;
+        }
+        String action = fileScanner.next().trim(); // Current operation command
+        switch (action) {
+            case "insert":
+                parseInsert(slot);
+                break;
+            case "delete":
+                slot.set(Command.DELETE, parseId());
+                break;
+            case "search":
+                slot.set(Command.SEARCH, parseId());
+                break;
+            case "snapshot":
+                slot.setArgument(
+                    Command.SNAPSHOT, fileScanner.nextLine().trim());
+                break;
+            case "checkpoint":
+                slot.setArgument(
+                    Command.CHECKPOINT, fileScanner.nextLine().trim());
+                break;
+            case "print":
+                // Print specific database details based on parameter
+                String printParam = fileScanner.nextLine().trim();
+                slot.set(printParam.equals("hashtable")
+                    ? Command.PRINT_HASHTABLE
+                    : Command.PRINT_BLOCKS, 0);
+                break;
+            default:
+                slot.set(Command.INVALID, 0);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the underlying scanner.
+     */
+    @Override
+    public void close() {
+        fileScanner.close();
+    }
+
+    private int parseId() {
+        return Integer.parseInt(fileScanner.nextLine().trim());
+    }
+
+    private void parseInsert(Command slot) {
+        // Extract seminar details
+        int seminarId = parseId();
+        String seminarTitle = fileScanner.nextLine().trim();
+        String[] details = fileScanner.nextLine(
+            ).trim().replaceAll(" +", " ").split(" ");
+        String seminarDate = details[0];
+        int duration = Integer.parseInt(details[1]);
+        short posX = Short.parseShort(details[2]);
+        short posY = Short.parseShort(details[3]);
+        int fee = Integer.parseInt(details[4]);
+        String[] tags = fileScanner.nextLine(
+            ).trim().replaceAll(" +", " ").split(" ");
+        String summary = fileScanner.nextLine().trim();
+        slot.setInsert(seminarId, new Seminar(
+            seminarId, seminarTitle, seminarDate
+            , duration, posX, posY, fee, tags, summary));
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * Runs a command file with parsing and execution on separate threads.
+ * A parser thread fills slots of a CommandRing while the calling thread
+ * applies them to the SeminarDB in order, so file reading and parsing
+ * overlap with the work done by the hash table and memory manager.
+ * All output is produced by the calling thread, so it comes out in
+ * exactly the same order as a serial run.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandPipeline {
+
+    /** Default number of slots in the ring. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final CommandRing ring;
+    private volatile RuntimeException parseFailure;
+
+    /**
+     * Creates a pipeline with the default ring capacity.
+     */
+    public CommandPipeline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pipeline whose ring holds the given number of commands.
+     *
+     * @param capacity Number of ring slots, must be a power of two.
+     */
+    public CommandPipeline(int capacity) {
+        this.ring = new CommandRing(capacity);
+    }
+
+    /**
+     * Parses the file on a background thread and applies every command
+     * to the database on the calling thread.
+     *
+     * @param inputFile The command file.
+     * @param dbInstance The database commands are applied to.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    public void run(File inputFile, SeminarDB dbInstance)
+        throws FileNotFoundException {
+        Scanner fileScanner = new Scanner(inputFile);
+        Thread parserThread = new Thread(
+            () -> produce(fileScanner), "command-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+        try {
+            consume(dbInstance);
+        }
+        finally {
+            ring.abandon();
+            joinQuietly(parserThread);
+        }
+        if (parseFailure != null) {
+            throw parseFailure;
+        }
+    }
+
+    private void produce(Scanner fileScanner) {
+        try (CommandParser parser = new CommandParser(fileScanner)) {
+            Command slot = ring.claim();
+            while (slot != null && parser.next(slot)) {
+                ring.publish();
+                slot = ring.claim();
+            }
+        }
+        catch (RuntimeException ex) {
+            // Surfaced on the consumer side once earlier commands have run
+            parseFailure = ex;
+        }
+        finally {
+            ring.close();
+        }
+    }
+
+    private void consume(SeminarDB dbInstance) {
+        Command slot = ring.peek();
+        while (slot != null) {
+            slot.applyTo(dbInstance);
+            ring.release();
+            slot = ring.peek();
+        }
+    }
+
+    private void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import student.TestCase;
+
+/**
+ * Test class for CommandPipeline
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandPipelineTest extends TestCase {
+
+    /**
+     * Tests that the pipelined mode prints the same output as a serial
+     * run of a file with inserts, repeated inserts, deletes, searches and
+     * both prints.
+     *
+     * @throws Exception if the command file cannot be written
+     */
+    public void testMatchesSerialOutput() throws Exception {
+        String path = ParallelParserTest.commandFile(
+            ParallelParserTest.commands(300).getBytes("US-ASCII"))
+            .getPath();
+        Reader reader = new Reader();
+        reader.interpretFile(new String[] { "2048", "2048", path });
+        String serial = systemOut().getHistory();
+        assertTrue(serial.contains("Found record with ID 149"));
+        assertTrue(serial.contains(
+            "Insert FAILED - There is already a record with ID 299"));
+        assertTrue(serial.contains("Freeblock List:"));
+        assertTrue(serial.contains("Hashtable:"));
+        systemOut().clearHistory();
+
+        reader.interpretFile(new String[] { 
+            "2048", "2048", path, "-pipeline" });
+        assertEquals(serial, systemOut().getHistory());
+    }
+
+    /**
+     * Tests that a missing file is reported the same way as before.
+     */
+    public void testMissingFile() {
+        new Reader().interpretFile(new String[] { 
+            "2048", "2048", "noSuchFile.txt", "-pipeline" });
+        assertTrue(systemOut().getHistory().contains("noSuchFile.txt"));
+    }
+}
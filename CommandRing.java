@@ -0,0 +1,142 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer/single-consumer ring of preallocated Command
+ * slots. The producer claims a free slot, fills it and publishes it; the
+ * consumer peeks the oldest published slot, runs it and releases it back
+ * to the producer. A full ring makes the producer wait, which keeps the
+ * parser from running arbitrarily far ahead of the database.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandRing {
+
+    private static final int SPINS_BEFORE_PARK = 128;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final Command[] slots;
+    private final int mask;
+
+    // Only the consumer writes head and only the producer writes tail
+    private volatile long head;
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile boolean abandoned;
+
+    /**
+     * Creates a ring with the given number of slots.
+     *
+     * @param capacity Number of slots, must be a power of two.
+     */
+    public CommandRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException(
+                "Ring capacity must be a power of two: " + capacity);
+        }
+        slots = new Command[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Command();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Gets the number of slots in the ring.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Gets the number of published slots not yet released.
+     *
+     * @return The number of pending commands.
+     */
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Waits for a free slot and returns it to the producer. The slot is
+     * not visible to the consumer until publish is called.
+     *
+     * @return The slot to fill, or null if the consumer has abandoned
+     *         the ring.
+     */
+    public Command claim() {
+        int idle = 0;
+        long next = tail;
+        while (next - head == slots.length) {
+            if (abandoned) {
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        return slots[(int) (next & mask)];
+    }
+
+    /**
+     * Makes the most recently claimed slot visible to the consumer.
+     */
+    public void publish() {
+        tail = tail + 1;
+    }
+
+    /**
+     * Signals that the producer will not publish any more slots.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Waits for the oldest published slot and returns it to the consumer.
+     *
+     * @return The slot to run, or null once the ring is closed and empty.
+     */
+    public Command peek() {
+        int idle = 0;
+        long current = head;
+        while (current == tail) {
+            if (closed) {
+                // tail is written before closed, so this read is final
+                if (current == tail) {
+                    return null;
+                }
+                break;
+            }
+            idle = backOff(idle);
+        }
+        return slots[(int) (current & mask)];
+    }
+
+    /**
+     * Hands the slot returned by peek back to the producer.
+     */
+    public void release() {
+        long current = head;
+        slots[(int) (current & mask)].clear();
+        head = current + 1;
+    }
+
+    /**
+     * Signals that the consumer stopped early, so a waiting producer
+     * gives up instead of blocking forever.
+     */
+    public void abandon() {
+        abandoned = true;
+    }
+
+    private int backOff(int idle) {
+        if (idle < SPINS_BEFORE_PARK) {
+            Thread.onSpinWait();
+        }
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,93 @@
+import student.TestCase;
+
+/**
+ * Test class for CommandRing
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandRingTest extends TestCase {
+
+    private CommandRing ring;
+
+    /**
+     * Sets up a small ring before each test.
+     */
+    @Override
+    public void setUp() {
+        ring = new CommandRing(4);
+    }
+
+    /**
+     * Tests that commands come out in the order they were published.
+     */
+    public void testOrdering() {
+        for (int i = 0; i < 3; i++) {
+            ring.claim().set(Command.SEARCH, i);
+            ring.publish();
+        }
+        assertEquals(3, ring.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, ring.peek().getId());
+            ring.release();
+        }
+        ring.close();
+        assertNull(ring.peek());
+    }
+
+    /**
+     * Tests that the capacity must be a power of two.
+     */
+    public void testCapacity() {
+        assertEquals(4, ring.capacity());
+        Exception thrown = null;
+        try {
+            new CommandRing(3);
+        }
+        catch (IllegalArgumentException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+
+    /**
+     * Tests that a producer waiting on a full ring gives up once
+     * the consumer abandons it.
+     */
+    public void testAbandon() {
+        for (int i = 0; i < 4; i++) {
+            ring.claim().set(Command.DELETE, i);
+            ring.publish();
+        }
+        ring.abandon();
+        assertNull(ring.claim());
+    }
+
+    /**
+     * Tests a producer thread feeding the consumer through
+     * far more commands than the ring holds.
+     * 
+     * @throws InterruptedException if interrupted while joining
+     */
+    public void testBackpressure() throws InterruptedException {
+        int total = 10000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                ring.claim().set(Command.SEARCH, i);
+                ring.publish();
+            }
+            ring.close();
+        });
+        producer.start();
+        int expected = 0;
+        Command slot = ring.peek();
+        while (slot != null) {
+            assertTrue(ring.size() <= ring.capacity());
+            assertEquals(expected++, slot.getId());
+            ring.release();
+            slot = ring.peek();
+        }
+        producer.join();
+        assertEquals(total, expected);
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * Finds command boundaries in the text of a command file so it can be cut
+ * into chunks that are parsed independently. Boundaries follow the same
+ * rules as CommandParser: a command starts at the next whitespace
+ * separated token, insert consumes the rest of its line plus four more
+ * lines, delete, search, print, snapshot and checkpoint consume the rest
+ * of their line, and any other token is a command of its own.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandSplitter {
+
+    private static final int INSERT_LINES = 5;
+
+    private final String text;
+
+    /**
+     * Creates a splitter over the whole text of a command file.
+     *
+     * @param text The command file contents.
+     */
+    public CommandSplitter(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Cuts the text into chunks holding a given number of commands.
+     *
+     * @param commandsPerChunk Number of commands in every chunk but
+     *        the last.
+     * @return Offsets of the chunk starts followed by the text length,
+     *         so chunk i covers [bounds[i], bounds[i + 1]).
+     */
+    public int[] split(int commandsPerChunk) {
+        int[] bounds = new int[16];
+        int count = 1; // bounds[0] is already 0
+        int commands = 0;
+        int pos = 0;
+        while (true) {
+            pos = skipWhitespace(pos);
+            if (pos >= text.length()) {
+                break;
+            }
+            pos = skipCommand(pos);
+            commands++;
+            if (commands == commandsPerChunk && pos < text.length()) {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count * 2);
+                }
+                bounds[count++] = pos;
+                commands = 0;
+            }
+        }
+        int[] result = Arrays.copyOf(bounds, count + 1);
+        result[count] = text.length();
+        return result;
+    }
+
+    /**
+     * Skips one command whose keyword starts at the given position.
+     *
+     * @param start Position of the first character of the keyword.
+     * @return Position just after the command.
+     */
+    int skipCommand(int start) {
+        int end = start;
+        while (end < text.length() && !Character.isWhitespace(
+            text.charAt(end))) {
+            end++;
+        }
+        int length = end - start;
+        if (length == 6 && text.startsWith("insert", start)) {
+            return skipLines(end, INSERT_LINES);
+        }
+        if ((length == 6 && (text.startsWith("delete", start)
+            || text.startsWith("search", start)))
+            || (length == 5 && text.startsWith("print", start))
+            || (length == 8 && text.startsWith("snapshot", start))
+            || (length == 10 && text.startsWith("checkpoint", start))) {
+            return skipLines(end, 1);
+        }
+        return end;
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < text.length() && Character.isWhitespace(
+            text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Moves past the given number of line terminators, using the same
+     * terminators as Scanner.nextLine.
+     */
+    private int skipLines(int pos, int lines) {
+        for (int i = 0; i < lines && pos < text.length(); i++) {
+            while (pos < text.length() && !isLineEnd(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos < text.length()) {
+                char terminator = text.charAt(pos++);
+                if (terminator == '\r' && pos < text.length()
+                    && text.charAt(pos) == '\n') {
+                    pos++;
+                }
+            }
+        }
+        return pos;
+    }
+
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+}
@@ -0,0 +1,74 @@
+import student.TestCase;
+
+/**
+ * Test class for CommandSplitter
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CommandSplitterTest extends TestCase {
+
+    private static final String INSERT = "insert 7\nsearch\n"
+        + "2405231000 75 15 33 125\ndelete print\nsearch 9\n";
+
+    /**
+     * Tests that an insert is kept whole even when its lines
+     * look like other commands.
+     */
+    public void testInsertSpansFiveLines() {
+        String text = INSERT + "search 7\n";
+        int[] bounds = new CommandSplitter(text).split(1);
+        assertEquals(3, bounds.length);
+        assertEquals(0, bounds[0]);
+        assertEquals(INSERT.length(), bounds[1]);
+        assertEquals(text.length(), bounds[2]);
+    }
+
+    /**
+     * Tests that unknown tokens count as commands of their own.
+     */
+    public void testInvalidTokens() {
+        String text = "foo bar\nprint hashtable\r\ndelete 3";
+        int[] bounds = new CommandSplitter(text).split(1);
+        assertEquals(5, bounds.length);
+        assertEquals(3, bounds[1]);
+        assertEquals(7, bounds[2]);
+        assertEquals(25, bounds[3]);
+        assertEquals(text.length(), bounds[4]);
+    }
+
+    /**
+     * Tests grouping several commands per chunk and empty input.
+     */
+    public void testChunkSize() {
+        String text = "search 1\nsearch 2\nsearch 3\n";
+        int[] bounds = new CommandSplitter(text).split(2);
+        assertEquals(3, bounds.length);
+        assertEquals(18, bounds[1]);
+
+        bounds = new CommandSplitter("  \n").split(2);
+        assertEquals(2, bounds.length);
+        assertEquals(3, bounds[1]);
+    }
+
+    /**
+     * Tests that a parallel run of a file several chunks long prints the
+     * same output as a serial run.
+     *
+     * @throws Exception if the command file cannot be written
+     */
+    public void testParallelMatchesSerial() throws Exception {
+        String path = ParallelParserTest.commandFile(
+            ParallelParserTest.commands(3000).getBytes("US-ASCII"))
+            .getPath();
+        Reader reader = new Reader();
+        reader.interpretFile(new String[] { "2048", "2048", path });
+        String serial = systemOut().getHistory();
+        assertTrue(serial.contains("Found record with ID 1499"));
+        systemOut().clearHistory();
+
+        reader.interpretFile(
+            new String[] { "2048", "2048", path, "-parallel=2" });
+        assertEquals(serial, systemOut().getHistory());
+    }
+}
@@ -0,0 +1,706 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A buddy allocator that many threads can insert into and remove from at
+ * once. Like MemoryManager it hands out power-of-two blocks of a pool
+ * that doubles when full, but every block size, or order, has its own
+ * free set and lock, so inserts of different sizes and removes in
+ * different orders go ahead in parallel. A free set has one bit per block
+ * of its order, so finding and taking out a buddy is a single bit test
+ * instead of a list search.
+ *
+ * Locks of two orders are only ever held together smallest first:
+ * coalescing holds the lock of the order it merges in while it takes the
+ * next one up, and splitting takes and drops one lock at a time on its
+ * way down, so no two threads can wait on each other. Every operation
+ * holds the pool lock for reading; only doubling the pool takes it for
+ * writing.
+ *
+ * With magazines turned on, each thread also keeps a stack of free blocks
+ * for each of the few orders it uses most. An insert pops a block from its
+ * own stack and a remove pushes one back, with no splitting, merging or
+ * shared lock; only an empty or full stack goes to the free sets, taking
+ * or giving back half a stack at a time. An empty stack is refilled by
+ * splitting one larger block into a batch of blocks. Stacks of a thread
+ * that has done nothing for a while are handed back to the free sets by
+ * the next thread that goes to them. A removed block that is still in a
+ * stack is not free to get and peek, and is not listed by dump until the
+ * stacks are emptied into the free sets, which dump does first.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ConcurrentBuddyStorage implements Storage {
+
+    /** Default number of blocks each magazine stack holds. */
+    public static final int DEFAULT_MAGAZINE_SIZE = 32;
+
+    /** Orders below this can be cached, which is blocks up to 4 KB. */
+    static final int CACHED_ORDERS = 13;
+
+    /** Most orders a thread keeps a stack for. */
+    static final int HOT_ORDERS = 3;
+
+    /** Default time without operations before a magazine is emptied. */
+    static final long IDLE_NANOS = 1_000_000_000L;
+
+    // Enough orders for any block an int offset can address
+    private static final int ORDERS = 31;
+    // Operations between halvings of the use counts of a magazine
+    private static final int AGING_PERIOD = 1024;
+
+    /**
+     * The blocks one thread has cached, a stack per hot order. Apart from
+     * its thread, only growth and the emptying of idle magazines take its
+     * lock, so the lock is not contended in the common case.
+     */
+    private static final class Magazine {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int[][] blocks = new int[CACHED_ORDERS][];
+        private final int[] counts = new int[CACHED_ORDERS];
+        // Only its thread touches the use counts
+        private final int[] uses = new int[CACHED_ORDERS];
+        private int active;
+        private int sinceAging;
+        private int operations;
+        // Operation count seen by the last idle check
+        private int checked;
+    }
+
+    private final ReentrantReadWriteLock poolLock =
+        new ReentrantReadWriteLock();
+    private final ReentrantLock[] locks = new ReentrantLock[ORDERS];
+    private final BitSet[] free = new BitSet[ORDERS];
+    // Bit k is set while order k has a free block, checked without locks
+    private final AtomicInteger available = new AtomicInteger();
+    private final int magazineSize;
+    private final ThreadLocal<Magazine> magazines;
+    private final Queue<Magazine> allMagazines =
+        new ConcurrentLinkedQueue<>();
+    private final long idleNanos;
+    private final AtomicLong nextIdleCheck;
+    // Written under every magazine lock as well as the pool write lock
+    private byte[] pool;
+    private volatile OutputSink output;
+
+    /**
+     * Creates an allocator with one free block covering the pool and no
+     * magazines.
+     *
+     * @param initialSize Size of the pool, a power of two.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public ConcurrentBuddyStorage(int initialSize, OutputSink output) {
+        this(initialSize, 0, output);
+    }
+
+    /**
+     * Creates an allocator with one free block covering the pool.
+     *
+     * @param initialSize Size of the pool, a power of two.
+     * @param magazineSize Blocks each magazine stack holds, at least 2,
+     *        or 0 for no magazines.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public ConcurrentBuddyStorage(int initialSize, int magazineSize,
+        OutputSink output) {
+        this(initialSize, magazineSize, IDLE_NANOS, output);
+    }
+
+    /**
+     * Creates an allocator that treats magazines as idle after the given
+     * time without operations.
+     *
+     * @param initialSize Size of the pool, a power of two.
+     * @param magazineSize Blocks each magazine stack holds, at least 2,
+     *        or 0 for no magazines.
+     * @param idleNanos Time after which an unused magazine is emptied.
+     * @param output Where expansion messages and dumps are written.
+     */
+    ConcurrentBuddyStorage(int initialSize, int magazineSize,
+        long idleNanos, OutputSink output) {
+        if (magazineSize == 1 || magazineSize < 0) {
+            throw new IllegalArgumentException(
+                "Magazines must hold at least 2 blocks: " + magazineSize);
+        }
+        if (initialSize <= 0 || (initialSize & (initialSize - 1)) != 0) {
+            throw new IllegalArgumentException(
+                "Pool size must be a power of two: " + initialSize);
+        }
+        this.output = output;
+        this.magazineSize = magazineSize;
+        this.idleNanos = idleNanos;
+        this.nextIdleCheck = new AtomicLong(System.nanoTime() + idleNanos);
+        this.magazines = magazineSize == 0 ? null
+            : ThreadLocal.withInitial(() -> {
+                Magazine magazine = new Magazine();
+                allMagazines.add(magazine);
+                return magazine;
+            });
+        for (int order = 0; order < ORDERS; order++) {
+            locks[order] = new ReentrantLock();
+            free[order] = new BitSet();
+        }
+        pool = new byte[initialSize];
+        put(order(initialSize), 0);
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        int order = order(length);
+        Magazine magazine = magazine(order);
+        if (magazine != null && magazine.blocks[order] != null) {
+            int cached = pop(magazine, order, data, offset, length);
+            if (cached >= 0) {
+                return new Handle(cached, length);
+            }
+        }
+        poolLock.readLock().lock();
+        try {
+            if (magazine != null) {
+                activate(magazine, order);
+            }
+            if (magazines != null) {
+                checkIdle(magazine);
+            }
+            int block;
+            while ((block = magazine != null && magazine.blocks[order] != null
+                ? refill(magazine, order)
+                : allocate(order)) < 0) {
+                int seen = pool.length;
+                poolLock.readLock().unlock();
+                try {
+                    grow(seen, order);
+                }
+                finally {
+                    poolLock.readLock().lock();
+                }
+            }
+            System.arraycopy(data, offset, pool, block, length);
+            return new Handle(block, length);
+        }
+        finally {
+            poolLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        poolLock.readLock().lock();
+        try {
+            if (isFree(handle)) {
+                return new byte[0];
+            }
+            int start = handle.getStartPosition();
+            return Arrays.copyOfRange(pool, start,
+                start + handle.getDataLength());
+        }
+        finally {
+            poolLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        poolLock.readLock().lock();
+        try {
+            return isFree(handle) ? null : pool;
+        }
+        finally {
+            poolLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        int order = order(handle.getDataLength());
+        int block = handle.getStartPosition();
+        Magazine magazine = magazine(order);
+        if (magazine != null && magazine.blocks[order] != null
+            && push(magazine, order, block)) {
+            return;
+        }
+        poolLock.readLock().lock();
+        try {
+            if (magazines != null) {
+                checkIdle(magazine);
+            }
+            if (magazine != null) {
+                activate(magazine, order);
+                if (magazine.blocks[order] != null) {
+                    // Give back the older half of the full stack
+                    drain(magazine, order, magazineSize / 2);
+                    push(magazine, order, block);
+                    return;
+                }
+            }
+            release(order, block);
+        }
+        finally {
+            poolLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void dump() {
+        StringBuilder report = new StringBuilder();
+        poolLock.writeLock().lock();
+        try {
+            emptyMagazines(false);
+            for (int order = 0; order < ORDERS; order++) {
+                if (free[order].isEmpty()) {
+                    continue;
+                }
+                report.append(1 << order).append(":");
+                for (int bit = free[order].nextSetBit(0); bit >= 0;
+                    bit = free[order].nextSetBit(bit + 1)) {
+                    report.append(" ").append(bit << order);
+                }
+                report.append("\n");
+            }
+        }
+        finally {
+            poolLock.writeLock().unlock();
+        }
+        output.println("Freeblock List:");
+        if (report.length() == 0) {
+            output.println("There are no freeblocks in the memory pool");
+        }
+        else {
+            output.print(report.toString());
+        }
+    }
+
+    // Magazines are emptied first so cached blocks count as free
+    @Override
+    public long freeBytes() {
+        long total = 0;
+        poolLock.writeLock().lock();
+        try {
+            emptyMagazines(false);
+            for (int order = 0; order < ORDERS; order++) {
+                total += (long) free[order].cardinality() << order;
+            }
+        }
+        finally {
+            poolLock.writeLock().unlock();
+        }
+        return total;
+    }
+
+    @Override
+    public long capacity() {
+        poolLock.readLock().lock();
+        try {
+            return pool.length;
+        }
+        finally {
+            poolLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the order of the smallest block that holds a length.
+     *
+     * @param length Number of bytes, at least 1.
+     * @return The base two logarithm of the block size.
+     */
+    static int order(int length) {
+        return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    /**
+     * Takes a free block of an order, splitting the smallest larger block
+     * if there is none. Each upper half split off is freed on the way down.
+     *
+     * @return The block offset, or -1 if no block is big enough.
+     */
+    private int allocate(int order) {
+        int candidates = available.get() & (-1 << order);
+        while (candidates != 0) {
+            int from = Integer.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            int block = take(from);
+            if (block >= 0) {
+                for (int split = from - 1; split >= order; split--) {
+                    put(split, block + (1 << split));
+                }
+                return block;
+            }
+        }
+        return -1;
+    }
+
+    private int take(int order) {
+        locks[order].lock();
+        try {
+            int bit = free[order].nextSetBit(0);
+            if (bit < 0) {
+                return -1;
+            }
+            clear(order, bit);
+            return bit << order;
+        }
+        finally {
+            locks[order].unlock();
+        }
+    }
+
+    private void put(int order, int offset) {
+        locks[order].lock();
+        try {
+            set(order, offset >> order);
+        }
+        finally {
+            locks[order].unlock();
+        }
+    }
+
+    private void release(int order, int offset) {
+        releaseAll(order, new int[] { offset }, 1);
+    }
+
+    /**
+     * Frees a batch of blocks of one order, merging each with its buddy
+     * for as long as the buddy is free too. Blocks merged at one order are
+     * freed together at the next, whose lock is taken before the current
+     * one is dropped, so a merged block is never missing from every set.
+     */
+    private void releaseAll(int order, int[] offsets, int count) {
+        locks[order].lock();
+        while (count > 0) {
+            int size = 1 << order;
+            int merged = 0;
+            for (int i = 0; i < count; i++) {
+                int buddy = offsets[i] ^ size;
+                if (size < pool.length && free[order].get(buddy >> order)) {
+                    clear(order, buddy >> order);
+                    offsets[merged++] = Math.min(offsets[i], buddy);
+                }
+                else {
+                    set(order, offsets[i] >> order);
+                }
+            }
+            if (merged > 0) {
+                locks[order + 1].lock();
+            }
+            locks[order].unlock();
+            order++;
+            count = merged;
+        }
+    }
+
+    /**
+     * Takes up to max free blocks of an order in one go.
+     *
+     * @return The number taken.
+     */
+    private int takeAll(int order, int[] out, int max) {
+        locks[order].lock();
+        try {
+            int count = 0;
+            for (int bit = free[order].nextSetBit(0); bit >= 0 && count < max;
+                bit = free[order].nextSetBit(bit + 1)) {
+                clear(order, bit);
+                out[count++] = bit << order;
+            }
+            return count;
+        }
+        finally {
+            locks[order].unlock();
+        }
+    }
+
+    private void set(int order, int bit) {
+        free[order].set(bit);
+        available.getAndUpdate(orders -> orders | (1 << order));
+    }
+
+    private void clear(int order, int bit) {
+        free[order].clear(bit);
+        if (free[order].isEmpty()) {
+            available.getAndUpdate(orders -> orders & ~(1 << order));
+        }
+    }
+
+    /**
+     * Checks whether the block behind a handle is free, on its own or
+     * merged into a larger free block.
+     */
+    private boolean isFree(Handle handle) {
+        int start = handle.getStartPosition();
+        int orders = available.get() & (-1 << order(handle.getDataLength()));
+        while (orders != 0) {
+            int order = Integer.numberOfTrailingZeros(orders);
+            orders &= orders - 1;
+            locks[order].lock();
+            try {
+                if (free[order].get(start >> order)) {
+                    return true;
+                }
+            }
+            finally {
+                locks[order].unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Doubles the pool until a block of an order is free, unless another
+     * thread grew it or freed a big enough block in the meantime.
+     */
+    private void grow(int seen, int order) {
+        poolLock.writeLock().lock();
+        try {
+            if (pool.length != seen) {
+                return;
+            }
+            // Wait out inserts copying into the pool from a magazine
+            Magazine[] held = allMagazines.toArray(new Magazine[0]);
+            for (Magazine magazine : held) {
+                magazine.lock.lock();
+            }
+            try {
+                while ((available.get() & (-1 << order)) == 0) {
+                    int oldLength = pool.length;
+                    pool = Arrays.copyOf(pool, oldLength * 2);
+                    // The new half is the buddy of the whole old pool
+                    release(order(oldLength), oldLength);
+                    output.println(
+                        "Memory pool expanded to " + pool.length + " bytes");
+                }
+            }
+            finally {
+                for (Magazine magazine : held) {
+                    magazine.lock.unlock();
+                }
+            }
+        }
+        finally {
+            poolLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the magazine of the calling thread and counts a use of an
+     * order, if the order can be cached at all.
+     *
+     * @return The magazine, or null.
+     */
+    private Magazine magazine(int order) {
+        if (magazines == null || order >= CACHED_ORDERS) {
+            return null;
+        }
+        Magazine magazine = magazines.get();
+        magazine.uses[order]++;
+        if (++magazine.sinceAging == AGING_PERIOD) {
+            magazine.sinceAging = 0;
+            for (int i = 0; i < CACHED_ORDERS; i++) {
+                magazine.uses[i] /= 2;
+            }
+        }
+        return magazine;
+    }
+
+    /**
+     * Pops a cached block and copies a record into it.
+     *
+     * @return The block, or -1 if the stack is empty.
+     */
+    private int pop(Magazine magazine, int order, byte[] data, int offset,
+        int length) {
+        magazine.lock.lock();
+        try {
+            magazine.operations++;
+            if (magazine.counts[order] == 0) {
+                return -1;
+            }
+            int block = magazine.blocks[order][--magazine.counts[order]];
+            System.arraycopy(data, offset, pool, block, length);
+            return block;
+        }
+        finally {
+            magazine.lock.unlock();
+        }
+    }
+
+    /**
+     * Pushes a removed block onto its stack.
+     *
+     * @return false if the stack is full.
+     */
+    private boolean push(Magazine magazine, int order, int block) {
+        magazine.lock.lock();
+        try {
+            magazine.operations++;
+            int[] stack = magazine.blocks[order];
+            if (magazine.counts[order] == stack.length) {
+                return false;
+            }
+            stack[magazine.counts[order]++] = block;
+            return true;
+        }
+        finally {
+            magazine.lock.unlock();
+        }
+    }
+
+    /**
+     * Gives an order a stack if it has none and the magazine has room,
+     * or if it is used over twice as much as the least used order with a
+     * stack, which then loses its stack. The margin keeps orders used
+     * about as often from swapping stacks back and forth.
+     */
+    private void activate(Magazine magazine, int order) {
+        if (magazine.blocks[order] != null) {
+            return;
+        }
+        if (magazine.active == HOT_ORDERS) {
+            int coldest = -1;
+            for (int i = 0; i < CACHED_ORDERS; i++) {
+                if (magazine.blocks[i] != null && (coldest < 0
+                    || magazine.uses[i] < magazine.uses[coldest])) {
+                    coldest = i;
+                }
+            }
+            if (2 * magazine.uses[coldest] >= magazine.uses[order]) {
+                return;
+            }
+            drain(magazine, coldest, 0);
+            magazine.lock.lock();
+            magazine.blocks[coldest] = null;
+            magazine.active--;
+            magazine.lock.unlock();
+        }
+        magazine.lock.lock();
+        magazine.blocks[order] = new int[magazineSize];
+        magazine.active++;
+        magazine.lock.unlock();
+    }
+
+    /**
+     * Takes half a stack of blocks for an empty stack, splitting one
+     * larger block into them when the order has no free blocks, keeps one
+     * and pushes the rest.
+     *
+     * @return The block kept, or -1 if no block is big enough.
+     */
+    private int refill(Magazine magazine, int order) {
+        int batch = Integer.highestOneBit(magazineSize / 2);
+        int[] taken = new int[batch];
+        int count = takeAll(order, taken, batch);
+        if (count == 0) {
+            int larger = Math.min(ORDERS - 1,
+                order + Integer.numberOfTrailingZeros(batch));
+            int block = allocate(larger);
+            if (block < 0) {
+                larger = order;
+                block = allocate(order);
+            }
+            if (block < 0) {
+                return -1;
+            }
+            for (int i = 0; i < 1 << (larger - order); i++) {
+                taken[count++] = block + (i << order);
+            }
+        }
+        magazine.lock.lock();
+        try {
+            for (int i = 1; i < count; i++) {
+                magazine.blocks[order][magazine.counts[order]++] = taken[i];
+            }
+        }
+        finally {
+            magazine.lock.unlock();
+        }
+        return taken[0];
+    }
+
+    /**
+     * Frees all but the keep most recently pushed blocks of a stack, in
+     * one batch.
+     */
+    private void drain(Magazine magazine, int order, int keep) {
+        int[] given;
+        magazine.lock.lock();
+        try {
+            int[] stack = magazine.blocks[order];
+            int count = magazine.counts[order];
+            if (count <= keep) {
+                return;
+            }
+            given = Arrays.copyOf(stack, count - keep);
+            System.arraycopy(stack, count - keep, stack, 0, keep);
+            magazine.counts[order] = keep;
+        }
+        finally {
+            magazine.lock.unlock();
+        }
+        releaseAll(order, given, given.length);
+    }
+
+    /**
+     * Empties the magazines of other threads that have done nothing since
+     * the last check, at most once every idleNanos.
+     */
+    private void checkIdle(Magazine own) {
+        long now = System.nanoTime();
+        long due = nextIdleCheck.get();
+        if (now - due >= 0 && nextIdleCheck.compareAndSet(due,
+            now + idleNanos)) {
+            for (Magazine magazine : allMagazines) {
+                if (magazine != own) {
+                    empty(magazine, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties every magazine into the free sets, or only the idle ones.
+     */
+    private void emptyMagazines(boolean idleOnly) {
+        for (Magazine magazine : allMagazines) {
+            empty(magazine, idleOnly);
+        }
+    }
+
+    private void empty(Magazine magazine, boolean idleOnly) {
+        if (!idleOnly) {
+            magazine.lock.lock();
+        }
+        else if (!magazine.lock.tryLock()) {
+            // Its thread is using it, so it is not idle
+            return;
+        }
+        try {
+            if (!idleOnly || magazine.operations == magazine.checked) {
+                for (int order = 0; order < CACHED_ORDERS; order++) {
+                    if (magazine.blocks[order] != null) {
+                        drain(magazine, order, 0);
+                    }
+                }
+            }
+            magazine.checked = magazine.operations;
+        }
+        finally {
+            magazine.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test class for ConcurrentBuddyStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ConcurrentBuddyStorageTest extends TestCase {
+
+    private static final int THREADS = 4;
+
+    private ConcurrentBuddyStorage storage;
+
+    /**
+     * Sets up a pool of 256 bytes before each test.
+     */
+    @Override
+    public void setUp() {
+        storage = new ConcurrentBuddyStorage(256, new ConsoleSink());
+    }
+
+    /**
+     * Tests block orders.
+     */
+    public void testOrder() {
+        assertEquals(0, ConcurrentBuddyStorage.order(1));
+        assertEquals(1, ConcurrentBuddyStorage.order(2));
+        assertEquals(2, ConcurrentBuddyStorage.order(3));
+        assertEquals(6, ConcurrentBuddyStorage.order(64));
+        assertEquals(7, ConcurrentBuddyStorage.order(65));
+    }
+
+    /**
+     * Tests that inserts split the lowest block, that records read back,
+     * and that removes merge buddies back into one block.
+     */
+    public void testSplitAndMerge() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 20));
+        assertEquals(0, first.getStartPosition());
+        assertEquals(64, second.getStartPosition());
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n32: 96\n128: 128\n",
+            systemOut().getHistory());
+        byte[] read = storage.get(second);
+        assertEquals(20, read.length);
+        assertEquals(21, read[19]);
+        assertEquals(40, storage.peek(first)[39]);
+
+        storage.remove(first);
+        storage.remove(second);
+        assertNull(storage.peek(first));
+        assertEquals(0, storage.get(second).length);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n256: 0\n",
+            systemOut().getHistory());
+        assertEquals(256, storage.freeBytes());
+    }
+
+    /**
+     * Tests that the pool doubles until a record fits and that the new
+     * half merges with a free old pool.
+     */
+    public void testGrows() {
+        Handle full = storage.insert(StorageConformanceTest.bytes(0, 256));
+        Handle big = storage.insert(StorageConformanceTest.bytes(3, 300));
+        assertEquals(512, big.getStartPosition());
+        assertEquals(1024, storage.capacity());
+        assertTrue(systemOut().getHistory().contains(
+            "Memory pool expanded to 1024 bytes"));
+        assertEquals(3, storage.get(big)[0]);
+        storage.remove(full);
+        storage.remove(big);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n1024: 0\n",
+            systemOut().getHistory());
+        storage.insert(StorageConformanceTest.bytes(0, 1024));
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n"
+            + "There are no freeblocks in the memory pool\n",
+            systemOut().getHistory());
+    }
+
+    /**
+     * Tests that threads inserting and removing records of mixed sizes
+     * never see each other's bytes and leave the pool in one block.
+     */
+    public void testConcurrentInsertAndRemove()
+        throws InterruptedException {
+        runChurn();
+    }
+
+    /**
+     * Tests that records come from a thread's own stack of cached blocks
+     * and go back to it, and that dump first empties the stacks.
+     */
+    public void testMagazines() {
+        storage = new ConcurrentBuddyStorage(256, 4, new ConsoleSink());
+        // An empty stack is refilled by splitting a 128 byte block in two
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 40));
+        assertEquals(0, first.getStartPosition());
+        assertEquals(64, second.getStartPosition());
+        storage.remove(first);
+        Handle third = storage.insert(StorageConformanceTest.bytes(3, 33));
+        assertEquals(0, third.getStartPosition());
+        assertEquals(3, storage.get(third)[0]);
+        storage.remove(second);
+        storage.remove(third);
+        // Removed blocks wait in the stack instead of being free
+        assertNotNull(storage.peek(second));
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n256: 0\n",
+            systemOut().getHistory());
+        assertNull(storage.peek(second));
+    }
+
+    /**
+     * Tests that a full stack gives half of its blocks back.
+     */
+    public void testFullStackDrains() {
+        storage = new ConcurrentBuddyStorage(1024, 4, new ConsoleSink());
+        Handle[] handles = new Handle[5];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = storage.insert(StorageConformanceTest.bytes(i, 60));
+        }
+        for (Handle handle : handles) {
+            storage.remove(handle);
+        }
+        // The stack kept a spare block from its last refill, so the
+        // fourth remove found it full and freed it and the first record
+        assertNull(storage.peek(handles[0]));
+        for (int i = 1; i < handles.length; i++) {
+            assertNotNull(storage.peek(handles[i]));
+        }
+        assertEquals(1024, storage.freeBytes());
+    }
+
+    /**
+     * Tests that the stacks of a thread that stopped are given back after
+     * two idle checks.
+     */
+    public void testIdleMagazinesReturn() throws InterruptedException {
+        storage = new ConcurrentBuddyStorage(1 << 14, 4, 1_000_000L,
+            new ConsoleSink());
+        Handle[] cached = new Handle[1];
+        Thread thread = new Thread(() -> {
+            cached[0] = storage.insert(StorageConformanceTest.bytes(1, 40));
+            storage.remove(cached[0]);
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(storage.peek(cached[0]));
+        // Blocks over 4 KB are never cached, so these check every time
+        Thread.sleep(5);
+        storage.remove(storage.insert(StorageConformanceTest.bytes(0, 5000)));
+        assertNotNull(storage.peek(cached[0]));
+        Thread.sleep(5);
+        storage.remove(storage.insert(StorageConformanceTest.bytes(0, 5000)));
+        assertNull(storage.peek(cached[0]));
+    }
+
+    /**
+     * Tests threads inserting and removing records of mixed sizes through
+     * magazines, which forces hot orders to take each other's stacks.
+     */
+    public void testConcurrentMagazines() throws InterruptedException {
+        storage = new ConcurrentBuddyStorage(256, 8, new ConsoleSink());
+        runChurn();
+    }
+
+    /**
+     * Runs churn on THREADS threads at once, then checks that the pool
+     * is left in one free block.
+     */
+    private void runChurn() throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            int number = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    churn(number);
+                }
+                catch (Throwable t) {
+                    failures[number] = t;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+        }
+        assertEquals(storage.capacity(), storage.freeBytes());
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n" + storage.capacity() + ": 0\n",
+            systemOut().getHistory());
+    }
+
+    /**
+     * Keeps 32 records of random sizes, checking each before removing it.
+     */
+    private void churn(int thread) {
+        Random random = new Random(thread);
+        Handle[] handles = new Handle[32];
+        int[] values = new int[handles.length];
+        for (int i = 0; i < 5000; i++) {
+            int slot = random.nextInt(handles.length);
+            if (handles[slot] != null) {
+                byte[] read = storage.get(handles[slot]);
+                assertEquals(values[slot], read[0]);
+                assertEquals((byte) (values[slot] + read.length - 1),
+                    read[read.length - 1]);
+                storage.remove(handles[slot]);
+            }
+            values[slot] = random.nextInt(100);
+            handles[slot] = storage.insert(StorageConformanceTest.bytes(
+                values[slot], 1 + random.nextInt(200)));
+        }
+        for (Handle handle : handles) {
+            storage.remove(handle);
+        }
+    }
+}
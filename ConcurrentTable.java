@@ -0,0 +1,558 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A hash index that many threads can search and change at once without
+ * locks. Slots are probed linearly and hold immutable entries in an
+ * AtomicReferenceArray, so a lookup only reads slots and finishes within
+ * one walk of each table however the other threads behave. An insert or
+ * delete swaps the entry in one slot by compare-and-set, and simply tries
+ * again if another thread changed the slot first.
+ *
+ * A slot keeps the ID it was first claimed for as long as its table is in
+ * use; deleting only marks the entry dead. When too many slots have been
+ * claimed, a new table is linked to the old one and the live entries are
+ * moved across a chunk of slots at a time. Every thread that wants to
+ * change the index moves a chunk first, so the copying is shared out
+ * instead of stalling one writer. A slot is frozen before it is copied,
+ * which stops further changes to it in the old table; lookups still read
+ * a frozen entry until its copy appears.
+ *
+ * putIfAbsent may ask for a handle and then not use it, if another
+ * thread adds the same ID in between.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ConcurrentTable implements HashIndex {
+
+    /** Number of slots a thread moves each time it helps a resize. */
+    static final int CHUNK = 64;
+
+    // Empty slot of a table that is being replaced
+    private static final Object MOVED = new Object();
+
+    /**
+     * The ID in a slot and its handle, or a dead entry if it was deleted.
+     */
+    private static final class Entry {
+        private final int key;
+        private final Handle handle;
+        private final boolean live;
+
+        Entry(int key, Handle handle, boolean live) {
+            this.key = key;
+            this.handle = handle;
+            this.live = live;
+        }
+    }
+
+    /**
+     * An entry that may no longer change in its table, because it is being
+     * copied to the next one.
+     */
+    private static final class Frozen {
+        private final Entry entry;
+
+        Frozen(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * An array of slots and the state of its replacement, if any.
+     */
+    private static final class Table {
+        private final AtomicReferenceArray<Object> slots;
+        private final int threshold;
+        private final AtomicInteger claimed = new AtomicInteger();
+        private final AtomicReference<Table> next = new AtomicReference<>();
+        // First slot of the next chunk to move, and slots moved so far
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger moved = new AtomicInteger();
+        private volatile boolean replaced;
+
+        Table(int size, double loadFactor) {
+            slots = new AtomicReferenceArray<>(size);
+            threshold = Math.max(1, (int) (size * loadFactor));
+        }
+    }
+
+    /**
+     * A slot found for an ID.
+     */
+    private static final class Position {
+        private final Table table;
+        private final int slot;
+
+        Position(Table table, int slot) {
+            this.table = table;
+            this.slot = slot;
+        }
+    }
+
+    private final double loadFactor;
+    private final HashFunction hashFunction;
+    private final AtomicReference<Table> current;
+    private final AtomicInteger totalEntries = new AtomicInteger();
+    private final AtomicInteger resizes = new AtomicInteger();
+    private volatile OutputSink output;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param initialSize Initial number of slots.
+     * @param loadFactor Share of slots that may be claimed before the
+     *        table is replaced, above 0 and below 1.
+     * @param hashFunction Mixer applied to IDs before probing.
+     * @param output Where listings and expansion messages are written.
+     */
+    public ConcurrentTable(int initialSize, double loadFactor,
+        HashFunction hashFunction, OutputSink output) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException(
+                "Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.hashFunction = hashFunction;
+        this.output = output;
+        current = new AtomicReference<>(
+            new Table(Math.max(2, initialSize), loadFactor));
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle retrieve(int id) {
+        if (id < 0) {
+            return null;
+        }
+        Entry entry = find(current.get(), id);
+        return entry != null && entry.live ? entry.handle : null;
+    }
+
+    @Override
+    public boolean addEntry(int id, Handle handle) {
+        if (id < 0) {
+            return false;
+        }
+        return putIfAbsent(id, () -> handle) == null;
+    }
+
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid ID " + id);
+        }
+        Handle added = null;
+        boolean supplied = false;
+        for (;;) {
+            Position at = locate(current.get(), id, true);
+            Object slot = at.table.slots.get(at.slot);
+            if (!(slot instanceof Entry)) {
+                continue;
+            }
+            Entry entry = (Entry) slot;
+            if (entry.live) {
+                return entry.handle;
+            }
+            if (!supplied) {
+                added = handle.get();
+                supplied = true;
+            }
+            if (at.table.slots.compareAndSet(at.slot, entry,
+                new Entry(id, added, true))) {
+                totalEntries.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteEntry(int id) {
+        return remove(id) != null;
+    }
+
+    @Override
+    public Handle removeEntry(int id) {
+        Entry removed = remove(id);
+        return removed == null ? null : removed.handle;
+    }
+
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        while (id >= 0) {
+            Position at = locate(current.get(), id, false);
+            if (at == null) {
+                break;
+            }
+            Object slot = at.table.slots.get(at.slot);
+            if (!(slot instanceof Entry)) {
+                continue;
+            }
+            Entry entry = (Entry) slot;
+            if (!entry.live || !from.equals(entry.handle)) {
+                break;
+            }
+            if (at.table.slots.compareAndSet(at.slot, entry,
+                new Entry(id, to, true))) {
+                return true;
+            }
+        }
+        // Scan for the old handle, starting over if the slot changes
+        for (;;) {
+            Table table = settle();
+            boolean raced = false;
+            for (int i = 0; i < table.slots.length() && !raced; i++) {
+                Object slot = table.slots.get(i);
+                if (slot instanceof Entry && ((Entry) slot).live
+                    && from.equals(((Entry) slot).handle)) {
+                    if (table.slots.compareAndSet(i, slot,
+                        new Entry(((Entry) slot).key, to, true))) {
+                        return true;
+                    }
+                    raced = true;
+                }
+            }
+            if (!raced) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        Table table = settle();
+        for (int i = 0; i < table.slots.length(); i++) {
+            Object slot = table.slots.get(i);
+            if (slot instanceof Entry && ((Entry) slot).live) {
+                action.accept(((Entry) slot).key);
+            }
+        }
+    }
+
+    @Override
+    public void displayHash() {
+        Table table = settle();
+        output.println("Hashtable:");
+        for (int i = 0; i < table.slots.length(); i++) {
+            Object slot = table.slots.get(i);
+            if (slot instanceof Entry && ((Entry) slot).live) {
+                output.println(i + ": " + ((Entry) slot).key);
+            }
+        }
+        output.println("total records: " + totalEntries.get());
+    }
+
+    @Override
+    public int count() {
+        return totalEntries.get();
+    }
+
+    /**
+     * Gets the number of slots in the table in use.
+     *
+     * @return The table length.
+     */
+    public int limit() {
+        return current.get().slots.length();
+    }
+
+    /**
+     * Gets the number of times a replacement table was started, whether
+     * it was bigger or only dropped dead entries.
+     *
+     * @return The resize count.
+     */
+    public int resizes() {
+        return resizes.get();
+    }
+
+    private int home(int id, int length) {
+        return hashFunction.mix(id) % length;
+    }
+
+    private static int keyOf(Object slot) {
+        return slot instanceof Frozen
+            ? ((Frozen) slot).entry.key
+            : ((Entry) slot).key;
+    }
+
+    /**
+     * Finds the entry for an ID by reading slots only, following the
+     * chain of tables while a resize is under way.
+     *
+     * @return The entry, live or dead, or null if the ID was never added.
+     */
+    private Entry find(Table table, int id) {
+        int length = table.slots.length();
+        int slot = home(id, length);
+        for (int probes = 0; probes < length; probes++) {
+            Object found = table.slots.get(slot);
+            if (found == null) {
+                return null;
+            }
+            if (found == MOVED) {
+                return find(table.next.get(), id);
+            }
+            if (found instanceof Frozen) {
+                Entry frozen = ((Frozen) found).entry;
+                if (frozen.key == id) {
+                    // Until its copy appears, the frozen entry is current
+                    Entry copy = find(table.next.get(), id);
+                    return copy != null ? copy : frozen;
+                }
+            }
+            else if (((Entry) found).key == id) {
+                return (Entry) found;
+            }
+            slot = slot + 1 == length ? 0 : slot + 1;
+        }
+        Table next = table.next.get();
+        return next == null ? null : find(next, id);
+    }
+
+    /**
+     * Finds the slot holding the entry for an ID in the newest table that
+     * can take changes to it, helping any resize on the way. With create,
+     * an absent ID gets a slot holding a dead entry.
+     *
+     * @return The slot, or null if the ID is absent and create is false.
+     */
+    private Position locate(Table table, int id, boolean create) {
+        for (;;) {
+            if (table.next.get() != null) {
+                helpResize(table);
+            }
+            int length = table.slots.length();
+            int slot = home(id, length);
+            Table moveTo = null;
+            for (int probes = 0; probes < length && moveTo == null;) {
+                Object found = table.slots.get(slot);
+                Table next = table.next.get();
+                if (found == null) {
+                    if (next != null) {
+                        // Keep the ID out of a table being replaced
+                        table.slots.compareAndSet(slot, null, MOVED);
+                    }
+                    else if (!create) {
+                        return null;
+                    }
+                    else if (table.slots.compareAndSet(slot, null,
+                        new Entry(id, null, false))) {
+                        claimed(table);
+                        return new Position(table, slot);
+                    }
+                }
+                else if (found == MOVED) {
+                    moveTo = next;
+                }
+                else if (keyOf(found) != id) {
+                    slot = slot + 1 == length ? 0 : slot + 1;
+                    probes++;
+                }
+                else if (found instanceof Frozen) {
+                    copy(((Frozen) found).entry, next);
+                    moveTo = next;
+                }
+                else if (next == null) {
+                    return new Position(table, slot);
+                }
+                else {
+                    table.slots.compareAndSet(slot, found,
+                        new Frozen((Entry) found));
+                }
+            }
+            if (moveTo == null) {
+                // Every slot is claimed by other IDs
+                if (table.next.get() == null) {
+                    if (!create) {
+                        return null;
+                    }
+                    startResize(table);
+                }
+                moveTo = table.next.get();
+            }
+            table = moveTo;
+        }
+    }
+
+    private Entry remove(int id) {
+        if (id < 0) {
+            return null;
+        }
+        for (;;) {
+            Position at = locate(current.get(), id, false);
+            if (at == null) {
+                return null;
+            }
+            Object slot = at.table.slots.get(at.slot);
+            if (!(slot instanceof Entry)) {
+                continue;
+            }
+            Entry entry = (Entry) slot;
+            if (!entry.live) {
+                return null;
+            }
+            if (at.table.slots.compareAndSet(at.slot, entry,
+                new Entry(id, null, false))) {
+                totalEntries.decrementAndGet();
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Copies a frozen entry into the next table unless its ID already has
+     * a slot there, which means it was copied or changed since.
+     */
+    private void copy(Entry entry, Table table) {
+        if (!entry.live) {
+            return;
+        }
+        for (;;) {
+            int length = table.slots.length();
+            int slot = home(entry.key, length);
+            Table moveTo = null;
+            for (int probes = 0; probes < length && moveTo == null;) {
+                Object found = table.slots.get(slot);
+                if (found == null) {
+                    if (table.next.get() != null) {
+                        table.slots.compareAndSet(slot, null, MOVED);
+                    }
+                    else if (table.slots.compareAndSet(slot, null, entry)) {
+                        claimed(table);
+                        return;
+                    }
+                }
+                else if (found == MOVED) {
+                    moveTo = table.next.get();
+                }
+                else if (keyOf(found) == entry.key) {
+                    return;
+                }
+                else {
+                    slot = slot + 1 == length ? 0 : slot + 1;
+                    probes++;
+                }
+            }
+            if (moveTo == null) {
+                startResize(table);
+                moveTo = table.next.get();
+            }
+            table = moveTo;
+        }
+    }
+
+    private void claimed(Table table) {
+        if (table.claimed.incrementAndGet() > table.threshold) {
+            startResize(table);
+        }
+    }
+
+    /**
+     * Links a replacement to a table. It doubles if the live entries
+     * fill at least half the threshold, and is the same size otherwise,
+     * which only drops the dead entries. Entries move over later, as
+     * threads help.
+     */
+    private void startResize(Table table) {
+        if (table.next.get() != null) {
+            return;
+        }
+        int length = table.slots.length();
+        int size = totalEntries.get() >= length * loadFactor / 2
+            ? length * 2
+            : length;
+        if (table.next.compareAndSet(null, new Table(size, loadFactor))) {
+            resizes.incrementAndGet();
+            if (size > length) {
+                output.println(
+                    "Hash table expanded to " + size + " records");
+            }
+        }
+    }
+
+    /**
+     * Moves the next unclaimed chunk of slots of a table being replaced.
+     * The thread moving the last slots makes the new table current.
+     */
+    private void helpResize(Table table) {
+        Table next = table.next.get();
+        int length = table.slots.length();
+        int start = table.nextChunk.getAndAdd(CHUNK);
+        if (start >= length) {
+            return;
+        }
+        int end = Math.min(length, start + CHUNK);
+        for (int slot = start; slot < end; slot++) {
+            moveSlot(table, slot, next);
+        }
+        if (table.moved.addAndGet(end - start) == length) {
+            table.replaced = true;
+            promote();
+        }
+    }
+
+    private void moveSlot(Table table, int slot, Table next) {
+        for (;;) {
+            Object found = table.slots.get(slot);
+            if (found == MOVED) {
+                return;
+            }
+            if (found == null) {
+                if (table.slots.compareAndSet(slot, null, MOVED)) {
+                    return;
+                }
+            }
+            else if (found instanceof Frozen) {
+                copy(((Frozen) found).entry, next);
+                return;
+            }
+            else {
+                table.slots.compareAndSet(slot, found,
+                    new Frozen((Entry) found));
+            }
+        }
+    }
+
+    /**
+     * Advances the current table past every table that has been fully
+     * moved. Replacements can finish out of order, so this keeps going
+     * until it reaches one still in use.
+     */
+    private void promote() {
+        for (;;) {
+            Table table = current.get();
+            if (!table.replaced) {
+                return;
+            }
+            current.compareAndSet(table, table.next.get());
+        }
+    }
+
+    /**
+     * Finishes any resize under way, waiting for other threads still
+     * moving their chunks.
+     *
+     * @return The current table, with no replacement pending.
+     */
+    private Table settle() {
+        for (;;) {
+            Table table = current.get();
+            if (table.next.get() == null) {
+                return table;
+            }
+            if (table.nextChunk.get() >= table.slots.length()) {
+                Thread.onSpinWait();
+            }
+            helpResize(table);
+        }
+    }
+}
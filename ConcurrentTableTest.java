@@ -0,0 +1,236 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import student.TestCase;
+
+/**
+ * Test class for ConcurrentTable
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ConcurrentTableTest extends TestCase {
+
+    private static final int THREADS = 4;
+
+    private ConcurrentTable table;
+
+    /**
+     * Sets up a table of 8 slots before each test.
+     */
+    @Override
+    public void setUp() {
+        table = new ConcurrentTable(8, 0.75, HashFunction.MODULO,
+            new ConsoleSink());
+    }
+
+    /**
+     * Tests adding, finding and deleting entries.
+     */
+    public void testAddRetrieveDelete() {
+        Handle handle = new Handle(10, 5);
+        assertTrue(table.addEntry(3, handle));
+        assertFalse(table.addEntry(3, new Handle(0, 1)));
+        assertFalse(table.addEntry(-1, handle));
+        assertEquals(handle, table.retrieve(3));
+        assertNull(table.retrieve(11));
+        assertNull(table.retrieve(-1));
+        assertEquals(handle, table.removeEntry(3));
+        assertFalse(table.deleteEntry(3));
+        assertNull(table.retrieve(3));
+        assertEquals(0, table.count());
+        assertTrue(table.addEntry(3, new Handle(1, 1)));
+        assertEquals(1, table.retrieve(3).getStartPosition());
+    }
+
+    /**
+     * Tests that the handle is only asked for when the ID is absent.
+     */
+    public void testPutIfAbsent() {
+        Handle handle = new Handle(4, 4);
+        assertNull(table.putIfAbsent(12, () -> handle));
+        assertEquals(handle, table.putIfAbsent(12, () -> {
+            throw new AssertionError("handle asked for twice");
+        }));
+        Exception thrown = null;
+        try {
+            table.putIfAbsent(-2, () -> handle);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+    /**
+     * Tests that the table doubles once its load factor is passed, keeping
+     * every entry, and lists them.
+     */
+    public void testGrows() {
+        for (int id = 0; id < 10; id++) {
+            table.addEntry(id, new Handle(id, 1));
+        }
+        assertEquals(16, table.limit());
+        assertEquals(1, table.resizes());
+        assertTrue(systemOut().getHistory().contains(
+            "Hash table expanded to 16 records"));
+        for (int id = 0; id < 10; id++) {
+            assertEquals(id, table.retrieve(id).getStartPosition());
+        }
+        systemOut().clearHistory();
+        table.displayHash();
+        assertTrue(systemOut().getHistory().startsWith("Hashtable:\n0: 0\n"));
+        assertTrue(systemOut().getHistory().endsWith(
+            "total records: 10\n"));
+        int[] sum = new int[1];
+        table.forEachId(id -> sum[0] += id);
+        assertEquals(45, sum[0]);
+    }
+
+    /**
+     * Tests that dead entries left by churn are dropped by a replacement
+     * of the same size instead of growing the table.
+     */
+    public void testChurnKeepsSize() {
+        for (int id = 0; id < 1000; id++) {
+            assertTrue(table.addEntry(id, new Handle(id, 1)));
+            assertTrue(table.deleteEntry(id));
+        }
+        assertEquals(8, table.limit());
+        assertTrue(table.resizes() > 100);
+        assertEquals(0, table.count());
+    }
+
+    /**
+     * Tests pointing entries at moved records.
+     */
+    public void testRelocate() {
+        Handle from = new Handle(0, 8);
+        Handle to = new Handle(64, 8);
+        table.addEntry(5, from);
+        assertTrue(table.relocate(5, from, to));
+        assertEquals(to, table.retrieve(5));
+        assertFalse(table.relocate(5, from, to));
+        assertTrue(table.relocate(-1, to, from));
+        assertEquals(from, table.retrieve(5));
+    }
+
+    /**
+     * Tests that threads adding and deleting their own IDs through many
+     * resizes leave exactly the entries they kept.
+     */
+    public void testConcurrentWriters() throws InterruptedException {
+        int ids = 20000;
+        runThreads(thread -> {
+            for (int id = thread; id < ids; id += THREADS) {
+                assertTrue(table.addEntry(id, new Handle(id, 1)));
+            }
+            for (int id = thread; id < ids; id += THREADS) {
+                if (id % 3 == 0) {
+                    assertTrue(table.deleteEntry(id));
+                }
+            }
+        });
+        int kept = 0;
+        for (int id = 0; id < ids; id++) {
+            Handle handle = table.retrieve(id);
+            if (id % 3 == 0) {
+                assertNull(handle);
+            }
+            else {
+                assertEquals(id, handle.getStartPosition());
+                kept++;
+            }
+        }
+        assertEquals(kept, table.count());
+        AtomicInteger listed = new AtomicInteger();
+        table.forEachId(id -> listed.incrementAndGet());
+        assertEquals(kept, listed.get());
+    }
+
+    /**
+     * Tests that when threads race to add the same IDs, exactly one adds
+     * each and the others get its handle back.
+     */
+    public void testOneWinnerPerId() throws InterruptedException {
+        int ids = 5000;
+        AtomicInteger added = new AtomicInteger();
+        runThreads(thread -> {
+            for (int id = 0; id < ids; id++) {
+                Handle mine = new Handle(thread, id);
+                Handle existing = table.putIfAbsent(id, () -> mine);
+                if (existing == null) {
+                    added.incrementAndGet();
+                }
+                else {
+                    assertEquals(id, existing.getDataLength());
+                }
+            }
+        });
+        assertEquals(ids, added.get());
+        assertEquals(ids, table.count());
+    }
+
+    /**
+     * Tests that lookups never miss a present ID while other threads
+     * resize the table under them.
+     */
+    public void testReadersDuringResize() throws InterruptedException {
+        int stable = 500;
+        for (int id = 0; id < stable; id++) {
+            table.addEntry(id, new Handle(id, 1));
+        }
+        runThreads(thread -> {
+            if (thread == 0) {
+                // Grow the table, then fill it with dead entries
+                for (int id = stable; id < 20000; id++) {
+                    table.addEntry(id, new Handle(id, 1));
+                }
+                for (int id = stable; id < 20000; id++) {
+                    table.deleteEntry(id);
+                }
+                for (int id = 20000; id < 40000; id++) {
+                    table.addEntry(id, new Handle(id, 1));
+                    table.deleteEntry(id);
+                }
+                return;
+            }
+            for (int round = 0; round < 100; round++) {
+                for (int id = 0; id < stable; id++) {
+                    assertEquals(id, table.retrieve(id).getStartPosition());
+                }
+            }
+        });
+        assertEquals(stable, table.count());
+    }
+
+    /**
+     * Runs a body on THREADS threads at once, passing each its number,
+     * and fails if any of them did.
+     */
+    private void runThreads(IntConsumer body) throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            int number = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    body.accept(number);
+                }
+                catch (Throwable t) {
+                    failures[number] = t;
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Sink that prints every line directly to System.out, exactly as the
+ * database did before sinks existed. System.out is looked up on every
+ * call, so the sink follows System.setOut.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ConsoleSink implements OutputSink {
+
+    @Override
+    public void print(String text) {
+        System.out.print(text);
+    }
+
+    @Override
+    public void print(char c) {
+        System.out.print(c);
+    }
+
+    @Override
+    public void print(char[] chars, int offset, int length) {
+        System.out.print(String.valueOf(chars, offset, length));
+    }
+
+    @Override
+    public void println(String line) {
+        System.out.println(line);
+    }
+
+    @Override
+    public void flush() {
+        System.out.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * A Bloom filter of 4-bit counters, so keys can be removed as well as
+ * added. A key sets k counters chosen by double hashing; it may be
+ * present only if all of them are non-zero. A counter that reaches 15
+ * stays there, since its true count is no longer known.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+
+    private final long[] counters;
+    private final long size;
+    private final int hashes;
+    private final int capacity;
+    private final double targetRate;
+    private int keys;
+
+    /**
+     * Creates a filter sized for a number of keys and a false positive
+     * rate.
+     *
+     * @param capacity Number of keys the rate is promised for.
+     * @param falsePositiveRate Target rate, between 0 and 1.
+     */
+    public CountingBloomFilter(int capacity, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                "False positive rate must be between 0 and 1: "
+                    + falsePositiveRate);
+        }
+        this.capacity = Math.max(1, capacity);
+        this.targetRate = falsePositiveRate;
+        double ln2 = Math.log(2);
+        long optimal = (long) Math.ceil(-this.capacity
+            * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.size = Math.max(64, (optimal + 15) / 16 * 16);
+        this.hashes = Math.max(1,
+            (int) Math.round((double) size / this.capacity * ln2));
+        this.counters = new long[(int) (size / 16)];
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key The key.
+     */
+    public void add(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long slot = index(h1 + i * h2);
+            int count = get(slot);
+            if (count < MAX_COUNT) {
+                set(slot, count + 1);
+            }
+        }
+        keys++;
+    }
+
+    /**
+     * Removes a key that was added before.
+     *
+     * @param key The key.
+     */
+    public void remove(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long slot = index(h1 + i * h2);
+            int count = get(slot);
+            if (count > 0 && count < MAX_COUNT) {
+                set(slot, count - 1);
+            }
+        }
+        keys--;
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key The key.
+     * @return false if the key is definitely absent.
+     */
+    public boolean mightContain(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            if (get(index(h1 + i * h2)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of keys the rate was promised for.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of keys held.
+     *
+     * @return The key count.
+     */
+    public int keys() {
+        return keys;
+    }
+
+    /**
+     * Gets the false positive rate the filter was sized for.
+     *
+     * @return The target rate.
+     */
+    public double targetRate() {
+        return targetRate;
+    }
+
+    /**
+     * Estimates the false positive rate with the keys now held.
+     *
+     * @return The expected rate.
+     */
+    public double expectedRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * keys / size),
+            hashes);
+    }
+
+    /**
+     * Gets the memory used by the counters.
+     *
+     * @return The size in bytes.
+     */
+    public long memoryBytes() {
+        return counters.length * 8L;
+    }
+
+    /**
+     * Gets the number of hash functions.
+     *
+     * @return The k of the filter.
+     */
+    public int hashes() {
+        return hashes;
+    }
+
+    private long index(int hash) {
+        return (hash & 0xFFFFFFFFL) % size;
+    }
+
+    private int get(long slot) {
+        return (int) (counters[(int) (slot >>> 4)] >>> ((slot & 15) << 2))
+            & MAX_COUNT;
+    }
+
+    private void set(long slot, int count) {
+        int word = (int) (slot >>> 4);
+        int shift = (int) (slot & 15) << 2;
+        counters[word] = (counters[word] & ~(0xFL << shift))
+            | ((long) count << shift);
+    }
+
+    /**
+     * The murmur3 64-bit finalizer, spreading the key over both halves.
+     */
+    private static long mix(int key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
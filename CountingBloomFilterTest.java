@@ -0,0 +1,86 @@
+import student.TestCase;
+
+/**
+ * Test class for CountingBloomFilter
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CountingBloomFilterTest extends TestCase {
+
+    /**
+     * Tests that added keys are always reported as present.
+     */
+    public void testNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int key = 0; key < 1000; key++) {
+            filter.add(key * 7);
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(filter.mightContain(key * 7));
+        }
+        assertEquals(1000, filter.keys());
+    }
+
+    /**
+     * Tests that the false positive rate stays near the target.
+     */
+    public void testFalsePositiveRate() {
+        CountingBloomFilter filter = new CountingBloomFilter(2000, 0.01);
+        for (int key = 0; key < 2000; key++) {
+            filter.add(key);
+        }
+        int positives = 0;
+        for (int key = 100000; key < 110000; key++) {
+            if (filter.mightContain(key)) {
+                positives++;
+            }
+        }
+        assertTrue(positives < 300);
+        assertTrue(filter.expectedRate() < 0.02);
+        assertEquals(7, filter.hashes());
+    }
+
+    /**
+     * Tests that removed keys are no longer reported, while the others
+     * still are.
+     */
+    public void testRemove() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.001);
+        for (int key = 0; key < 100; key++) {
+            filter.add(key);
+        }
+        for (int key = 0; key < 100; key += 2) {
+            filter.remove(key);
+        }
+        int stale = 0;
+        for (int key = 0; key < 100; key++) {
+            if (key % 2 == 1) {
+                assertTrue(filter.mightContain(key));
+            }
+            else if (filter.mightContain(key)) {
+                stale++;
+            }
+        }
+        assertTrue(stale < 5);
+        assertEquals(50, filter.keys());
+    }
+
+    /**
+     * Tests that the size follows from the capacity and the rate.
+     */
+    public void testSizing() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        // About 9.6 counters per key at four bits each
+        assertEquals(4800, filter.memoryBytes());
+        assertEquals(0.01, filter.targetRate(), 0.0);
+        Exception thrown = null;
+        try {
+            new CountingBloomFilter(10, 1.5);
+        }
+        catch (IllegalArgumentException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Sink that throws all output away and only counts it, so benchmark runs
+ * measure the database rather than the terminal.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CountingSink implements OutputSink {
+
+    private static final int SEPARATOR_LENGTH =
+        System.lineSeparator().length();
+
+    private long lines;
+    private long characters;
+
+    @Override
+    public void print(String text) {
+        characters += text.length();
+    }
+
+    @Override
+    public void print(char c) {
+        characters++;
+    }
+
+    @Override
+    public void print(char[] chars, int offset, int length) {
+        characters += length;
+    }
+
+    @Override
+    public void println(String line) {
+        lines++;
+        characters += line.length() + SEPARATOR_LENGTH;
+    }
+
+    /**
+     * Gets the number of println calls seen.
+     *
+     * @return The line count.
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the number of characters that would have been written.
+     *
+     * @return The character count, including line separators.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is buffered
+    }
+
+    @Override
+    public void close() {
+        // Nothing is held
+    }
+}
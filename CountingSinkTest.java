@@ -0,0 +1,26 @@
+import student.TestCase;
+
+/**
+ * Test class for CountingSink
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CountingSinkTest extends TestCase {
+
+    /**
+     * Tests that output is counted but never printed.
+     */
+    public void testCounts() {
+        CountingSink sink = new CountingSink();
+        SeminarDB db = new SeminarDB(64, 4, sink);
+        db.findSeminar(5);
+        sink.print("abc");
+        sink.close();
+        assertEquals("", systemOut().getHistory());
+        assertEquals(1, sink.getLines());
+        String miss = "Search FAILED -- There is no record with ID 5";
+        assertEquals(miss.length() + System.lineSeparator().length() + 3,
+            sink.getCharacters());
+    }
+}
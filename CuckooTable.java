@@ -0,0 +1,448 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A hash index using cuckoo hashing, for searches whose worst case must
+ * stay bounded. Every ID has exactly one possible slot in each of two
+ * tables, plus a small stash, so a lookup reads at most two slots and the
+ * stash however full the index is.
+ *
+ * An insert that finds both of its slots taken moves the entry in one of
+ * them to its slot in the other table, which may move another entry, and
+ * so on. A chain longer than MAX_KICKS ends with the homeless entry in
+ * the stash; when the stash is full, every entry is rehashed with new
+ * hash seeds, and the tables double if that keeps failing.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CuckooTable implements HashIndex {
+
+    /** Default share of slots that may be live before the tables double. */
+    public static final double DEFAULT_LOAD_FACTOR = 0.45;
+
+    /** Most entries moved by one insert before it gives up. */
+    static final int MAX_KICKS = 64;
+
+    /** Number of entries the stash holds. */
+    static final int STASH_SIZE = 4;
+
+    private static final int EMPTY = -1;
+    private static final int TRIES_BEFORE_GROWING = 3;
+
+    private final double loadFactor;
+    private final Random seedSource = new Random(0x5EED);
+    private final int[] seeds = new int[2];
+    // Slots of table t are at t * tableSize to (t + 1) * tableSize - 1
+    private int tableSize;
+    private int[] keys;
+    private Handle[] handles;
+    private final int[] stashKeys = new int[STASH_SIZE];
+    private final Handle[] stashHandles = new Handle[STASH_SIZE];
+    private int stashCount;
+    private int totalEntries;
+    private long kicks;
+    private int longestChain;
+    private int rehashes;
+    private boolean reportProbes;
+    private OutputSink output;
+
+    // Entry left without a slot by the last failed insert
+    private int homelessKey;
+    private Handle homelessHandle;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param initialSize Initial number of slots over both tables.
+     * @param loadFactor Share of slots that may be live before the tables
+     *        double, above 0 and below 0.5.
+     * @param output Where listings and expansion messages are written.
+     */
+    public CuckooTable(int initialSize, double loadFactor,
+        OutputSink output) {
+        if (loadFactor <= 0 || loadFactor >= 0.5) {
+            throw new IllegalArgumentException(
+                "Load factor must be between 0 and 0.5: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.output = output;
+        allocate(Math.max(2, initialSize / 2));
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle retrieve(int id) {
+        int slot = find(id);
+        return slot == EMPTY ? null : handleAt(slot);
+    }
+
+    @Override
+    public boolean addEntry(int id, Handle handle) {
+        if (id < 0) {
+            return false;
+        }
+        return putIfAbsent(id, () -> handle) == null;
+    }
+
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid ID " + id);
+        }
+        int slot = find(id);
+        if (slot != EMPTY) {
+            return handleAt(slot);
+        }
+        Handle added = handle.get();
+        if (totalEntries >= 2 * tableSize * loadFactor) {
+            rehash(tableSize * 2);
+        }
+        totalEntries++;
+        if (!insert(id, added) && !stash(homelessKey, homelessHandle)) {
+            rehash(tableSize);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean deleteEntry(int id) {
+        int slot = find(id);
+        if (slot == EMPTY) {
+            return false;
+        }
+        remove(slot);
+        return true;
+    }
+
+    @Override
+    public Handle removeEntry(int id) {
+        int slot = find(id);
+        if (slot == EMPTY) {
+            return null;
+        }
+        Handle removed = handleAt(slot);
+        remove(slot);
+        return removed;
+    }
+
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        int slot = find(id);
+        if (slot >= 0 && from.equals(handles[slot])) {
+            handles[slot] = to;
+            return true;
+        }
+        if (slot < EMPTY && from.equals(stashHandles[-2 - slot])) {
+            stashHandles[-2 - slot] = to;
+            return true;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && from.equals(handles[i])) {
+                handles[i] = to;
+                return true;
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (from.equals(stashHandles[i])) {
+                stashHandles[i] = to;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        for (int key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            action.accept(stashKeys[i]);
+        }
+    }
+
+    @Override
+    public void displayHash() {
+        output.println("Hashtable:");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                output.println(i + ": " + keys[i]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            output.println("stash: " + stashKeys[i]);
+        }
+        output.println("total records: " + totalEntries);
+        if (reportProbes) {
+            HashTable.printProbes(probeHistogram(), totalEntries, output);
+            output.println("kick-outs: " + kicks + ", longest chain "
+                + longestChain + ", rehashes " + rehashes);
+        }
+    }
+
+    @Override
+    public int count() {
+        return totalEntries;
+    }
+
+    /**
+     * Gets the number of slots over both tables, the stash not included.
+     *
+     * @return The slot count.
+     */
+    public int limit() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the number of entries moved to make room for inserts.
+     *
+     * @return The kick-out count.
+     */
+    public long kicks() {
+        return kicks;
+    }
+
+    /**
+     * Gets the most entries moved by a single insert.
+     *
+     * @return The longest kick-out chain.
+     */
+    public int longestChain() {
+        return longestChain;
+    }
+
+    /**
+     * Gets the number of times every entry was rehashed, at the same size
+     * or while doubling.
+     *
+     * @return The rehash count.
+     */
+    public int rehashes() {
+        return rehashes;
+    }
+
+    /**
+     * Gets the number of entries in the stash.
+     *
+     * @return The stash count.
+     */
+    public int stashed() {
+        return stashCount;
+    }
+
+    /**
+     * Counts the live entries by the number of slots a lookup reads to
+     * find them: 1 for the first table, 2 for the second and more for
+     * the stash.
+     *
+     * @return Entries found after each number of probes, indexed by that
+     *         number; index 0 is always 0.
+     */
+    public int[] probeHistogram() {
+        int[] histogram = new int[3 + stashCount];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                histogram[i < tableSize ? 1 : 2]++;
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            histogram[3 + i]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Makes displayHash also print the probe length histogram and the
+     * kick-out counts.
+     *
+     * @param report true to print them.
+     */
+    public void setProbeReport(boolean report) {
+        this.reportProbes = report;
+    }
+
+    /**
+     * Finds an ID.
+     *
+     * @return Its slot, -2 minus its stash position, or EMPTY.
+     */
+    private int find(int id) {
+        if (id < 0) {
+            return EMPTY;
+        }
+        int first = slot(0, id);
+        if (keys[first] == id) {
+            return first;
+        }
+        int second = slot(1, id);
+        if (keys[second] == id) {
+            return second;
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashKeys[i] == id) {
+                return -2 - i;
+            }
+        }
+        return EMPTY;
+    }
+
+    private int slot(int table, int id) {
+        return table * tableSize
+            + HashFunction.MURMUR3.mix(id ^ seeds[table]) % tableSize;
+    }
+
+    /**
+     * Places an entry, moving others out of the way. On failure the entry
+     * still without a slot is left in homelessKey and homelessHandle.
+     */
+    private boolean insert(int key, Handle handle) {
+        int first = slot(0, key);
+        int second = slot(1, key);
+        int slot = keys[first] == EMPTY ? first : second;
+        int table = slot == first ? 0 : 1;
+        for (int chain = 0; chain <= MAX_KICKS; chain++) {
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                handles[slot] = handle;
+                longestChain = Math.max(longestChain, chain);
+                return true;
+            }
+            int evictedKey = keys[slot];
+            Handle evictedHandle = handles[slot];
+            keys[slot] = key;
+            handles[slot] = handle;
+            key = evictedKey;
+            handle = evictedHandle;
+            kicks++;
+            table = 1 - table;
+            slot = slot(table, key);
+        }
+        longestChain = Math.max(longestChain, MAX_KICKS);
+        homelessKey = key;
+        homelessHandle = handle;
+        return false;
+    }
+
+    private boolean stash(int key, Handle handle) {
+        if (stashCount == STASH_SIZE) {
+            return false;
+        }
+        stashKeys[stashCount] = key;
+        stashHandles[stashCount] = handle;
+        stashCount++;
+        return true;
+    }
+
+    private void unstash(int position) {
+        stashCount--;
+        stashKeys[position] = stashKeys[stashCount];
+        stashHandles[position] = stashHandles[stashCount];
+        stashHandles[stashCount] = null;
+    }
+
+    /**
+     * Moves stashed entries whose own slot has come free back into the
+     * tables, so the stash stays as short as possible.
+     */
+    private void emptyStash() {
+        for (int i = stashCount - 1; i >= 0; i--) {
+            int key = stashKeys[i];
+            for (int table = 0; table < 2; table++) {
+                int slot = slot(table, key);
+                if (keys[slot] == EMPTY) {
+                    keys[slot] = key;
+                    handles[slot] = stashHandles[i];
+                    unstash(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    private Handle handleAt(int slot) {
+        return slot >= 0 ? handles[slot] : stashHandles[-2 - slot];
+    }
+
+    /**
+     * Empties a slot or stash position found by find.
+     */
+    private void remove(int slot) {
+        if (slot >= 0) {
+            keys[slot] = EMPTY;
+            handles[slot] = null;
+            emptyStash();
+        }
+        else {
+            unstash(-2 - slot);
+        }
+        totalEntries--;
+    }
+
+    private void allocate(int size) {
+        tableSize = size;
+        keys = new int[2 * size];
+        handles = new Handle[2 * size];
+        Arrays.fill(keys, EMPTY);
+        seeds[0] = seedSource.nextInt();
+        seeds[1] = seedSource.nextInt();
+    }
+
+    /**
+     * Reinserts every entry with new seeds, doubling the tables when the
+     * size asked for is bigger or when several seeds in a row fail. The
+     * entry a failed insert left homeless is included.
+     */
+    private void rehash(int size) {
+        int[] oldKeys = keys;
+        Handle[] oldHandles = handles;
+        int count = 0;
+        int[] pendingKeys = new int[totalEntries + 1];
+        Handle[] pendingHandles = new Handle[totalEntries + 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                pendingKeys[count] = oldKeys[i];
+                pendingHandles[count++] = oldHandles[i];
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            pendingKeys[count] = stashKeys[i];
+            pendingHandles[count++] = stashHandles[i];
+            stashHandles[i] = null;
+        }
+        if (count < totalEntries) {
+            pendingKeys[count] = homelessKey;
+            pendingHandles[count++] = homelessHandle;
+        }
+        int target = size;
+        for (int attempt = 1;; attempt++) {
+            rehashes++;
+            allocate(target);
+            stashCount = 0;
+            boolean placed = true;
+            for (int i = 0; i < count && placed; i++) {
+                placed = insert(pendingKeys[i], pendingHandles[i])
+                    || stash(homelessKey, homelessHandle);
+            }
+            if (placed) {
+                break;
+            }
+            if (attempt % TRIES_BEFORE_GROWING == 0) {
+                target *= 2;
+            }
+        }
+        if (target > oldKeys.length / 2) {
+            output.println(
+                "Hash table expanded to " + keys.length + " records");
+        }
+    }
+}
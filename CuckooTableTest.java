@@ -0,0 +1,116 @@
+import student.TestCase;
+
+/**
+ * Test class for CuckooTable
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class CuckooTableTest extends TestCase {
+
+    private CuckooTable table;
+
+    /**
+     * Sets up a table of 8 slots before each test.
+     */
+    @Override
+    public void setUp() {
+        table = new CuckooTable(8, CuckooTable.DEFAULT_LOAD_FACTOR,
+            new ConsoleSink());
+    }
+
+    /**
+     * Tests adding, finding and deleting entries.
+     */
+    public void testAddRetrieveDelete() {
+        Handle handle = new Handle(10, 5);
+        assertTrue(table.addEntry(3, handle));
+        assertFalse(table.addEntry(3, new Handle(0, 1)));
+        assertFalse(table.addEntry(-1, handle));
+        assertEquals(handle, table.retrieve(3));
+        assertNull(table.retrieve(11));
+        assertNull(table.retrieve(-1));
+        assertEquals(handle, table.removeEntry(3));
+        assertFalse(table.deleteEntry(3));
+        assertEquals(0, table.count());
+    }
+
+    /**
+     * Tests that many entries stay reachable through kick-outs, stash
+     * use and rehashing, each in one of a bounded number of places.
+     */
+    public void testManyEntries() {
+        for (int id = 0; id < 20000; id += 2) {
+            assertNull(table.putIfAbsent(id, () -> new Handle(1, 1)));
+        }
+        assertEquals(10000, table.count());
+        assertTrue(table.kicks() > 0);
+        assertTrue(table.longestChain() > 0);
+        assertTrue(table.longestChain() <= CuckooTable.MAX_KICKS);
+        assertTrue(table.rehashes() > 0);
+        assertTrue(table.stashed() <= CuckooTable.STASH_SIZE);
+        assertTrue(table.count() < table.limit() / 2);
+
+        int[] histogram = table.probeHistogram();
+        assertTrue(histogram.length <= 3 + CuckooTable.STASH_SIZE);
+        int found = 0;
+        for (int count : histogram) {
+            found += count;
+        }
+        assertEquals(10000, found);
+
+        for (int id = 0; id < 20000; id += 4) {
+            assertTrue(table.deleteEntry(id));
+        }
+        for (int id = 0; id < 20000; id++) {
+            assertEquals(id % 4 == 2, table.retrieve(id) != null);
+        }
+        assertEquals(5000, table.count());
+    }
+
+    /**
+     * Tests that the tables double at the load factor and say so.
+     */
+    public void testGrows() {
+        systemOut().clearHistory();
+        // 3.6 of the 8 slots may be live, so the fifth entry grows them
+        for (int id = 0; id < 5; id++) {
+            table.addEntry(id, new Handle(id, 1));
+        }
+        assertEquals(16, table.limit());
+        assertTrue(systemOut().getHistory().contains(
+            "Hash table expanded to 16 records"));
+        for (int id = 0; id < 5; id++) {
+            assertEquals(id, table.retrieve(id).getStartPosition());
+        }
+    }
+
+    /**
+     * Tests relocate, by ID and by scanning for the old handle.
+     */
+    public void testRelocate() {
+        Handle old = new Handle(10, 10);
+        Handle moved = new Handle(50, 10);
+        table.addEntry(1, old);
+        assertTrue(table.relocate(1, old, moved));
+        assertEquals(moved, table.retrieve(1));
+        assertTrue(table.relocate(-1, moved, old));
+        assertEquals(old, table.retrieve(1));
+        assertFalse(table.relocate(1, moved, old));
+    }
+
+    /**
+     * Tests the listing and the kick-out report of print hashtable.
+     */
+    public void testDisplay() {
+        table.addEntry(5, new Handle(0, 1));
+        table.setProbeReport(true);
+        systemOut().clearHistory();
+        table.displayHash();
+        String shown = systemOut().getHistory();
+        assertTrue(shown.startsWith("Hashtable:\n"));
+        assertTrue(shown.contains(": 5\ntotal records: 1\n"));
+        assertTrue(shown.contains("kick-outs: 0, longest chain 0, "
+            + "rehashes 0"));
+    }
+}
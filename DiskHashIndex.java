@@ -0,0 +1,520 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A hash index kept in a file of fixed-size pages, for ID sets too large
+ * for the heap. It uses linear hashing: buckets are split one at a time
+ * in order as the index fills, so it grows a page at a time and never
+ * copies the whole table. A full bucket chains to overflow pages.
+ *
+ * Only a small number of pages are held in the heap, in an LRU cache
+ * that writes changed pages back when they are evicted. The heap also
+ * holds the bucket directory, one int per bucket.
+ *
+ * Page layout: entry count, next overflow page (or -1), then the entries
+ * as (id, start position, data length).
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class DiskHashIndex implements HashIndex {
+
+    /** Size of every page in bytes. */
+    public static final int PAGE_SIZE = 4096;
+
+    /** Default number of pages cached in the heap. */
+    public static final int DEFAULT_CACHE_PAGES = 64;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int ENTRY_BYTES = 12;
+    private static final int SLOTS = (PAGE_SIZE - HEADER_BYTES) / ENTRY_BYTES;
+    private static final double MAX_LOAD = 0.75;
+    private static final int NO_PAGE = -1;
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * A cached page and whether it differs from the file.
+     */
+    private static class Page {
+        private final ByteBuffer data;
+        private boolean dirty;
+
+        Page(ByteBuffer data) {
+            this.data = data;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int initialBuckets;
+    private final Map<Integer, Page> cache;
+    private int level;
+    private int split;
+    private int bucketCount;
+    private int[] directory;
+    private int pageCount;
+    private int[] freePages = new int[16];
+    private int freeCount;
+    private int totalEntries;
+    private long pageReads;
+    private long pageWrites;
+    private OutputSink output;
+
+    // Page, byte offset and previous page of the last entry found by find
+    private int foundPage;
+    private int foundOffset;
+    private int foundPrevious;
+
+    /**
+     * Creates an empty index in a file, replacing what it held.
+     *
+     * @param path The index file.
+     * @param initialBuckets Number of buckets to start with, rounded up
+     *        to a power of two.
+     * @param cachePages Number of pages kept in the heap.
+     * @param output Where listings are written.
+     * @throws IOException if the file cannot be opened.
+     */
+    public DiskHashIndex(File path, int initialBuckets, int cachePages,
+        OutputSink output) throws IOException {
+        this.initialBuckets = Math.max(1,
+            Integer.highestOneBit(Math.max(1, initialBuckets - 1)) << 1);
+        this.output = output;
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        channel.truncate(0);
+        int cacheLimit = Math.max(2, cachePages);
+        this.cache = new LinkedHashMap<Integer, Page>(
+            cacheLimit * 2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Integer, Page> eldest) {
+                if (size() <= cacheLimit) {
+                    return false;
+                }
+                writeBack(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        directory = new int[this.initialBuckets * 2];
+        for (int bucket = 0; bucket < this.initialBuckets; bucket++) {
+            directory[bucket] = allocatePage();
+        }
+        bucketCount = this.initialBuckets;
+    }
+
+    /**
+     * Gets the number of buckets for a table of about the given number of
+     * records.
+     *
+     * @param records Expected number of records.
+     * @return A number of buckets to start with.
+     */
+    public static int bucketsFor(int records) {
+        return Math.max(1, records / SLOTS);
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle retrieve(int id) {
+        if (!find(id)) {
+            return null;
+        }
+        ByteBuffer page = page(foundPage).data;
+        return readHandle(page, foundOffset);
+    }
+
+    @Override
+    public boolean addEntry(int id, Handle handle) {
+        if (id < 0 || find(id)) {
+            return false;
+        }
+        append(id, handle);
+        return true;
+    }
+
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        if (find(id)) {
+            return readHandle(page(foundPage).data, foundOffset);
+        }
+        append(id, handle.get());
+        return null;
+    }
+
+    @Override
+    public boolean deleteEntry(int id) {
+        if (!find(id)) {
+            return false;
+        }
+        removeFound();
+        return true;
+    }
+
+    @Override
+    public Handle removeEntry(int id) {
+        if (!find(id)) {
+            return null;
+        }
+        Handle removed = readHandle(page(foundPage).data, foundOffset);
+        removeFound();
+        return removed;
+    }
+
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        if (id >= 0 && find(id)) {
+            Page page = page(foundPage);
+            if (from.equals(readHandle(page.data, foundOffset))) {
+                writeHandle(page, foundOffset, to);
+                return true;
+            }
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            for (int number = directory[bucket]; number != NO_PAGE;) {
+                Page page = page(number);
+                int count = page.data.getInt(0);
+                for (int i = 0; i < count; i++) {
+                    int offset = HEADER_BYTES + i * ENTRY_BYTES;
+                    if (from.equals(readHandle(page.data, offset))) {
+                        writeHandle(page, offset, to);
+                        return true;
+                    }
+                }
+                number = page.data.getInt(4);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            for (int number = directory[bucket]; number != NO_PAGE;) {
+                ByteBuffer page = page(number).data;
+                int count = page.getInt(0);
+                for (int i = 0; i < count; i++) {
+                    action.accept(
+                        page.getInt(HEADER_BYTES + i * ENTRY_BYTES));
+                }
+                number = page.getInt(4);
+            }
+        }
+    }
+
+    @Override
+    public void displayHash() {
+        output.println("Hashtable:");
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            for (int number = directory[bucket]; number != NO_PAGE;) {
+                ByteBuffer page = page(number).data;
+                int count = page.getInt(0);
+                for (int i = 0; i < count; i++) {
+                    output.println(bucket + ": "
+                        + page.getInt(HEADER_BYTES + i * ENTRY_BYTES));
+                }
+                number = page.getInt(4);
+            }
+        }
+        output.println("total records: " + totalEntries);
+    }
+
+    @Override
+    public int count() {
+        return totalEntries;
+    }
+
+    /**
+     * Gets the number of buckets.
+     *
+     * @return The bucket count.
+     */
+    public int buckets() {
+        return bucketCount;
+    }
+
+    /**
+     * Gets the number of pages read from the file because they were not
+     * cached.
+     *
+     * @return The page reads.
+     */
+    public long pageReads() {
+        return pageReads;
+    }
+
+    /**
+     * Gets the number of changed pages written back to the file.
+     *
+     * @return The page writes.
+     */
+    public long pageWrites() {
+        return pageWrites;
+    }
+
+    /**
+     * Writes every changed page back and closes the file.
+     *
+     * @throws IOException if the file cannot be written or closed.
+     */
+    public void close() throws IOException {
+        try {
+            for (Map.Entry<Integer, Page> entry : cache.entrySet()) {
+                writeBack(entry.getKey(), entry.getValue());
+            }
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Spreads the ID over all bits, since buckets are chosen by the low
+     * bits of the hash.
+     */
+    private static int mix(int id) {
+        int h = id * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    private int address(int id) {
+        int h = mix(id);
+        int bucket = h & ((initialBuckets << level) - 1);
+        if (bucket < split) {
+            // Already split in this round, so one more bit decides
+            bucket = h & ((initialBuckets << (level + 1)) - 1);
+        }
+        return bucket;
+    }
+
+    /**
+     * Looks for an ID, leaving its page and offset in foundPage and
+     * foundOffset, and the page before it in the chain in foundPrevious.
+     */
+    private boolean find(int id) {
+        int previous = NO_PAGE;
+        for (int number = directory[address(id)]; number != NO_PAGE;) {
+            ByteBuffer page = page(number).data;
+            int count = page.getInt(0);
+            for (int i = 0; i < count; i++) {
+                int offset = HEADER_BYTES + i * ENTRY_BYTES;
+                if (page.getInt(offset) == id) {
+                    foundPage = number;
+                    foundOffset = offset;
+                    foundPrevious = previous;
+                    return true;
+                }
+            }
+            previous = number;
+            number = page.getInt(4);
+        }
+        foundPage = NOT_FOUND;
+        return false;
+    }
+
+    /**
+     * Deletes the entry left by find by moving the last entry of its page
+     * into the hole, unlinking an overflow page that becomes empty.
+     */
+    private void removeFound() {
+        Page page = page(foundPage);
+        int count = page.data.getInt(0);
+        int last = HEADER_BYTES + (count - 1) * ENTRY_BYTES;
+        for (int field = 0; field < ENTRY_BYTES; field += 4) {
+            page.data.putInt(foundOffset + field,
+                page.data.getInt(last + field));
+        }
+        page.data.putInt(0, count - 1);
+        page.dirty = true;
+        if (count == 1 && foundPrevious != NO_PAGE) {
+            unlinkOverflow(foundPrevious, foundPage);
+        }
+        totalEntries--;
+    }
+
+    /**
+     * Stores a new entry and splits the next bucket if the index is now
+     * too full.
+     */
+    private void append(int id, Handle handle) {
+        place(id, handle == null ? 0 : handle.getStartPosition(),
+            handle == null ? -1 : handle.getDataLength());
+        totalEntries++;
+        if (totalEntries > MAX_LOAD * bucketCount * SLOTS) {
+            splitNext();
+        }
+    }
+
+    /**
+     * Stores an entry in the first page of its bucket's chain with room,
+     * adding an overflow page if they are all full.
+     */
+    private void place(int id, int start, int length) {
+        int number = directory[address(id)];
+        Page page = page(number);
+        while (page.data.getInt(0) == SLOTS) {
+            int next = page.data.getInt(4);
+            if (next == NO_PAGE) {
+                next = allocatePage();
+                page = page(number);
+                page.data.putInt(4, next);
+                page.dirty = true;
+            }
+            number = next;
+            page = page(number);
+        }
+        int count = page.data.getInt(0);
+        int offset = HEADER_BYTES + count * ENTRY_BYTES;
+        page.data.putInt(offset, id).putInt(offset + 4, start)
+            .putInt(offset + 8, length).putInt(0, count + 1);
+        page.dirty = true;
+    }
+
+    /**
+     * Splits the next bucket of the current round, moving about half of
+     * its entries to a new bucket at the end.
+     */
+    private void splitNext() {
+        int oldBucket = split;
+        int newBucket = oldBucket + (initialBuckets << level);
+
+        // Take every entry out of the old bucket's chain
+        int[] entries = new int[SLOTS * 3];
+        int taken = 0;
+        int number = directory[oldBucket];
+        while (number != NO_PAGE) {
+            ByteBuffer page = page(number).data;
+            int count = page.getInt(0);
+            if (taken + count * 3 > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            for (int i = 0; i < count; i++) {
+                int offset = HEADER_BYTES + i * ENTRY_BYTES;
+                entries[taken++] = page.getInt(offset);
+                entries[taken++] = page.getInt(offset + 4);
+                entries[taken++] = page.getInt(offset + 8);
+            }
+            int next = page.getInt(4);
+            if (number != directory[oldBucket]) {
+                freePage(number);
+            }
+            number = next;
+        }
+        Page first = page(directory[oldBucket]);
+        first.data.putInt(0, 0).putInt(4, NO_PAGE);
+        first.dirty = true;
+
+        if (newBucket == directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+        }
+        directory[newBucket] = allocatePage();
+        bucketCount++;
+        split++;
+        if (split == initialBuckets << level) {
+            level++;
+            split = 0;
+        }
+        for (int i = 0; i < taken; i += 3) {
+            place(entries[i], entries[i + 1], entries[i + 2]);
+        }
+    }
+
+    private void unlinkOverflow(int previous, int number) {
+        int next = page(number).data.getInt(4);
+        Page before = page(previous);
+        before.data.putInt(4, next);
+        before.dirty = true;
+        freePage(number);
+    }
+
+    private static Handle readHandle(ByteBuffer page, int offset) {
+        int length = page.getInt(offset + 8);
+        return length < 0
+            ? null
+            : new Handle(page.getInt(offset + 4), length);
+    }
+
+    private static void writeHandle(Page page, int offset, Handle handle) {
+        page.data.putInt(offset + 4, handle.getStartPosition())
+            .putInt(offset + 8, handle.getDataLength());
+        page.dirty = true;
+    }
+
+    private int allocatePage() {
+        int number = freeCount > 0 ? freePages[--freeCount] : pageCount++;
+        Page page = new Page(ByteBuffer.allocate(PAGE_SIZE));
+        page.data.putInt(0, 0).putInt(4, NO_PAGE);
+        page.dirty = true;
+        cache.put(number, page);
+        return number;
+    }
+
+    private void freePage(int number) {
+        cache.remove(number);
+        if (freeCount == freePages.length) {
+            freePages = Arrays.copyOf(freePages, freeCount * 2);
+        }
+        freePages[freeCount++] = number;
+    }
+
+    private Page page(int number) {
+        Page page = cache.get(number);
+        if (page != null) {
+            return page;
+        }
+        ByteBuffer data = ByteBuffer.allocate(PAGE_SIZE);
+        try {
+            while (data.hasRemaining()) {
+                long position = (long) number * PAGE_SIZE + data.position();
+                if (channel.read(data, position) < 0) {
+                    throw new IOException("Index page " + number
+                        + " is missing");
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        pageReads++;
+        page = new Page(data);
+        cache.put(number, page);
+        return page;
+    }
+
+    private void writeBack(int number, Page page) {
+        if (!page.dirty) {
+            return;
+        }
+        ByteBuffer data = page.data.duplicate();
+        data.clear();
+        try {
+            long base = (long) number * PAGE_SIZE;
+            while (data.hasRemaining()) {
+                channel.write(data, base + data.position());
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        page.dirty = false;
+        pageWrites++;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.File;
+import student.TestCase;
+
+/**
+ * Test class for DiskHashIndex
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class DiskHashIndexTest extends TestCase {
+
+    private File indexFile;
+    private DiskHashIndex index;
+
+    /**
+     * Sets up an index with two buckets and a two page cache.
+     *
+     * @throws Exception if the index file cannot be opened
+     */
+    @Override
+    public void setUp() throws Exception {
+        indexFile = new File("test.index");
+        index = new DiskHashIndex(indexFile, 2, 2, new ConsoleSink());
+    }
+
+    /**
+     * Closes and removes the index file after each test.
+     *
+     * @throws Exception if the index file cannot be closed
+     */
+    @Override
+    public void tearDown() throws Exception {
+        index.close();
+        indexFile.delete();
+    }
+
+    /**
+     * Tests adding, finding and deleting entries.
+     */
+    public void testAddRetrieveDelete() {
+        assertTrue(index.addEntry(7, new Handle(10, 20)));
+        assertFalse(index.addEntry(7, new Handle(30, 20)));
+        assertFalse(index.addEntry(-1, new Handle(30, 20)));
+        assertEquals(new Handle(10, 20), index.retrieve(7));
+        assertNull(index.retrieve(8));
+        assertEquals(1, index.count());
+
+        assertTrue(index.deleteEntry(7));
+        assertFalse(index.deleteEntry(7));
+        assertNull(index.retrieve(7));
+        assertEquals(0, index.count());
+    }
+
+    /**
+     * Tests that the index splits buckets as it grows and keeps every
+     * entry reachable through pages that left the cache.
+     */
+    public void testGrowsBySplitting() {
+        int records = 5000;
+        for (int id = 0; id < records; id++) {
+            assertTrue(index.addEntry(id, new Handle(id * 8, 8)));
+        }
+        assertTrue(index.buckets() > 2);
+        assertTrue(index.pageWrites() > 0);
+        for (int id = 0; id < records; id += 2) {
+            assertTrue(index.deleteEntry(id));
+        }
+        for (int id = 0; id < records; id++) {
+            Handle handle = index.retrieve(id);
+            if (id % 2 == 0) {
+                assertNull(handle);
+            }
+            else {
+                assertEquals(id * 8, handle.getStartPosition());
+            }
+        }
+        assertEquals(records / 2, index.count());
+        assertTrue(index.pageReads() > 0);
+    }
+
+    /**
+     * Tests putIfAbsent and removeEntry, including entries on overflow
+     * pages.
+     */
+    public void testPutIfAbsentAndRemoveEntry() {
+        int records = 1000;
+        for (int id = 0; id < records; id++) {
+            Handle handle = new Handle(id * 8, 8);
+            assertNull(index.putIfAbsent(id, () -> handle));
+        }
+        assertEquals(8, index.putIfAbsent(1, () -> null).getStartPosition());
+        assertEquals(records, index.count());
+        for (int id = records - 1; id >= 0; id--) {
+            assertEquals(id * 8, index.removeEntry(id).getStartPosition());
+            assertNull(index.removeEntry(id));
+        }
+        assertEquals(0, index.count());
+        assertNull(index.retrieve(500));
+    }
+
+    /**
+     * Tests relocate, by ID and by scanning for the old handle.
+     */
+    public void testRelocate() {
+        Handle old = new Handle(10, 10);
+        Handle moved = new Handle(50, 10);
+        index.addEntry(1, old);
+        index.addEntry(2, new Handle(30, 10));
+        assertTrue(index.relocate(1, old, moved));
+        assertEquals(moved, index.retrieve(1));
+        assertTrue(index.relocate(-1, moved, old));
+        assertEquals(old, index.retrieve(1));
+        assertFalse(index.relocate(2, moved, old));
+    }
+
+    /**
+     * Tests the listing printed for "print hashtable".
+     */
+    public void testDisplayHash() {
+        index.addEntry(3, new Handle(0, 10));
+        systemOut().clearHistory();
+        index.displayHash();
+        String listing = systemOut().getHistory();
+        assertTrue(listing.startsWith("Hashtable:"));
+        assertTrue(listing.contains(": 3"));
+        assertTrue(listing.contains("total records: 1"));
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Puts a counting Bloom filter in front of another hash index. A lookup
+ * for an ID the filter has never seen returns at once, without probing
+ * the table or reading an index page, which makes failed searches and
+ * the duplicate check of every insert cheap. Deletes decrement the
+ * filter, so it stays accurate as seminars come and go.
+ *
+ * The filter is sized for the expected number of IDs and the target
+ * false positive rate. When the index outgrows it, it is rebuilt at
+ * twice the size from the IDs in the index.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class FilteredIndex implements HashIndex {
+
+    /** Default target false positive rate. */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final HashIndex index;
+    private final double falsePositiveRate;
+    private CountingBloomFilter filter;
+    private long skipped;
+    private long falsePositives;
+    private OutputSink output;
+
+    /**
+     * Wraps an index, adding the IDs it already holds to the filter.
+     *
+     * @param index The index to filter lookups for.
+     * @param expected Number of IDs to size the filter for.
+     * @param falsePositiveRate Target false positive rate.
+     * @param output Where the filter statistics are printed.
+     */
+    public FilteredIndex(HashIndex index, int expected,
+        double falsePositiveRate, OutputSink output) {
+        this.index = index;
+        this.falsePositiveRate = falsePositiveRate;
+        this.output = output;
+        rebuild(Math.max(expected, index.count()));
+    }
+
+    /**
+     * Gets the index behind the filter.
+     *
+     * @return The wrapped index.
+     */
+    public HashIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the filter in use, for its size and rates.
+     *
+     * @return The filter.
+     */
+    public CountingBloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Gets the number of lookups answered by the filter alone.
+     *
+     * @return The skipped lookup count.
+     */
+    public long skipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the number of lookups the filter let through for absent IDs.
+     *
+     * @return The false positive count.
+     */
+    public long falsePositives() {
+        return falsePositives;
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+        index.setOutput(sink);
+    }
+
+    @Override
+    public Handle retrieve(int id) {
+        if (!filter.mightContain(id)) {
+            skipped++;
+            return null;
+        }
+        Handle handle = index.retrieve(id);
+        if (handle == null) {
+            falsePositives++;
+        }
+        return handle;
+    }
+
+    @Override
+    public boolean addEntry(int id, Handle handle) {
+        if (!index.addEntry(id, handle)) {
+            return false;
+        }
+        admit(id);
+        return true;
+    }
+
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        if (!filter.mightContain(id)) {
+            skipped++;
+            index.addEntry(id, handle.get());
+        }
+        else {
+            Handle existing = index.putIfAbsent(id, handle);
+            if (existing != null) {
+                return existing;
+            }
+            falsePositives++;
+        }
+        admit(id);
+        return null;
+    }
+
+    @Override
+    public Consumer<Handle> claim(int id) {
+        Consumer<Handle> entry;
+        if (!filter.mightContain(id)) {
+            skipped++;
+            entry = handle -> {
+                if (handle != null) {
+                    index.addEntry(id, handle);
+                }
+            };
+        }
+        else {
+            entry = index.claim(id);
+            if (entry == null) {
+                return null;
+            }
+            falsePositives++;
+        }
+        // The filter only learns the ID once the entry is filled in
+        return handle -> {
+            entry.accept(handle);
+            if (handle != null) {
+                admit(id);
+            }
+        };
+    }
+
+    @Override
+    public void reserve(int additional) {
+        index.reserve(additional);
+    }
+
+    @Override
+    public boolean deleteEntry(int id) {
+        if (!filter.mightContain(id)) {
+            skipped++;
+            return false;
+        }
+        if (!index.deleteEntry(id)) {
+            falsePositives++;
+            return false;
+        }
+        filter.remove(id);
+        return true;
+    }
+
+    @Override
+    public Handle removeEntry(int id) {
+        if (!filter.mightContain(id)) {
+            skipped++;
+            return null;
+        }
+        Handle removed = index.removeEntry(id);
+        if (removed == null) {
+            falsePositives++;
+        }
+        else {
+            filter.remove(id);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        return index.relocate(id, from, to);
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        index.forEachId(action);
+    }
+
+    @Override
+    public void displayHash() {
+        index.displayHash();
+        output.println("Bloom filter: " + filter.memoryBytes() + " bytes, "
+            + filter.hashes() + " hashes, false positive rate "
+            + percent(filter.expectedRate()) + " (target "
+            + percent(falsePositiveRate) + ")");
+        output.println("Bloom filter lookups: " + skipped + " skipped, "
+            + falsePositives + " false positives");
+    }
+
+    @Override
+    public int count() {
+        return index.count();
+    }
+
+    /**
+     * Adds an ID just put in the index to the filter, growing the filter
+     * if it is full.
+     */
+    private void admit(int id) {
+        if (filter.keys() >= filter.capacity()) {
+            rebuild(filter.capacity() * 2);
+        }
+        else {
+            filter.add(id);
+        }
+    }
+
+    private void rebuild(int capacity) {
+        CountingBloomFilter grown =
+            new CountingBloomFilter(capacity, falsePositiveRate);
+        index.forEachId(grown::add);
+        filter = grown;
+    }
+
+    private static String percent(double rate) {
+        return Math.round(rate * 10000) / 100.0 + "%";
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.File;
+import student.TestCase;
+
+/**
+ * Test class for FilteredIndex
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class FilteredIndexTest extends TestCase {
+
+    private CountingSink sink;
+    private HashTable table;
+    private FilteredIndex index;
+
+    /**
+     * Sets up a filtered hash table before each test.
+     */
+    @Override
+    public void setUp() {
+        sink = new CountingSink();
+        table = new HashTable(16, sink);
+        index = new FilteredIndex(table, 8, 0.01, sink);
+    }
+
+    /**
+     * Tests that lookups of absent IDs are answered by the filter.
+     */
+    public void testSkipsAbsentIds() {
+        Handle handle = new Handle(0, 10);
+        assertTrue(index.addEntry(5, handle));
+        assertEquals(handle, index.retrieve(5));
+        for (int id = 100; id < 200; id++) {
+            assertNull(index.retrieve(id));
+        }
+        assertEquals(100, index.skipped() + index.falsePositives());
+        assertTrue(index.skipped() > 90);
+        assertFalse(index.deleteEntry(1000));
+        assertTrue(index.deleteEntry(5));
+        assertNull(index.retrieve(5));
+        assertEquals(0, index.count());
+    }
+
+    /**
+     * Tests that the filter is rebuilt larger as the table grows and
+     * still knows every ID.
+     */
+    public void testGrows() {
+        for (int id = 0; id < 40; id++) {
+            assertTrue(index.addEntry(id, new Handle(id, 1)));
+        }
+        assertFalse(index.addEntry(3, new Handle(0, 1)));
+        assertEquals(64, index.getFilter().capacity());
+        assertEquals(40, index.getFilter().keys());
+        for (int id = 0; id < 40; id++) {
+            assertNotNull(index.retrieve(id));
+        }
+        assertTrue(index.getFilter().expectedRate() < 0.01);
+    }
+
+    /**
+     * Tests that IDs already in the table are loaded into the filter.
+     */
+    public void testWrapsFilledTable() {
+        HashTable filled = new HashTable(64, sink);
+        for (int id = 0; id < 20; id++) {
+            filled.addEntry(id, new Handle(id, 1));
+        }
+        FilteredIndex wrapped = new FilteredIndex(filled, 4, 0.01, sink);
+        assertEquals(20, wrapped.getFilter().capacity());
+        assertNotNull(wrapped.retrieve(19));
+        assertEquals(0, wrapped.falsePositives());
+    }
+
+    /**
+     * Tests that print hashtable reports the filter after the entries.
+     */
+    public void testDisplay() {
+        index.addEntry(1, new Handle(0, 1));
+        index.retrieve(50);
+        long before = sink.getLines();
+        index.displayHash();
+        assertEquals(2 + 1 + 2, sink.getLines() - before);
+    }
+
+    /**
+     * Tests that a SeminarDB with a filter behaves as one without and
+     * can still take snapshots.
+     */
+    public void testUnderSeminarDB() {
+        SeminarDB db = new SeminarDB(512, 8, new ConsoleSink());
+        db.setBloomFilter(8, 0.05);
+        Seminar seminar = new Seminar(3, "Title", "2405231000", 75,
+            (short) 15, (short) 33, 125, new String[] { "A" }, "Desc");
+        assertTrue(db.addSeminar(3, seminar));
+        assertFalse(db.addSeminar(3, seminar));
+        assertTrue(db.findSeminar(3));
+        assertFalse(db.findSeminar(4));
+        assertTrue(db.eraseSeminar(3));
+        assertFalse(db.eraseSeminar(3));
+        assertTrue(db.saveSnapshot("bloom.snap"));
+        new File("bloom.snap").delete();
+    }
+}
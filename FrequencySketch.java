@@ -0,0 +1,104 @@
+/**
+ * Estimates how often each key has been seen recently, in a fixed amount
+ * of memory. It is a count-min sketch of 4-bit counters: a key bumps one
+ * counter in each of four rows and its frequency is the smallest of the
+ * four. Once the number of increments reaches ten times the width, every
+ * counter is halved, so old popularity fades.
+ *
+ * Used by ReadCache to decide whether a new entry is worth more than the
+ * entry it would push out.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+        0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * Creates a sketch sized for about the given number of keys.
+     *
+     * @param expectedKeys Number of keys expected to be tracked at once.
+     */
+    public FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(8, expectedKeys - 1)) << 1;
+        table = new long[width];
+        tableMask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    /**
+     * Gets the estimated number of times a key was seen, at most 15.
+     *
+     * @param key The key.
+     * @return The estimated frequency.
+     */
+    public int frequency(int key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < 4; row++) {
+            int index = indexOf(hash, row);
+            int count = (int) ((table[index] >>> ((start + row) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one more sighting of a key.
+     *
+     * @param key The key.
+     */
+    public void increment(int key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            added |= incrementAt(indexOf(hash, row), (start + row) << 2);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int shift) {
+        long mask = 0xFL << shift;
+        if ((table[index] & mask) == mask) {
+            return false;
+        }
+        table[index] += 1L << shift;
+        return true;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int spread(int key) {
+        int h = key * 0x9E3779B1;
+        return h ^ (h >>> 17);
+    }
+}
@@ -0,0 +1,55 @@
+import student.TestCase;
+
+/**
+ * Test class for FrequencySketch
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class FrequencySketchTest extends TestCase {
+
+    /**
+     * Tests that counts grow with sightings and stop at fifteen.
+     */
+    public void testCounts() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency(5));
+        for (int i = 0; i < 3; i++) {
+            sketch.increment(5);
+        }
+        assertEquals(3, sketch.frequency(5));
+        for (int i = 0; i < 40; i++) {
+            sketch.increment(5);
+        }
+        assertEquals(15, sketch.frequency(5));
+    }
+
+    /**
+     * Tests that popular keys stand out from keys seen once.
+     */
+    public void testPopularKeysStandOut() {
+        FrequencySketch sketch = new FrequencySketch(256);
+        for (int key = 0; key < 200; key++) {
+            sketch.increment(key);
+        }
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(1000);
+        }
+        assertTrue(sketch.frequency(1000) > sketch.frequency(7));
+    }
+
+    /**
+     * Tests that counters are halved after enough increments.
+     */
+    public void testAging() {
+        FrequencySketch sketch = new FrequencySketch(8);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment(1);
+        }
+        // Width 16, so the sample is 160 increments
+        for (int key = 100; key < 400; key++) {
+            sketch.increment(key);
+        }
+        assertTrue(sketch.frequency(1) < 12);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Integer mixers a HashTable can hash seminar IDs with. The table takes
+ * the mixed value modulo its length for the home slot and derives the
+ * probe step from the higher part. Each mixer maps non-negative IDs to
+ * non-negative values.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public enum HashFunction {
+
+    /**
+     * The ID itself. Cheap, but sequential and strided IDs land on
+     * neighbouring or repeating slots and share probe steps.
+     */
+    MODULO {
+        @Override
+        public int mix(int key) {
+            return key;
+        }
+    },
+
+    /**
+     * The 32-bit finalizer of murmur3, which spreads every input bit over
+     * the whole word.
+     */
+    MURMUR3 {
+        @Override
+        public int mix(int key) {
+            int h = key;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h & Integer.MAX_VALUE;
+        }
+    };
+
+    /**
+     * Mixes an ID.
+     *
+     * @param key The ID.
+     * @return The hash, not negative when the ID is not.
+     */
+    public abstract int mix(int key);
+
+    /**
+     * Finds a hash function by name, ignoring case.
+     *
+     * @param name modulo or murmur3.
+     * @return The hash function.
+     * @throws IllegalArgumentException if no function has that name.
+     */
+    public static HashFunction named(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
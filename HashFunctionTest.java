@@ -0,0 +1,52 @@
+import student.TestCase;
+
+/**
+ * Test class for HashFunction
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class HashFunctionTest extends TestCase {
+
+    /**
+     * Tests that modulo hashing leaves IDs as they are.
+     */
+    public void testModulo() {
+        assertEquals(0, HashFunction.MODULO.mix(0));
+        assertEquals(12345, HashFunction.MODULO.mix(12345));
+    }
+
+    /**
+     * Tests that murmur3 gives non-negative values and spreads strided
+     * IDs over the residues of a small table.
+     */
+    public void testMurmur3Spreads() {
+        int[] buckets = new int[16];
+        for (int id = 0; id < 1600; id += 16) {
+            int hash = HashFunction.MURMUR3.mix(id);
+            assertTrue(hash >= 0);
+            buckets[hash % 16]++;
+        }
+        for (int count : buckets) {
+            assertTrue(count > 0);
+            assertTrue(count < 20);
+        }
+        assertTrue(HashFunction.MURMUR3.mix(Integer.MAX_VALUE) >= 0);
+    }
+
+    /**
+     * Tests finding functions by name.
+     */
+    public void testNamed() {
+        assertEquals(HashFunction.MURMUR3, HashFunction.named("murmur3"));
+        assertEquals(HashFunction.MODULO, HashFunction.named("Modulo"));
+        Exception thrown = null;
+        try {
+            HashFunction.named("sha1");
+        }
+        catch (IllegalArgumentException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Maps seminar IDs to the handles of their stored records. SeminarDB
+ * only needs these operations, so the in-heap HashTable and the
+ * file-backed DiskHashIndex can be swapped under it.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public interface HashIndex {
+
+    /**
+     * Finds the handle stored for an ID.
+     *
+     * @param id The ID to look up.
+     * @return The handle, or null if the ID is not present.
+     */
+    Handle retrieve(int id);
+
+    /**
+     * Adds an entry.
+     *
+     * @param id The ID associated with the handle.
+     * @param handle The handle to be stored.
+     * @return true if added, false if the ID is present or invalid.
+     */
+    boolean addEntry(int id, Handle handle);
+
+    /**
+     * Deletes the entry for an ID.
+     *
+     * @param id The ID to remove.
+     * @return true if removed, false if the ID is not present.
+     */
+    boolean deleteEntry(int id);
+
+    /**
+     * Adds an entry unless the ID is present, looking the ID up only
+     * once. The handle is only asked for when the ID is absent, so the
+     * record can be stored after the check and before the entry is made.
+     *
+     * @param id The ID associated with the handle.
+     * @param handle Supplies the handle to be stored.
+     * @return The handle already stored for the ID, or null if the entry
+     *         was added.
+     */
+    default Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        Handle existing = retrieve(id);
+        if (existing == null) {
+            addEntry(id, handle.get());
+        }
+        return existing;
+    }
+
+    /**
+     * Claims the entry for an ID before its record is stored, so a batch
+     * can check every ID, store all the records together and then fill
+     * in their handles without looking the IDs up again. Passing null to
+     * the returned action gives up the claim. Other entries may be added
+     * between the claim and filling it in, but none deleted.
+     *
+     * @param id The ID to claim an entry for.
+     * @return Sets the handle of the claimed entry, or null if the ID is
+     *         present.
+     */
+    default Consumer<Handle> claim(int id) {
+        if (retrieve(id) != null) {
+            return null;
+        }
+        return handle -> {
+            if (handle != null) {
+                addEntry(id, handle);
+            }
+        };
+    }
+
+    /**
+     * Makes room for a number of entries about to be added, so a table
+     * that grows does so once for all of them instead of on the add that
+     * fills it. Indexes that do not resize as a whole ignore it.
+     *
+     * @param additional Number of entries about to be added.
+     */
+    default void reserve(int additional) {
+        // Nothing to resize
+    }
+
+    /**
+     * Deletes the entry for an ID, looking the ID up only once.
+     *
+     * @param id The ID to remove.
+     * @return The handle the entry held, or null if the ID is not present.
+     */
+    default Handle removeEntry(int id) {
+        Handle existing = retrieve(id);
+        if (existing != null) {
+            deleteEntry(id);
+        }
+        return existing;
+    }
+
+    /**
+     * Points an entry at the new place of a moved record. The entry is
+     * found by ID, or by scanning for the old handle if the ID is unknown
+     * or does not hold it.
+     *
+     * @param id The ID stored in the moved record, or -1 if unknown.
+     * @param from Handle the record had.
+     * @param to Handle the record has now.
+     * @return true if an entry was updated, false otherwise.
+     */
+    boolean relocate(int id, Handle from, Handle to);
+
+    /**
+     * Passes every ID held to an action, in no particular order.
+     *
+     * @param action Called once for each ID.
+     */
+    void forEachId(IntConsumer action);
+
+    /**
+     * Prints the entries and the number of records for "print hashtable".
+     */
+    void displayHash();
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The count of entries.
+     */
+    int count();
+
+    /**
+     * Redirects listings and expansion messages to another sink.
+     *
+     * @param sink The new sink.
+     */
+    void setOutput(OutputSink sink);
+}
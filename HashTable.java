@@ -1,15 +1,36 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
 /**
  * A structure for storing seminar entries using hashing.
  * 
  * @author brettn
  * @version 09/15/2023
  */
-public class HashTable {
+public class HashTable implements HashIndex {
+
+    /** Share of slots that may be live before the table doubles. */
+    public static final double DEFAULT_LOAD_FACTOR = 0.5;
 
-    private static final double THRESHOLD_RATIO = 0.5;
+    private static final byte SLOT_EMPTY = 0;
+    private static final byte SLOT_LIVE = 1;
+    private static final byte SLOT_TOMBSTONE = 2;
+    private static final int SLOT_BYTES = 13;
     private Record[] entries;
+    private BitSet dirtySlots = new BitSet();
+    private boolean allSlotsDirty = true;
     private int totalEntries;
+    // Slots that are not empty, tombstones included
+    private int occupied;
     private int maxEntries;
+    private final double loadFactor;
+    private final HashFunction hashFunction;
+    private boolean reportProbes;
+    private OutputSink output;
 
     /**
      * Initializes a hash table with a specified size.
@@ -17,17 +38,177 @@ public class HashTable {
      * @param initialSize Initial size of the table.
      */
     public HashTable(int initialSize) {
+        this(initialSize, new ConsoleSink());
+    }
+
+    /**
+     * Initializes a hash table that prints to the given sink.
+     *
+     * @param initialSize Initial size of the table.
+     * @param output Where listings and expansion messages are written.
+     */
+    public HashTable(int initialSize, OutputSink output) {
+        this(initialSize, DEFAULT_LOAD_FACTOR, HashFunction.MODULO, output);
+    }
+
+    /**
+     * Initializes a hash table with a chosen load factor and hash
+     * function.
+     *
+     * @param initialSize Initial size of the table.
+     * @param loadFactor Share of slots that may be live before the table
+     *        doubles, above 0 and below 1.
+     * @param hashFunction Mixer applied to IDs before probing.
+     * @param output Where listings and expansion messages are written.
+     */
+    public HashTable(int initialSize, double loadFactor,
+        HashFunction hashFunction, OutputSink output) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException(
+                "Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.hashFunction = hashFunction;
+        this.output = output;
         this.maxEntries = initialSize;
         this.entries = new Record[initialSize];
         this.totalEntries = 0;  
     }
 
+    /**
+     * Rebuilds a hash table slot for slot from a snapshot section.
+     *
+     * @param section The section written by exportEntries.
+     * @param output Where listings and expansion messages are written.
+     */
+    HashTable(ByteBuffer section, OutputSink output) {
+        this.output = output;
+        this.entries = new Record[section.getInt()];
+        this.maxEntries = entries.length;
+        this.totalEntries = section.getInt();
+        this.hashFunction = HashFunction.values()[section.get()];
+        this.loadFactor = section.getDouble();
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = readSlot(section);
+        }
+        this.occupied = countOccupied();
+        this.allSlotsDirty = false;
+    }
+
+    /**
+     * Writes every slot, including empty ones and tombstones, as a
+     * snapshot section, so a restored table probes and prints exactly
+     * like this one. The hash function and load factor are saved too.
+     *
+     * @return The section, ready to be written.
+     */
+    ByteBuffer exportEntries() {
+        ByteBuffer section = ByteBuffer.allocate(
+            17 + entries.length * SLOT_BYTES);
+        section.putInt(entries.length).putInt(totalEntries)
+            .put((byte) hashFunction.ordinal()).putDouble(loadFactor);
+        for (Record record : entries) {
+            putSlot(section, record);
+        }
+        section.flip();
+        return section;
+    }
+
+    /**
+     * Writes only the slots changed since the last clearDirty, each
+     * preceded by its index, for an incremental checkpoint. After a resize
+     * every slot has moved, so all of them are written.
+     *
+     * @return The section, ready to be written.
+     */
+    ByteBuffer exportDirtyEntries() {
+        if (allSlotsDirty) {
+            dirtySlots.set(0, entries.length);
+        }
+        ByteBuffer section = ByteBuffer.allocate(
+            12 + dirtySlots.cardinality() * (4 + SLOT_BYTES));
+        section.putInt(entries.length).putInt(totalEntries)
+            .putInt(dirtySlots.cardinality());
+        for (int i = dirtySlots.nextSetBit(0); i >= 0;
+            i = dirtySlots.nextSetBit(i + 1)) {
+            section.putInt(i);
+            putSlot(section, entries[i]);
+        }
+        section.flip();
+        return section;
+    }
+
+    /**
+     * Applies a section written by exportDirtyEntries.
+     *
+     * @param section The changed slots.
+     */
+    void applyDirtyEntries(ByteBuffer section) {
+        int length = section.getInt();
+        if (length != entries.length) {
+            entries = new Record[length];
+            maxEntries = length;
+        }
+        totalEntries = section.getInt();
+        int changed = section.getInt();
+        for (int i = 0; i < changed; i++) {
+            int index = section.getInt();
+            entries[index] = readSlot(section);
+        }
+        occupied = countOccupied();
+    }
+
+    /**
+     * Forgets which slots changed, after a snapshot or checkpoint.
+     */
+    void clearDirty() {
+        dirtySlots.clear();
+        allSlotsDirty = false;
+    }
+
+    private static void putSlot(ByteBuffer section, Record record) {
+        if (record == null) {
+            section.put(SLOT_EMPTY).putInt(0).putInt(0).putInt(0);
+            return;
+        }
+        Handle handle = record.getHandle();
+        section.put(record.isMarked() ? SLOT_TOMBSTONE : SLOT_LIVE)
+            .putInt(record.getKey())
+            .putInt(handle == null ? 0 : handle.getStartPosition())
+            .putInt(handle == null ? -1 : handle.getDataLength());
+    }
+
+    private static Record readSlot(ByteBuffer section) {
+        byte state = section.get();
+        int key = section.getInt();
+        int start = section.getInt();
+        int length = section.getInt();
+        if (state == SLOT_EMPTY) {
+            return null;
+        }
+        Record record = new Record(
+            key, length < 0 ? null : new Handle(start, length));
+        record.markRecord(state == SLOT_TOMBSTONE);
+        return record;
+    }
+
+    /**
+     * Redirects listings and expansion messages to another sink.
+     *
+     * @param sink The new output sink.
+     */
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
     /**
      * Retrieves a handle based on its ID.
      *
      * @param id The ID of the handle.
      * @return The handle associated with the ID, or null if not found.
      */
+    @Override
     public Handle retrieve(int id) {
         int index = locateEntry(id);
         if (index != -1) {
@@ -43,6 +224,7 @@ public class HashTable {
      * @param handle The handle to be stored.
      * @return true if added successfully, false otherwise.
      */
+    @Override
     public boolean addEntry(int id, Handle handle) {
         if (id < 0) return false;
 
@@ -51,35 +233,178 @@ public class HashTable {
         int index = searchPosition(id);
         if (index != -1 && (entries[index] == null 
             || entries[index].isMarked())) {
+            if (entries[index] == null) {
+                occupied++;
+            }
             entries[index] = new Record(id, handle);
+            dirtySlots.set(index);
             totalEntries++;
             return true;
         }
         return false;
     }
 
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        int slot = probe(id);
+        if (slot >= 0) {
+            return entries[slot].getHandle();
+        }
+        place(id, handle.get(), -1 - slot);
+        return null;
+    }
+
+    @Override
+    public Consumer<Handle> claim(int id) {
+        int slot = probe(id);
+        if (slot >= 0) {
+            return null;
+        }
+        // Rehashing moves the record itself, so it can be filled in later
+        Record entry = place(id, null, -1 - slot);
+        return handle -> {
+            if (handle == null) {
+                entry.markRecord(true);
+                totalEntries--;
+            }
+            else {
+                entry.updateHandle(handle);
+            }
+        };
+    }
+
+    /**
+     * Walks the probe sequence of an ID once.
+     *
+     * @return The slot of the ID's entry, or -1 minus the slot a new
+     *         entry for it would take.
+     */
+    private int probe(int id) {
+        int idx = primaryHash(id);
+        int jump = secondaryHash(id);
+        int free = -1;
+        while (entries[idx] != null) {
+            if (!entries[idx].isMarked()) {
+                if (entries[idx].getKey() == id) {
+                    return idx;
+                }
+            }
+            else if (free == -1) {
+                free = idx;
+            }
+            idx = (idx + jump) % entries.length;
+        }
+        return -1 - (free == -1 ? idx : free);
+    }
+
+    /**
+     * Adds an entry in the slot found by probe, or in a new one if the
+     * table has to grow first.
+     */
+    private Record place(int id, Handle handle, int free) {
+        if (adjustSizeIfNeeded()) {
+            free = searchPosition(id);
+        }
+        if (entries[free] == null) {
+            occupied++;
+        }
+        Record entry = new Record(id, handle);
+        entries[free] = entry;
+        dirtySlots.set(free);
+        totalEntries++;
+        return entry;
+    }
+
     /**
      * Deletes an entry based on its ID.
      *
      * @param id The ID associated with the handle.
      * @return true if removed successfully, false otherwise.
      */
+    @Override
     public boolean deleteEntry(int id) {
         int index = locateEntry(id);
         if (index != -1) {
             entries[index].markRecord(true);
+            dirtySlots.set(index);
             totalEntries--;
             return true;
         }
         return false;
     }
 
+    @Override
+    public Handle removeEntry(int id) {
+        int index = locateEntry(id);
+        if (index == -1) {
+            return null;
+        }
+        entries[index].markRecord(true);
+        dirtySlots.set(index);
+        totalEntries--;
+        return entries[index].getHandle();
+    }
+
+    /**
+     * Points an entry at the new place of a record moved by the storage
+     * engine. The entry is looked up by ID, and if it does not hold the
+     * old handle, by scanning for the old handle.
+     *
+     * @param id The ID stored in the moved record.
+     * @param from Handle the record had.
+     * @param to Handle the record has now.
+     * @return true if an entry was updated, false otherwise.
+     */
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        int index = id < 0 ? -1 : locateEntry(id);
+        if (index == -1 || !from.equals(entries[index].getHandle())) {
+            index = -1;
+            for (int i = 0; i < entries.length && index == -1; i++) {
+                if (entries[i] != null && !entries[i].isMarked()
+                    && from.equals(entries[i].getHandle())) {
+                    index = i;
+                }
+            }
+        }
+        if (index == -1) {
+            return false;
+        }
+        entries[index].updateHandle(to);
+        dirtySlots.set(index);
+        return true;
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        for (Record entry : entries) {
+            // A claimed entry counts once its handle is filled in
+            if (entry != null && !entry.isMarked()
+                && entry.getHandle() != null) {
+                action.accept(entry.getKey());
+            }
+        }
+    }
+
     /**
      * Prints the current state of the hash table.
      */
+    @Override
     public void displayHash() {
         listEntries();
-        System.out.println("total records: " + totalEntries);
+        output.println("total records: " + totalEntries);
+        if (reportProbes) {
+            displayProbes();
+        }
+    }
+
+    /**
+     * Makes displayHash also print the probe length histogram.
+     *
+     * @param report true to print it.
+     */
+    public void setProbeReport(boolean report) {
+        this.reportProbes = report;
     }
 
     /**
@@ -87,6 +412,7 @@ public class HashTable {
      *
      * @return The count of entries in the table.
      */
+    @Override
     public int count() {
         return totalEntries;
     }
@@ -106,7 +432,7 @@ public class HashTable {
      * @return the output of the simple equation
      */
     public int primaryHash(int k) {
-        return k % entries.length;
+        return hashFunction.mix(k) % entries.length;
     }
 
     /**
@@ -116,14 +442,90 @@ public class HashTable {
      */
     public int secondaryHash(int k) {
         int size = entries.length;
-        return ((k / size) % (size / 2)) * 2 + 1; 
+        return ((hashFunction.mix(k) / size) % (size / 2)) * 2 + 1; 
+    }
+
+    /**
+     * Counts the live entries by the number of slots a lookup visits to
+     * find them, 1 meaning the entry sits in its home slot.
+     *
+     * @return Entries found after each number of probes, indexed by that
+     *         number; index 0 is always 0.
+     */
+    public int[] probeHistogram() {
+        int[] histogram = new int[2];
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == null || entries[i].isMarked()) {
+                continue;
+            }
+            int id = entries[i].getKey();
+            int idx = primaryHash(id);
+            int jump = secondaryHash(id);
+            int probes = 1;
+            while (idx != i) {
+                idx = (idx + jump) % entries.length;
+                probes++;
+            }
+            if (probes >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, probes + 1);
+            }
+            histogram[probes]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Prints the probe length histogram and the mean probe length.
+     */
+    public void displayProbes() {
+        printProbes(probeHistogram(), totalEntries, output);
+    }
+
+    /**
+     * Prints a probe length histogram and the mean probe length.
+     *
+     * @param histogram Entries found after each number of probes.
+     * @param count Number of entries counted.
+     * @param output Where the lines are written.
+     */
+    static void printProbes(int[] histogram, int count,
+        OutputSink output) {
+        long probes = 0;
+        StringBuilder line = new StringBuilder("probe lengths:");
+        for (int length = 1; length < histogram.length; length++) {
+            line.append(' ').append(length).append('=')
+                .append(histogram[length]);
+            probes += (long) length * histogram[length];
+        }
+        output.println(line.toString());
+        output.println("mean probes: " + (count == 0
+            ? 0.0
+            : Math.round(probes * 100.0 / count) / 100.0));
+    }
+
+    /**
+     * Gets the hash function IDs are mixed with.
+     *
+     * @return The hash function.
+     */
+    public HashFunction hashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Gets the share of slots that may be live before the table doubles.
+     *
+     * @return The load factor.
+     */
+    public double loadFactor() {
+        return loadFactor;
     }
 
     private void listEntries() {
-        System.out.println("Hashtable:");
+        output.println("Hashtable:");
         for (int i = 0; i < entries.length; i++) {
             if (entries[i] != null) {
-                System.out.println(i + (entries[i].isMarked(
+                output.println(i + (entries[i].isMarked(
                     ) ? ": TOMBSTONE" : ": " + entries[i].getKey()));
             }
         }
@@ -156,20 +558,67 @@ public class HashTable {
         return -1;
     }
 
-    private void adjustSizeIfNeeded() {
-        if (totalEntries < maxEntries * THRESHOLD_RATIO) return;
+    /**
+     * Doubles the table once it holds its share of live entries, or once
+     * live entries would leave no empty slot, which a load factor close to
+     * 1 on a small table allows. A table whose empty slots have all but
+     * run out to tombstones is rebuilt at the same size without them,
+     * since probing stops only at an empty slot.
+     */
+    private boolean adjustSizeIfNeeded() {
+        if (totalEntries >= maxEntries * loadFactor
+            || totalEntries + 1 >= entries.length) {
+            rehash(entries.length * 2);
+            output.println(
+                "Hash table expanded to " + entries.length + " records");
+            return true;
+        }
+        if (occupied + 1 >= entries.length) {
+            rehash(entries.length);
+            return true;
+        }
+        return false;
+    }
 
+    @Override
+    public void reserve(int additional) {
+        // The add that finds the table at its share is the one that grows
+        int size = entries.length;
+        while (totalEntries + additional - 1 >= size * loadFactor
+            || totalEntries + additional >= size) {
+            size *= 2;
+        }
+        if (size > entries.length) {
+            rehash(size);
+            output.println(
+                "Hash table expanded to " + entries.length + " records");
+        }
+    }
+
+    private void rehash(int size) {
         Record[] previousEntries = entries;
-        entries = new Record[previousEntries.length * 2];
+        entries = new Record[size];
+        allSlotsDirty = true;
         maxEntries = entries.length;
         totalEntries = 0;
+        occupied = 0;
 
         for (Record record : previousEntries) {
             if (record != null && !record.isMarked()) {
-                addEntry(record.getKey(), record.getHandle());
+                entries[searchPosition(record.getKey())] = record;
+                occupied++;
+                totalEntries++;
+            }
+        }
+    }
+
+    private int countOccupied() {
+        int count = 0;
+        for (Record record : entries) {
+            if (record != null) {
+                count++;
             }
         }
-        System.out.println(
-            "Hash table expanded to " + entries.length + " records");
+        return count;
     }
 }
\ No newline at end of file
@@ -1,4 +1,5 @@
 import static org.junit.Assert.assertNotEquals;
+import java.util.function.Consumer;
 import student.TestCase;
 
 /**
@@ -322,4 +323,212 @@ public class HashTableTest extends TestCase {
         assertEquals(1, result);
     }
 
+    /**
+     * Test method for relocate(), by ID and by scanning for the old handle
+     */
+    public void testRelocate() {
+        Handle old = new Handle(10, 10);
+        Handle moved = new Handle(50, 10);
+        tableUnderTest.addEntry(1, old);
+        tableUnderTest.addEntry(2, new Handle(30, 10));
+        assertTrue(tableUnderTest.relocate(1, old, moved));
+        assertEquals(moved, tableUnderTest.retrieve(1));
+
+        assertTrue(tableUnderTest.relocate(-1, moved, old));
+        assertEquals(old, tableUnderTest.retrieve(1));
+        assertFalse(tableUnderTest.relocate(2, moved, old));
+        assertEquals(30, tableUnderTest.retrieve(2).getStartPosition());
+    }
+
+    /**
+     * Test method for putIfAbsent(), which only asks for the handle when
+     * the ID is new and reuses the first tombstone on the probe path
+     */
+    public void testPutIfAbsent() {
+        int[] supplied = new int[1];
+        Handle first = new Handle(10, 10);
+        assertNull(tableUnderTest.putIfAbsent(1, () -> {
+            supplied[0]++;
+            return first;
+        }));
+        assertEquals(first, tableUnderTest.putIfAbsent(1, () -> {
+            supplied[0]++;
+            return new Handle(20, 10);
+        }));
+        assertEquals(1, supplied[0]);
+        assertEquals(first, tableUnderTest.retrieve(1));
+
+        // 5 probes slot 1, now a tombstone, after 1 was deleted
+        tableUnderTest.deleteEntry(1);
+        assertNull(tableUnderTest.putIfAbsent(5, () -> first));
+        assertEquals(1, tableUnderTest.searchPosition(5));
+        assertEquals(1, tableUnderTest.count());
+
+        // The third entry grows the table after the handle is supplied
+        assertNull(tableUnderTest.putIfAbsent(2, () -> first));
+        assertNull(tableUnderTest.putIfAbsent(3, () -> first));
+        assertEquals(8, tableUnderTest.limit());
+        assertEquals(first, tableUnderTest.retrieve(3));
+        assertEquals(3, tableUnderTest.count());
+    }
+
+    /**
+     * Test method for removeEntry(), which returns the removed handle
+     */
+    public void testRemoveEntry() {
+        Handle handle = new Handle(30, 10);
+        tableUnderTest.addEntry(2, handle);
+        assertEquals(handle, tableUnderTest.removeEntry(2));
+        assertNull(tableUnderTest.removeEntry(2));
+        assertNull(tableUnderTest.retrieve(2));
+        assertEquals(0, tableUnderTest.count());
+    }
+
+    /**
+     * Test method for the load factor, which sets when the table doubles
+     */
+    public void testLoadFactor() {
+        HashTable dense = new HashTable(8, 0.75, HashFunction.MODULO,
+            new ConsoleSink());
+        for (int i = 0; i < 6; i++) {
+            dense.addEntry(i, new Handle(i, 1));
+        }
+        assertEquals(8, dense.limit());
+        dense.addEntry(6, new Handle(6, 1));
+        assertEquals(16, dense.limit());
+        assertEquals(0.75, dense.loadFactor(), 0.0);
+
+        Exception thrown = null;
+        try {
+            new HashTable(8, 1.0, HashFunction.MODULO, new ConsoleSink());
+        }
+        catch (IllegalArgumentException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+
+    /**
+     * Test method for the probe length histogram
+     */
+    public void testProbeHistogram() {
+        HashTable table = new HashTable(16, new ConsoleSink());
+        // 1 and 17 share home slot 1; 17 steps 3 slots on to slot 4
+        table.addEntry(1, new Handle(0, 1));
+        table.addEntry(17, new Handle(0, 1));
+        table.addEntry(2, new Handle(0, 1));
+        int[] histogram = table.probeHistogram();
+        assertEquals(3, histogram.length);
+        assertEquals(0, histogram[0]);
+        assertEquals(2, histogram[1]);
+        assertEquals(1, histogram[2]);
+
+        table.setProbeReport(true);
+        systemOut().clearHistory();
+        table.displayHash();
+        assertFuzzyEquals("Hashtable:\n1: 1\n2: 2\n4: 17\n"
+            + "total records: 3\nprobe lengths: 1=2 2=1\n"
+            + "mean probes: 1.33\n", systemOut().getHistory());
+    }
+
+    /**
+     * Test method for a mixing hash function, under which strided IDs
+     * still are all found
+     */
+    public void testMixedHashing() {
+        HashTable table = new HashTable(64, 0.5, HashFunction.MURMUR3,
+            new ConsoleSink());
+        for (int id = 0; id < 1000; id += 8) {
+            assertTrue(table.addEntry(id, new Handle(id, 1)));
+        }
+        assertEquals(HashFunction.MURMUR3, table.hashFunction());
+        for (int id = 0; id < 1000; id += 8) {
+            assertEquals(id, table.retrieve(id).getStartPosition());
+            assertTrue(table.primaryHash(id) >= 0);
+            assertEquals(1, table.secondaryHash(id) % 2);
+        }
+        assertNull(table.retrieve(4));
+    }
+
+    /**
+     * Test method for churn, which must not let tombstones take every
+     * empty slot
+     */
+    public void testTombstonesArePurged() {
+        for (int id = 0; id < 2; id++) {
+            tableUnderTest.addEntry(id, new Handle(id, 1));
+        }
+        for (int id = 2; id < 200; id++) {
+            assertTrue(tableUnderTest.deleteEntry(id - 2));
+            assertTrue(tableUnderTest.addEntry(id, new Handle(id, 1)));
+            assertNull(tableUnderTest.retrieve(id - 2));
+        }
+        assertEquals(4, tableUnderTest.limit());
+        assertEquals(2, tableUnderTest.count());
+        assertNotNull(tableUnderTest.retrieve(199));
+    }
+
+    /**
+     * Test method for reserve(), which grows the table once to the size
+     * adding the entries one at a time would reach
+     */
+    public void testReserve() {
+        tableUnderTest.addEntry(0, new Handle(0, 1));
+        systemOut().clearHistory();
+        tableUnderTest.reserve(9);
+        assertEquals(32, tableUnderTest.limit());
+        assertEquals("Hash table expanded to 32 records\n",
+            systemOut().getHistory());
+        for (int id = 1; id < 10; id++) {
+            assertTrue(tableUnderTest.addEntry(id, new Handle(id, 1)));
+        }
+        assertEquals(32, tableUnderTest.limit());
+        assertNotNull(tableUnderTest.retrieve(0));
+        tableUnderTest.reserve(1);
+        assertEquals(32, tableUnderTest.limit());
+    }
+
+    /**
+     * Test method for a load factor close to 1, under which the table
+     * still keeps an empty slot so a missing ID is not searched for
+     * forever
+     */
+    public void testHighLoadFactor() {
+        HashTable table = new HashTable(4, 0.9, HashFunction.MODULO,
+            new ConsoleSink());
+        for (int id = 1; id <= 4; id++) {
+            assertTrue(table.addEntry(id, new Handle(id, 1)));
+        }
+        assertEquals(8, table.limit());
+        assertNull(table.retrieve(99));
+        assertFalse(table.deleteEntry(99));
+        assertNull(table.putIfAbsent(99, () -> new Handle(99, 1)));
+        table.reserve(4);
+        assertEquals(16, table.limit());
+        assertNull(table.retrieve(100));
+    }
+
+    /**
+     * Test method for claiming entries, which hold their slot through a
+     * resize until their handles are filled in or the claims given up
+     */
+    public void testClaim() {
+        HashTable table = new HashTable(4, 0.5, HashFunction.MODULO,
+            new ConsoleSink());
+        assertTrue(table.addEntry(1, new Handle(1, 1)));
+        assertNull(table.claim(1));
+        Consumer<Handle> kept = table.claim(2);
+        Consumer<Handle> dropped = table.claim(3);
+        assertNull(table.claim(2));
+        assertEquals(8, table.limit());
+        int[] listed = new int[1];
+        table.forEachId(id -> listed[0]++);
+        assertEquals(1, listed[0]);
+        kept.accept(new Handle(2, 5));
+        dropped.accept(null);
+        assertEquals(new Handle(2, 5), table.retrieve(2));
+        assertNull(table.retrieve(3));
+        assertEquals(2, table.count());
+        assertNotNull(table.claim(3));
+    }
 }
\ No newline at end of file
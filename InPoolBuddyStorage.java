@@ -0,0 +1,293 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A buddy allocator that keeps its free lists inside the pool. It hands
+ * out the same blocks as MemoryManager, but instead of a MemorySegment in
+ * a linked list node for every free block, a free block holds its own
+ * list links and order in its first bytes. Apart from that, the only
+ * bookkeeping is an array of list heads and a bitmap with a bit per 16
+ * bytes of the pool marking where free blocks start, which together with
+ * the order written in the block tells whether a buddy is free. Splitting,
+ * merging, inserting and removing create no objects besides the Handle
+ * returned, and the bitmap only grows with the pool.
+ *
+ * Each list is kept in the order MemoryManager keeps it and inserts take
+ * its first block, so every block chosen, and every line of dump, matches
+ * MemoryManager. That is address order, except that the block a remove
+ * ends up with after merging goes to the end of its list until the next
+ * insert or remove. The exception is records under 16 bytes, which take a
+ * 16 byte block because a smaller block cannot hold the links.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class InPoolBuddyStorage implements Storage {
+
+    /** Order of the smallest block, which has room for the links. */
+    static final int MIN_ORDER = 4;
+
+    // Enough orders for any block an int offset can address
+    private static final int ORDERS = 31;
+    private static final int NONE = -1;
+    // Positions of the links and order within a free block
+    private static final int NEXT = 0;
+    private static final int PREVIOUS = 4;
+    private static final int ORDER = 8;
+
+    private byte[] pool;
+    // First free block on the list of each order
+    private final int[] heads = new int[ORDERS];
+    // A set bit marks the start of a free block, by 16 byte unit
+    private BitSet freeStarts;
+    private long freeBytes;
+    // Merged block left at the end of its list, or NONE
+    private int straggler = NONE;
+    private int stragglerOrder;
+    private OutputSink output;
+
+    /**
+     * Creates an allocator with one free block covering the pool.
+     *
+     * @param initialSize Size of the pool, a power of two of at least 16.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public InPoolBuddyStorage(int initialSize, OutputSink output) {
+        if (initialSize < 1 << MIN_ORDER
+            || (initialSize & (initialSize - 1)) != 0) {
+            throw new IllegalArgumentException(
+                "Pool size must be a power of two of at least 16: "
+                    + initialSize);
+        }
+        this.output = output;
+        pool = new byte[initialSize];
+        freeStarts = new BitSet(initialSize >> MIN_ORDER);
+        Arrays.fill(heads, NONE);
+        link(0, order(initialSize), false);
+    }
+
+    /**
+     * Finds the order of the smallest block that holds a length.
+     *
+     * @param length Number of bytes, at least 1.
+     * @return The base two logarithm of the block size, at least
+     *         MIN_ORDER.
+     */
+    static int order(int length) {
+        return Math.max(MIN_ORDER,
+            32 - Integer.numberOfLeadingZeros(length - 1));
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        int order = order(length);
+        int found = order;
+        while (found < ORDERS && heads[found] == NONE) {
+            found++;
+        }
+        while (found == ORDERS) {
+            grow();
+            found = order;
+            while (found < ORDERS && heads[found] == NONE) {
+                found++;
+            }
+        }
+        int block = heads[found];
+        unlink(block, found);
+        // Keep the lower half and free the upper one at each split
+        while (found > order) {
+            found--;
+            link(block + (1 << found), found, false);
+        }
+        placeStraggler();
+        System.arraycopy(data, offset, pool, block, length);
+        return new Handle(block, length);
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        if (isFreed(handle)) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(pool, handle.getStartPosition(),
+            handle.getStartPosition() + handle.getDataLength());
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        return isFreed(handle) ? null : pool;
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        placeStraggler();
+        release(handle.getStartPosition(), order(handle.getDataLength()));
+    }
+
+    @Override
+    public void dump() {
+        StringBuilder report = new StringBuilder();
+        for (int order = 0; order < ORDERS; order++) {
+            if (heads[order] == NONE) {
+                continue;
+            }
+            report.append(1 << order).append(":");
+            for (int block = heads[order]; block != NONE;
+                block = readInt(block + NEXT)) {
+                report.append(" ").append(block);
+            }
+            report.append("\n");
+        }
+        output.println("Freeblock List:");
+        if (report.length() == 0) {
+            output.println("There are no freeblocks in the memory pool");
+        }
+        else {
+            output.print(report.toString());
+        }
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public long freeBytes() {
+        return freeBytes;
+    }
+
+    @Override
+    public long capacity() {
+        return pool.length;
+    }
+
+    /**
+     * Frees a block, merging it with its buddy for as long as the buddy
+     * is free too. A merged block goes to the end of its list.
+     */
+    private void release(int block, int order) {
+        int merged = order;
+        while (merged < ORDERS - 1) {
+            int buddy = block ^ (1 << merged);
+            if (buddy >= pool.length || !isFree(buddy, merged)) {
+                break;
+            }
+            unlink(buddy, merged);
+            block = Math.min(block, buddy);
+            merged++;
+        }
+        link(block, merged, merged > order);
+        if (merged > order) {
+            straggler = block;
+            stragglerOrder = merged;
+        }
+    }
+
+    /**
+     * Moves a merged block from the end of its list to its place in
+     * address order.
+     */
+    private void placeStraggler() {
+        if (straggler != NONE) {
+            int block = straggler;
+            unlink(block, stragglerOrder);
+            link(block, stragglerOrder, false);
+        }
+    }
+
+    /**
+     * Doubles the pool and frees the new half, which merges with the old
+     * pool if all of it is free.
+     */
+    private void grow() {
+        int half = pool.length;
+        pool = Arrays.copyOf(pool, half * 2);
+        BitSet wider = new BitSet(pool.length >> MIN_ORDER);
+        wider.or(freeStarts);
+        freeStarts = wider;
+        release(half, order(half));
+        output.println("Memory pool expanded to " + pool.length + " bytes");
+    }
+
+    /**
+     * Checks whether the block behind a handle is free, on its own or
+     * merged into a larger free block.
+     */
+    private boolean isFreed(Handle handle) {
+        int start = handle.getStartPosition();
+        for (int order = order(handle.getDataLength()); order < ORDERS
+            && 1 << order <= pool.length; order++) {
+            if (isFree(start & -(1 << order), order)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFree(int block, int order) {
+        return freeStarts.get(block >> MIN_ORDER)
+            && pool[block + ORDER] == order;
+    }
+
+    /**
+     * Puts a free block on its list, after the blocks at lower addresses
+     * or after all of them.
+     */
+    private void link(int block, int order, boolean atEnd) {
+        int previous = NONE;
+        int next = heads[order];
+        while (next != NONE && (atEnd || next < block)) {
+            previous = next;
+            next = readInt(next + NEXT);
+        }
+        writeInt(block + NEXT, next);
+        writeInt(block + PREVIOUS, previous);
+        pool[block + ORDER] = (byte) order;
+        if (previous == NONE) {
+            heads[order] = block;
+        }
+        else {
+            writeInt(previous + NEXT, block);
+        }
+        if (next != NONE) {
+            writeInt(next + PREVIOUS, block);
+        }
+        freeStarts.set(block >> MIN_ORDER);
+        freeBytes += 1L << order;
+    }
+
+    private void unlink(int block, int order) {
+        if (block == straggler) {
+            straggler = NONE;
+        }
+        int next = readInt(block + NEXT);
+        int previous = readInt(block + PREVIOUS);
+        if (previous == NONE) {
+            heads[order] = next;
+        }
+        else {
+            writeInt(previous + NEXT, next);
+        }
+        if (next != NONE) {
+            writeInt(next + PREVIOUS, previous);
+        }
+        freeStarts.clear(block >> MIN_ORDER);
+        freeBytes -= 1L << order;
+    }
+
+    private int readInt(int position) {
+        return (pool[position] << 24) | ((pool[position + 1] & 0xFF) << 16)
+            | ((pool[position + 2] & 0xFF) << 8) | (pool[position + 3] & 0xFF);
+    }
+
+    private void writeInt(int position, int value) {
+        pool[position] = (byte) (value >>> 24);
+        pool[position + 1] = (byte) (value >>> 16);
+        pool[position + 2] = (byte) (value >>> 8);
+        pool[position + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.StringWriter;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test class for InPoolBuddyStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class InPoolBuddyStorageTest extends TestCase {
+
+    private InPoolBuddyStorage storage;
+
+    /**
+     * Sets up a pool of 256 bytes before each test.
+     */
+    @Override
+    public void setUp() {
+        storage = new InPoolBuddyStorage(256, new ConsoleSink());
+    }
+
+    /**
+     * Tests block orders, which never go below 16 bytes.
+     */
+    public void testOrder() {
+        assertEquals(4, InPoolBuddyStorage.order(1));
+        assertEquals(4, InPoolBuddyStorage.order(16));
+        assertEquals(5, InPoolBuddyStorage.order(17));
+        assertEquals(7, InPoolBuddyStorage.order(128));
+    }
+
+    /**
+     * Tests that inserts split the lowest block and removes merge buddies
+     * back into one block.
+     */
+    public void testSplitAndMerge() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 20));
+        Handle tiny = storage.insert(StorageConformanceTest.bytes(3, 1));
+        assertEquals(0, first.getStartPosition());
+        assertEquals(64, second.getStartPosition());
+        assertEquals(96, tiny.getStartPosition());
+        assertEquals(256 - 64 - 32 - 16, storage.freeBytes());
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n16: 112\n128: 128\n",
+            systemOut().getHistory());
+        assertEquals(21, storage.get(second)[19]);
+        assertEquals(40, storage.peek(first)[39]);
+
+        storage.remove(first);
+        storage.remove(second);
+        storage.remove(tiny);
+        assertNull(storage.peek(first));
+        assertEquals(0, storage.get(second).length);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n256: 0\n",
+            systemOut().getHistory());
+        assertEquals(256, storage.freeBytes());
+    }
+
+    /**
+     * Tests that the pool doubles until a record fits and that the new
+     * half merges with a free old pool.
+     */
+    public void testGrows() {
+        Handle big = storage.insert(StorageConformanceTest.bytes(3, 300));
+        assertEquals(0, big.getStartPosition());
+        assertEquals(512, storage.capacity());
+        assertTrue(systemOut().getHistory().contains(
+            "Memory pool expanded to 512 bytes"));
+        assertEquals(3, storage.get(big)[0]);
+        storage.remove(big);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n512: 0\n",
+            systemOut().getHistory());
+    }
+
+    /**
+     * Tests that random inserts and removes of records of 16 bytes or
+     * more pick the same blocks as MemoryManager and leave the same free
+     * lists after every operation.
+     */
+    public void testMatchesMemoryManager() {
+        StringWriter expected = new StringWriter();
+        StringWriter actual = new StringWriter();
+        BufferedSink expectedSink = new BufferedSink(expected, 1 << 16);
+        BufferedSink actualSink = new BufferedSink(actual, 1 << 16);
+        MemoryManager reference = new MemoryManager(256, expectedSink);
+        storage = new InPoolBuddyStorage(256, actualSink);
+        Random random = new Random(3);
+        Handle[] handles = new Handle[24];
+        for (int i = 0; i < 3000; i++) {
+            int slot = random.nextInt(handles.length);
+            if (handles[slot] != null) {
+                reference.remove(handles[slot]);
+                storage.remove(handles[slot]);
+                handles[slot] = null;
+            }
+            else {
+                byte[] data = StorageConformanceTest.bytes(i,
+                    16 + random.nextInt(200));
+                handles[slot] = reference.insert(data);
+                assertEquals(handles[slot], storage.insert(data));
+            }
+            reference.dump();
+            storage.dump();
+            expectedSink.flush();
+            actualSink.flush();
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+}
@@ -142,6 +142,9 @@ public class LinkedList<T> implements Iterable<T> {
         
         Node<T> oldHead = firstNode;
         firstNode = oldHead.nextNode;
+        if (firstNode == null) {
+            lastNode = null;
+        }
         elementCount--;
 
         oldHead.nextNode = null;
@@ -181,8 +184,7 @@ public class LinkedList<T> implements Iterable<T> {
             return false;
 
         if (firstNode.data.equals(data)) { 
-            firstNode = firstNode.nextNode;
-            elementCount--;
+            removeFirst();
             return true;
         }
 
@@ -196,6 +198,9 @@ public class LinkedList<T> implements Iterable<T> {
 
         if (currentNode != null) { 
             previousNode.nextNode = currentNode.nextNode;
+            if (currentNode == lastNode) {
+                lastNode = previousNode;
+            }
             elementCount--; 
             return true;
         }
@@ -234,6 +239,7 @@ public class LinkedList<T> implements Iterable<T> {
 
         // Updating the head of the list to point to the sorted list
         firstNode = sortedStart;
+        relinkLastNode();
     }
     
     /**
@@ -262,6 +268,9 @@ public class LinkedList<T> implements Iterable<T> {
         // Adjust links if found
         if (currentNode != null) {
             prevNode.nextNode = currentNode.nextNode;
+            if (currentNode == lastNode) {
+                lastNode = prevNode;
+            }
             elementCount--;
             return true;
         }
@@ -302,6 +311,9 @@ public class LinkedList<T> implements Iterable<T> {
 
         Node<T> tempNode = firstNode;
         firstNode = firstNode.nextNode;
+        if (firstNode == null) {
+            lastNode = null;
+        }
         elementCount--; 
 
         return tempNode.data;
@@ -386,6 +398,17 @@ public class LinkedList<T> implements Iterable<T> {
 
         // Updating the head of the list to point to the sorted list
         firstNode = sortedStart;
+        relinkLastNode();
+    }
+
+    /**
+     * Finds the last node again after the nodes have been reordered.
+     */
+    private void relinkLastNode() {
+        lastNode = firstNode;
+        while (lastNode != null && lastNode.nextNode != null) {
+            lastNode = lastNode.nextNode;
+        }
     }
 
     @Override
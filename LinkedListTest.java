@@ -443,4 +443,29 @@ public class LinkedListTest extends TestCase {
         assertFalse(list5.removeElement("third"));
         assertEquals(2, list5.size());
     }
+
+    /**
+     * Tests that appending still works after the last element has been
+     * removed or the list has been sorted
+     */
+    public void testAppendAfterRemovingLast() {
+        testList.append("first");
+        testList.append("second");
+        assertTrue(testList.remove("second"));
+        testList.append("third");
+        assertEquals(2, testList.size());
+        assertEquals("third", testList.getElementAt(1));
+
+        assertTrue(testList.removeElement("third"));
+        testList.poll();
+        testList.append("fourth");
+        assertEquals("fourth", testList.getElementAt(0));
+
+        linkedList.append(new MemorySegment(64, 32));
+        linkedList.append(new MemorySegment(0, 32));
+        linkedList.sortFreeBlocks();
+        linkedList.append(new MemorySegment(128, 32));
+        assertEquals(3, linkedList.size());
+        assertEquals(128, linkedList.getElementAt(2).fetchOffset());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,388 @@
+import java.util.Arrays;
+
+/**
+ * A log-structured storage engine. Serialized seminars are appended one
+ * after another into fixed-size segments instead of being rounded up to a
+ * power-of-two block, so an insert-mostly workload wastes almost no
+ * space. A handle's start position is segment * segmentSize + offset.
+ *
+ * Every record is preceded by a four byte header holding its length.
+ * Removing a record only sets the top bit of that header and counts its
+ * bytes as dead. A cleaner picks sealed segments whose live bytes have
+ * fallen below a threshold, copies their live records to the head
+ * segment and frees them, telling the RelocationListener where each
+ * record went. The cleaner runs a bounded amount of work on every insert
+ * and remove, so handles never move while a command is reading them.
+ *
+ * A record too long for one segment takes a run of adjacent free
+ * segments of its own, growing the log if there is no such run. It is
+ * never moved by the cleaner, and the run is freed when it is removed.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class LogStorage implements Storage {
+
+    /** Default segment size in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+    /** Default live ratio below which a segment is cleaned. */
+    public static final double DEFAULT_CLEAN_THRESHOLD = 0.5;
+
+    private static final int HEADER_BYTES = 4;
+    private static final int DEAD = 0x80000000;
+    private static final int FREE = -1;
+    // Marks a segment that continues a long record from the one before
+    private static final int CONTINUED = -2;
+
+    /** Bytes the cleaner may copy per insert or remove. */
+    private static final int CLEAN_STEP = 2 * DEFAULT_SEGMENT_SIZE;
+
+    private final int segmentSize;
+    private final int cleanBelow;
+    private byte[] log;
+    private int[] used;
+    private int[] live;
+    private int[] freeSegments;
+    private int freeCount;
+    private int head;
+    private int victim = -1;
+    private int victimOffset;
+    private boolean victimsChanged;
+    private RelocationListener listener;
+    private OutputSink output;
+
+    /**
+     * Creates a log with the default segment size and cleaning threshold.
+     *
+     * @param initialSize Initial size of the log in bytes.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public LogStorage(int initialSize, OutputSink output) {
+        this(initialSize, DEFAULT_SEGMENT_SIZE, DEFAULT_CLEAN_THRESHOLD,
+            output);
+    }
+
+    /**
+     * Creates a log.
+     *
+     * @param initialSize Initial size of the log in bytes, rounded up to
+     *        at least two segments.
+     * @param segmentSize Size of every segment in bytes.
+     * @param cleanThreshold Live ratio below which a segment is cleaned.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public LogStorage(int initialSize, int segmentSize,
+        double cleanThreshold, OutputSink output) {
+        if (segmentSize <= HEADER_BYTES) {
+            throw new IllegalArgumentException(
+                "Segment size too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.cleanBelow = (int) (segmentSize * cleanThreshold);
+        this.output = output;
+        int segments = Math.max(2,
+            (initialSize + segmentSize - 1) / segmentSize);
+        log = new byte[segments * segmentSize];
+        used = new int[0];
+        live = new int[0];
+        freeSegments = new int[0];
+        addSegments(segments);
+        head = takeFreeSegment();
+    }
+
+    @Override
+    public void setRelocationListener(RelocationListener relocations) {
+        this.listener = relocations;
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        clean();
+        if (length > segmentSize - HEADER_BYTES) {
+            return appendRun(length, data, offset);
+        }
+        return append(length, data, offset);
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        byte[] bytes = peek(handle);
+        if (bytes == null) {
+            return new byte[0];
+        }
+        int start = handle.getStartPosition();
+        return Arrays.copyOfRange(bytes, start,
+            start + handle.getDataLength());
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        int header = readHeader(handle.getStartPosition() - HEADER_BYTES);
+        return (header & DEAD) != 0 ? null : log;
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        int position = handle.getStartPosition() - HEADER_BYTES;
+        int header = readHeader(position);
+        if ((header & DEAD) != 0) {
+            return;
+        }
+        writeHeader(position, header | DEAD);
+        int segment = position / segmentSize;
+        live[segment] -= HEADER_BYTES + header;
+        if (live[segment] == 0 && segment != head && segment != victim) {
+            freeSegment(segment);
+        }
+        victimsChanged = true;
+        clean();
+    }
+
+    /**
+     * Prints the head segment and every segment holding dead bytes, the
+     * places where space can still be reclaimed, like the free block list
+     * of the buddy pool.
+     */
+    @Override
+    public void dump() {
+        output.println("Log segments of " + segmentSize + " bytes:");
+        for (int segment = 0; segment < used.length; segment++) {
+            if (used[segment] >= 0
+                && (segment == head || live[segment] < used[segment])) {
+                output.println(segment + ": " + live[segment] + " live of "
+                    + used[segment] + " bytes"
+                    + (segment == head ? " (head)" : ""));
+            }
+        }
+        output.println("Free segments: " + freeCount + " of " + used.length);
+    }
+
+    /**
+     * Gets the number of bytes held by records that have not been removed,
+     * headers included.
+     *
+     * @return The live bytes.
+     */
+    public long liveBytes() {
+        long total = 0;
+        for (int segment = 0; segment < used.length; segment++) {
+            if (used[segment] >= 0) {
+                total += live[segment];
+            }
+        }
+        return total;
+    }
+
+    // Dead records and the unused ends of sealed segments are not free
+    // until their segment is cleaned
+    @Override
+    public long freeBytes() {
+        return (long) freeCount * segmentSize + segmentSize - used[head];
+    }
+
+    @Override
+    public long capacity() {
+        return log.length;
+    }
+
+    /**
+     * Copies a record behind the head, moving to a new segment when the
+     * head is full.
+     */
+    private Handle append(int length, byte[] data, int offset) {
+        int recordBytes = HEADER_BYTES + length;
+        if (used[head] + recordBytes > segmentSize) {
+            head = takeFreeSegment();
+            victimsChanged = true;
+        }
+        int position = head * segmentSize + used[head];
+        writeHeader(position, length);
+        System.arraycopy(data, offset, log, position + HEADER_BYTES, length);
+        used[head] += recordBytes;
+        live[head] += recordBytes;
+        return new Handle(position + HEADER_BYTES, length);
+    }
+
+    /**
+     * Copies a record longer than a segment into a run of free segments
+     * taken for it alone.
+     */
+    private Handle appendRun(int length, byte[] data, int offset) {
+        int recordBytes = HEADER_BYTES + length;
+        int count = (recordBytes + segmentSize - 1) / segmentSize;
+        int first = findFreeRun(count);
+        while (first == -1) {
+            int trailing = 0;
+            while (trailing < used.length
+                && used[used.length - 1 - trailing] == FREE) {
+                trailing++;
+            }
+            addSegments(Math.max(used.length, count - trailing));
+            output.println(
+                "Memory pool expanded to " + log.length + " bytes");
+            first = findFreeRun(count);
+        }
+        int kept = 0;
+        for (int i = 0; i < freeCount; i++) {
+            if (freeSegments[i] < first || freeSegments[i] >= first + count) {
+                freeSegments[kept++] = freeSegments[i];
+            }
+        }
+        freeCount = kept;
+        used[first] = recordBytes;
+        live[first] = recordBytes;
+        for (int segment = first + 1; segment < first + count; segment++) {
+            used[segment] = CONTINUED;
+            live[segment] = 0;
+        }
+        int position = first * segmentSize;
+        writeHeader(position, length);
+        System.arraycopy(data, offset, log, position + HEADER_BYTES, length);
+        return new Handle(position + HEADER_BYTES, length);
+    }
+
+    /**
+     * Finds the lowest of a number of adjacent free segments.
+     *
+     * @return The first segment of the run, or -1 if there is none.
+     */
+    private int findFreeRun(int count) {
+        int run = 0;
+        for (int segment = 0; segment < used.length; segment++) {
+            run = used[segment] == FREE ? run + 1 : 0;
+            if (run == count) {
+                return segment - count + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies up to CLEAN_STEP bytes of live records out of the segment
+     * being cleaned, choosing a new one when it is done.
+     */
+    private void clean() {
+        int budget = CLEAN_STEP;
+        while (budget > 0) {
+            if (victim == -1) {
+                victim = pickVictim();
+                victimOffset = 0;
+                if (victim == -1) {
+                    return;
+                }
+            }
+            if (victimOffset >= used[victim]) {
+                freeSegment(victim);
+                victim = -1;
+                continue;
+            }
+            int position = victim * segmentSize + victimOffset;
+            int header = readHeader(position);
+            int length = header & ~DEAD;
+            int recordBytes = HEADER_BYTES + length;
+            if ((header & DEAD) == 0) {
+                if (used[head] + recordBytes > segmentSize
+                    && freeCount == 0) {
+                    // Wait for an insert to grow the log
+                    return;
+                }
+                Handle from = new Handle(position + HEADER_BYTES, length);
+                Handle to = append(length, log, position + HEADER_BYTES);
+                writeHeader(position, header | DEAD);
+                live[victim] -= recordBytes;
+                if (listener != null) {
+                    listener.relocated(from, to);
+                }
+                budget -= recordBytes;
+            }
+            victimOffset += recordBytes;
+        }
+    }
+
+    /**
+     * Finds the sealed segment with the fewest live bytes, if it is below
+     * the threshold. Segments are only rescanned after something changed.
+     */
+    private int pickVictim() {
+        if (!victimsChanged) {
+            return -1;
+        }
+        victimsChanged = false;
+        int best = -1;
+        for (int segment = 0; segment < used.length; segment++) {
+            // A long record's run is never cleaned
+            if (used[segment] >= 0 && used[segment] <= segmentSize
+                && segment != head && live[segment] < cleanBelow
+                && (best == -1 || live[segment] < live[best])) {
+                best = segment;
+            }
+        }
+        return best;
+    }
+
+    private int takeFreeSegment() {
+        if (freeCount == 0) {
+            addSegments(used.length);
+            output.println(
+                "Memory pool expanded to " + log.length + " bytes");
+        }
+        int segment = freeSegments[--freeCount];
+        used[segment] = 0;
+        live[segment] = 0;
+        return segment;
+    }
+
+    private void freeSegment(int segment) {
+        used[segment] = FREE;
+        live[segment] = 0;
+        freeSegments[freeCount++] = segment;
+        // Free the rest of a long record's run
+        for (int next = segment + 1;
+            next < used.length && used[next] == CONTINUED; next++) {
+            used[next] = FREE;
+            freeSegments[freeCount++] = next;
+        }
+    }
+
+    /**
+     * Adds segments at the end of the log. They are pushed so the lowest
+     * numbered one is taken first.
+     */
+    private void addSegments(int count) {
+        int first = used.length;
+        int total = first + count;
+        if (total * (long) segmentSize > log.length) {
+            log = Arrays.copyOf(log, total * segmentSize);
+        }
+        used = Arrays.copyOf(used, total);
+        live = Arrays.copyOf(live, total);
+        freeSegments = Arrays.copyOf(freeSegments, total);
+        for (int segment = total - 1; segment >= first; segment--) {
+            used[segment] = FREE;
+            freeSegments[freeCount++] = segment;
+        }
+    }
+
+    private int readHeader(int position) {
+        return ((log[position] & 0xFF) << 24)
+            | ((log[position + 1] & 0xFF) << 16)
+            | ((log[position + 2] & 0xFF) << 8)
+            | (log[position + 3] & 0xFF);
+    }
+
+    private void writeHeader(int position, int header) {
+        log[position] = (byte) (header >>> 24);
+        log[position + 1] = (byte) (header >>> 16);
+        log[position + 2] = (byte) (header >>> 8);
+        log[position + 3] = (byte) header;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.List;
+import student.TestCase;
+
+/**
+ * Test class for LogStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class LogStorageTest extends TestCase {
+
+    private CountingSink sink;
+    private LogStorage storage;
+    private List<Handle[]> moves;
+
+    /**
+     * Sets up a log of two 64 byte segments before each test.
+     */
+    @Override
+    public void setUp() {
+        sink = new CountingSink();
+        storage = new LogStorage(128, 64, 0.5, sink);
+        moves = new ArrayList<>();
+        storage.setRelocationListener(
+            (from, to) -> moves.add(new Handle[] { from, to }));
+    }
+
+    /**
+     * Tests that records are packed one after another with no rounding.
+     */
+    public void testAppendsSequentially() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 10));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 20));
+        assertEquals(4, first.getStartPosition());
+        assertEquals(18, second.getStartPosition());
+        assertEquals(38, storage.liveBytes());
+        byte[] read = storage.get(second);
+        assertEquals(20, read.length);
+        assertEquals(2, read[0]);
+        assertEquals(21, read[19]);
+    }
+
+    /**
+     * Tests that removed records can no longer be read.
+     */
+    public void testRemove() {
+        Handle handle = storage.insert(StorageConformanceTest.bytes(1, 10));
+        storage.remove(handle);
+        assertNull(storage.peek(handle));
+        assertEquals(0, storage.get(handle).length);
+        assertEquals(0, storage.liveBytes());
+        storage.remove(handle);
+        assertEquals(0, storage.liveBytes());
+    }
+
+    /**
+     * Tests that the cleaner moves live records out of a mostly dead
+     * segment and reports where they went.
+     */
+    public void testCleansSparseSegments() {
+        Handle keep = storage.insert(StorageConformanceTest.bytes(7, 20));
+        Handle drop = storage.insert(StorageConformanceTest.bytes(8, 30));
+        // Seals segment 0 and starts segment 1
+        storage.insert(StorageConformanceTest.bytes(9, 30));
+        storage.remove(drop);
+
+        assertEquals(1, moves.size());
+        assertEquals(keep, moves.get(0)[0]);
+        Handle moved = moves.get(0)[1];
+        assertEquals(64 + 4 + 30 + 4, moved.getStartPosition());
+        assertNull(storage.peek(keep));
+        assertEquals(7, storage.get(moved)[0]);
+        assertEquals(128, storage.capacity());
+    }
+
+    /**
+     * Tests that the log grows by doubling when every segment is full.
+     */
+    public void testGrows() {
+        for (int i = 0; i < 4; i++) {
+            storage.insert(StorageConformanceTest.bytes(i, 50));
+        }
+        assertEquals(256, storage.capacity());
+        assertEquals(1, sink.getLines());
+        storage.dump();
+        assertEquals(1 + 3, sink.getLines());
+    }
+
+    /**
+     * Tests that a record larger than a segment gets a run of segments of
+     * its own, partly new at the end of the log, that is freed when it is
+     * removed.
+     */
+    public void testOversizedRecords() {
+        Handle small = storage.insert(StorageConformanceTest.bytes(1, 10));
+        Handle large = storage.insert(StorageConformanceTest.bytes(2, 150));
+        assertEquals(64 + 4, large.getStartPosition());
+        assertEquals(256, storage.capacity());
+        byte[] read = storage.get(large);
+        assertEquals(150, read.length);
+        assertEquals(2, read[0]);
+        assertEquals((byte) 151, read[149]);
+        assertEquals(14 + 154, storage.liveBytes());
+        long free = storage.freeBytes();
+        storage.remove(large);
+        assertNull(storage.peek(large));
+        assertEquals(free + 192, storage.freeBytes());
+        assertEquals(10, storage.get(small).length);
+        // The freed run is used again rather than growing the log
+        Handle again = storage.insert(StorageConformanceTest.bytes(3, 100));
+        assertEquals(64 + 4, again.getStartPosition());
+        assertEquals(256, storage.capacity());
+        assertNull(storage.insert(new byte[0]));
+    }
+
+    /**
+     * Tests that a SeminarDB on a log keeps finding seminars after the
+     * cleaner has moved them.
+     */
+    public void testUnderSeminarDB() {
+        SeminarDB db = new SeminarDB(
+            new LogStorage(256, 256, 0.5, new ConsoleSink()), 8,
+            new ConsoleSink());
+        for (int id = 1; id <= 6; id++) {
+            Seminar seminar = new Seminar(id, "Title", "2405231000", 75,
+                (short) 15, (short) 33, 125, new String[] { "A" }, "Desc");
+            assertTrue(db.addSeminar(id, seminar));
+        }
+        for (int id = 1; id <= 5; id += 2) {
+            assertTrue(db.eraseSeminar(id));
+        }
+        systemOut().clearHistory();
+        for (int id = 2; id <= 6; id += 2) {
+            assertTrue(db.findSeminar(id));
+            assertTrue(systemOut().getHistory().contains("ID: " + id + ","));
+        }
+        assertFalse(db.findSeminar(3));
+        assertFalse(db.saveSnapshot("log.snap"));
+    }
+}
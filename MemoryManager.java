@@ -1,3 +1,7 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
 /**
  * Handles the memory pool management using the 
  * Buddy system memory allocation strategy.
@@ -7,7 +11,7 @@
  * @author brettn
  * @version 09/15/2023
  */
-public class MemoryManager {
+public class MemoryManager implements Storage {
 
     /**
      * Memory pool represented as a byte array.
@@ -19,14 +23,42 @@ public class MemoryManager {
      */
     private LinkedList<MemorySegment>[] freeBlocksLists;
 
+    /**
+     * Where expansion messages and dumps are written.
+     */
+    private OutputSink output;
+
+    /**
+     * Size of the pages dirty regions are tracked in.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * Pages of the pool written since the last snapshot or checkpoint.
+     */
+    private BitSet dirtyPages = new BitSet();
+
     /**
      * Constructs the memory manager by initializing 
      * the memory pool and setting up the list of free blocks.
      *
      * @param initialSize Size of the memory pool upon initialization.
      */
-    @SuppressWarnings("unchecked")
     public MemoryManager(int initialSize) {
+        this(initialSize, new ConsoleSink());
+    }
+
+    /**
+     * Constructs a memory manager that prints to the given sink.
+     *
+     * @param initialSize Size of the memory pool upon initialization.
+     * @param output Where expansion messages and dumps are written.
+     */
+    @SuppressWarnings("unchecked")
+    public MemoryManager(int initialSize, OutputSink output) {
+        this.output = output;
+        markDirty(0, initialSize);
+
         // Initialize memory pool
         memoryPool = new byte[initialSize];
         
@@ -42,6 +74,130 @@ public class MemoryManager {
             new MemorySegment(0, initialSize));
     }
 
+    /**
+     * Rebuilds a memory manager from the pool and free lists saved in a
+     * snapshot.
+     *
+     * @param pool The saved memory pool.
+     * @param freeLists The section written by exportFreeLists.
+     * @param output Where expansion messages and dumps are written.
+     */
+    MemoryManager(byte[] pool, ByteBuffer freeLists, OutputSink output) {
+        this.output = output;
+        this.memoryPool = pool;
+        applyCheckpoint(pool.length, freeLists);
+    }
+
+    /**
+     * Writes the free lists as a snapshot section: the number of lists,
+     * then for each list its block count followed by the block offsets.
+     *
+     * @return The section, ready to be written.
+     */
+    ByteBuffer exportFreeLists() {
+        int size = 4;
+        for (LinkedList<MemorySegment> list : getFreeBlocksLists()) {
+            size += 4 + 4 * list.size();
+        }
+        ByteBuffer section = ByteBuffer.allocate(size);
+        section.putInt(getFreeBlocksLists().length);
+        for (LinkedList<MemorySegment> list : getFreeBlocksLists()) {
+            section.putInt(list.size());
+            for (MemorySegment block : list) {
+                section.putInt(block.fetchOffset());
+            }
+        }
+        section.flip();
+        return section;
+    }
+
+    /**
+     * Grows the pool to the length saved by an incremental checkpoint and
+     * replaces the free lists with the saved ones. The changed pages are
+     * then copied into getPool by the caller.
+     *
+     * @param poolLength Pool length at the time of the checkpoint.
+     * @param freeLists The section written by exportFreeLists.
+     */
+    void applyCheckpoint(int poolLength, ByteBuffer freeLists) {
+        if (poolLength != memoryPool.length) {
+            memoryPool = Arrays.copyOf(memoryPool, poolLength);
+        }
+        int totalLists = freeLists.getInt();
+        setFreeBlocksLists(newFreeLists(totalLists));
+        initializeFreeBlocksLists(totalLists);
+        for (int idx = 0; idx < totalLists; idx++) {
+            int blocks = freeLists.getInt();
+            for (int i = 0; i < blocks; i++) {
+                getFreeBlocksLists()[idx].append(
+                    new MemorySegment(freeLists.getInt(), 1 << idx));
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkedList<MemorySegment>[] newFreeLists(int count) {
+        // Arrays of a generic type can only be made raw
+        return new LinkedList[count];
+    }
+
+    /**
+     * Gets the pages written since the last clearDirty.
+     *
+     * @return Set of dirty page numbers.
+     */
+    BitSet getDirtyPages() {
+        return dirtyPages;
+    }
+
+    /**
+     * Forgets which pages changed, after a snapshot or checkpoint.
+     */
+    void clearDirty() {
+        dirtyPages.clear();
+    }
+
+    private void markDirty(int start, int length) {
+        if (length > 0) {
+            dirtyPages.set(start / PAGE_SIZE,
+                (start + length - 1) / PAGE_SIZE + 1);
+        }
+    }
+
+    /**
+     * Gives the memory pool itself to a snapshot. The array is only valid
+     * until the next insert.
+     *
+     * @return The memory pool.
+     */
+    byte[] getPool() {
+        return memoryPool;
+    }
+
+    /**
+     * Copies bytes into a block that is already allocated, so an allocator
+     * carving records out of the block can place them.
+     *
+     * @param position Position in the pool of the first byte written.
+     * @param data Array holding the bytes to write.
+     * @param offset Position of the first byte in data.
+     * @param length Number of bytes to write.
+     */
+    void write(int position, byte[] data, int offset, int length) {
+        System.arraycopy(data, offset, memoryPool, position, length);
+        markDirty(position, length);
+    }
+
+    /**
+     * Redirects expansion messages and dumps to another sink.
+     *
+     * @param sink The new output sink.
+     */
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
     // Helper method to calculate the number of free block lists needed
     private int computeNumberOfLists(int size) {
         return (int) (Math.log(size) / Math.log(2)) + 1;
@@ -85,33 +241,111 @@ public class MemoryManager {
      * @param data Byte data to be stored.
      * @return A handle indicating the location of the stored data.
      */
+    @Override
     public Handle insert(byte[] data) {
-        if (data == null || data.length == 0) { //Untested
+        if (data == null) {
+            return null;
+        }
+        return insert(data, 0, data.length);
+    }
+
+    /**
+     * Inserts part of an array into the memory pool, so callers can reuse
+     * one buffer for many records.
+     *
+     * @param data Array holding the bytes to be stored.
+     * @param offset Position of the first byte to store.
+     * @param length Number of bytes to store.
+     * @return A handle indicating the location of the stored data.
+     */
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) { //Untested
             return null;  
         }
 
-        int index = locateFreeBlock(data.length);
+        int index = locateFreeBlock(length);
 
         // Ensure there's enough memory space.
-        while (isInsufficientSpace(index, data.length)) {
+        while (isInsufficientSpace(index, length)) {
             amplifyMemory();
-            index = locateFreeBlock(data.length);
+            index = locateFreeBlock(length);
         }
 
         MemorySegment block = fetchBlockAt(index);
         while (block != null && suitableBlockSize( //Untested
-            index, data.length)) {
+            index, length)) {
             getFreeBlocksLists()[index].removeFirst();
             index--;
             block = divideAndFetch(block, index);
         }
 
         // Copy data into the memory pool.
-        System.arraycopy(data, 0, memoryPool, block.fetchOffset(), data.length);
+        System.arraycopy(data, offset, memoryPool, block.fetchOffset(), length);
+        markDirty(block.fetchOffset(), length);
 
         removeAndSort(index);
 
-        return new Handle(block.fetchOffset(), data.length);
+        return new Handle(block.fetchOffset(), length);
+    }
+
+    /**
+     * Inserts many records in one pass over the free lists. Every block
+     * is chosen first, exactly as one insert after another would choose
+     * it, with the pool doubled on the free lists alone as often as it
+     * needs; the pool array is then copied once at its final size, with
+     * one expansion message, and the records are written. The lists are
+     * sorted only when a block may be out of order rather than after
+     * every record.
+     *
+     * @param records The records, in the order to place them.
+     * @return A handle for each record, null for an empty one.
+     */
+    @Override
+    public Handle[] insertAll(byte[][] records) {
+        Handle[] handles = new Handle[records.length];
+        int poolLength = memoryPool.length;
+        // A block merged by a remove or an expansion is appended unsorted
+        boolean unsorted = true;
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] == null || records[i].length == 0) {
+                continue;
+            }
+            int length = records[i].length;
+            int index = locateFreeBlock(length);
+            while (index == -1) {
+                addFreeHalf(poolLength);
+                poolLength *= 2;
+                unsorted = true;
+                index = locateFreeBlock(length);
+            }
+            MemorySegment block = fetchBlockAt(index);
+            while (suitableBlockSize(index, length)) {
+                getFreeBlocksLists()[index].removeFirst();
+                index--;
+                block = divideAndFetch(block, index);
+            }
+            getFreeBlocksLists()[index].removeFirst();
+            if (unsorted) {
+                sortAllFreeBlocks();
+                unsorted = false;
+            }
+            handles[i] = new Handle(block.fetchOffset(), length);
+        }
+        if (poolLength > memoryPool.length) {
+            int previousLength = memoryPool.length;
+            memoryPool = Arrays.copyOf(memoryPool, poolLength);
+            markDirty(previousLength, poolLength - previousLength);
+            output.println(
+                "Memory pool expanded to " + memoryPool.length + " bytes");
+        }
+        for (int i = 0; i < records.length; i++) {
+            if (handles[i] != null) {
+                write(handles[i].getStartPosition(), records[i], 0,
+                    records[i].length);
+            }
+        }
+        return handles;
     }
 
     private boolean isInsufficientSpace(int index, int length) {
@@ -205,7 +439,22 @@ public class MemoryManager {
             expandedMemory[i] = memoryPool[i];
         }
         memoryPool = expandedMemory;
+        markDirty(memoryPool.length / 2, memoryPool.length / 2);
+
+        addFreeHalf(memoryPool.length / 2);
+
+        output.println(
+            "Memory pool expanded to " + memoryPool.length + " bytes");
+    }
+
 
+    /**
+     * Frees the second half of a pool doubled from the given size, adding
+     * a list for the new largest block size.
+     *
+     * @param half Size of the pool before it doubled.
+     */
+    private void addFreeHalf(int half) {
         // Create new storage for free blocks lists with one additional slot
         LinkedList<MemorySegment>[] updatedFreeBlocksLists = new LinkedList[
             getFreeBlocksLists().length + 1];
@@ -218,16 +467,12 @@ public class MemoryManager {
         setFreeBlocksLists(updatedFreeBlocksLists);
 
         // Add new free block representing the additional memory
-        MemorySegment additionalBlock = new MemorySegment( 
-            memoryPool.length / 2, memoryPool.length / 2); 
+        MemorySegment additionalBlock = new MemorySegment(half, half);
         getFreeBlocksLists(
             )[getFreeBlocksLists().length - 2].append(additionalBlock);
 
         // Attempt to merge any adjacent free blocks
         mergeFreeBlocks();
-
-        System.out.println(
-            "Memory pool expanded to " + memoryPool.length + " bytes");
     }
 
 
@@ -236,6 +481,7 @@ public class MemoryManager {
      *
      * @param handle Handle pointing at the block to be removed.
      */
+    @Override
     public void remove(Handle handle) {
         int sizeOfBlock = findAdjustedBlockSize(handle.getDataLength());
         int listIndex = calculateListIndex(sizeOfBlock);
@@ -370,16 +616,12 @@ public class MemoryManager {
      * @return Data as a byte array. 
      * Returns an empty array if data doesn't exist or was removed.
      */
+    @Override
     public byte[] get(Handle handle) {
         // Deduce the block's size
         int dataSize = handle.getDataLength();
 
-        int listIndex = computeLogBaseTwo(dataSize);
-
-        MemorySegment queryBlock = new MemorySegment(
-            handle.getStartPosition(), dataSize);
-
-        if (isBlockInList(getFreeBlocksLists()[listIndex], queryBlock)) {
+        if (isFreed(handle)) {
             return new byte[0];
         }
 
@@ -391,15 +633,49 @@ public class MemoryManager {
         return extractedData;
     }
 
-    // Utility method to compute logarithm to the base 2
-    private int computeLogBaseTwo(int value) {
-        return (int)(Math.log(value) / Math.log(2));
+    /**
+     * Gives read access to the bytes behind a handle without copying them.
+     * The returned array is the pool itself and is only valid until the
+     * next insert, which may replace it with a larger one.
+     *
+     * @param handle Handle that points to the data block's location.
+     * @return The memory pool, with the data at the handle's start
+     *         position, or null if the block has been removed.
+     */
+    @Override
+    public byte[] peek(Handle handle) {
+        return isFreed(handle) ? null : memoryPool;
     }
 
-    // Utility method to check if a block is present in a list
-    private boolean isBlockInList(
-        LinkedList<MemorySegment> list, MemorySegment block) {
-        return list.includes(block);
+    /**
+     * Checks whether the block behind a handle is free, on its own or
+     * merged into a larger free block.
+     *
+     * @param handle Handle that points to the data block's location.
+     * @return True if a free block covers the handle's start position.
+     */
+    private boolean isFreed(Handle handle) {
+        int start = handle.getStartPosition();
+        for (int idx = calculateListIndex(findAdjustedBlockSize(
+            handle.getDataLength())); idx < getFreeBlocksLists().length;
+            idx++) {
+            if (holdsOffset(getFreeBlocksLists()[idx],
+                start & -computeBlockSize(idx))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Utility method to check if a list holds a block at an offset, the
+    // size being implied by the list
+    private boolean holdsOffset(LinkedList<MemorySegment> list, int offset) {
+        for (MemorySegment block : list) {
+            if (block.fetchOffset() == offset) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // Utility method to extract data from the memory pool
@@ -408,17 +684,28 @@ public class MemoryManager {
         System.arraycopy(source, srcPos, destination, 0, length);
     }
 
+    @Override
+    public long freeBytes() {
+        return getTotalFreeSpace();
+    }
+
+    @Override
+    public long capacity() {
+        return memoryPool.length;
+    }
+
     /**
      * Displays the current status of the free blocks in the memory pool.
      */
+    @Override
     public void dump() {
         String report = buildFreeBlocksReport();
-        System.out.println("Freeblock List:");
+        output.println("Freeblock List:");
         if (report.isEmpty()) {
-            System.out.println("There are no freeblocks in the memory pool");
+            output.println("There are no freeblocks in the memory pool");
         } 
         else {
-            System.out.print(report);
+            output.print(report);
         }
     }
 
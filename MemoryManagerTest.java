@@ -280,6 +280,42 @@ public class MemoryManagerTest extends student.TestCase {
         MemoryManager mm = new MemoryManager(32);
         assertEquals(16, mm.findAdjustedBlockSize(9));
     }
-    
-    
+
+    /**
+     * Tests that inserting records together places them where inserting
+     * them one at a time would, with one expansion of the pool.
+     */
+    public void testInsertAll() {
+        MemoryManager single = new MemoryManager(64);
+        MemoryManager batch = new MemoryManager(64);
+        byte[][] records = new byte[12][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new byte[5 + i * 23];
+            records[i][0] = (byte) i;
+        }
+        records[3] = null;
+        for (MemoryManager mm : new MemoryManager[] { single, batch }) {
+            Handle first = mm.insert(new byte[40]);
+            mm.insert(new byte[10]);
+            mm.remove(first);
+        }
+        systemOut().clearHistory();
+        Handle[] handles = batch.insertAll(records);
+        assertEquals("Memory pool expanded to 4096 bytes\n",
+            systemOut().getHistory());
+        assertNull(handles[3]);
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] != null) {
+                Handle expected = single.insert(records[i]);
+                assertEquals(expected, handles[i]);
+                assertEquals(i, batch.get(handles[i])[0]);
+            }
+        }
+        systemOut().clearHistory();
+        single.dump();
+        String dump = systemOut().getHistory();
+        systemOut().clearHistory();
+        batch.dump();
+        assertEquals(dump, systemOut().getHistory());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+
+/**
+ * Compact binary form of a command file that can be replayed many times
+ * without parsing any text. Compiling runs the normal parser once and
+ * writes one record per command: an opcode byte, then the seminar ID for
+ * insert, delete and search, and for insert the length and bytes of the
+ * serialized seminar exactly as they will be stored in the memory pool.
+ * Snapshot and checkpoint records carry their file name in modified
+ * UTF-8.
+ * Replaying memory-maps the log and feeds the records straight to the
+ * SeminarDB.
+ *
+ * Usage: java OpLog {command-file} {log-file}
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class OpLog {
+
+    /** First four bytes of every operation log ("SEM1"). */
+    public static final int MAGIC = 0x53454D31;
+
+    private static final int HEADER_SIZE = 4;
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    /**
+     * Compiles a command file from the command line.
+     *
+     * @param args The command file and the log file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java OpLog {command-file} {log-file}");
+            return;
+        }
+        try {
+            int count = compile(new File(args[0]), new File(args[1]));
+            System.out.println("Compiled " + count + " commands");
+        }
+        catch (Exception ex) {
+            System.out.println(ex);
+        }
+    }
+
+    /**
+     * Parses a command file and writes it as an operation log. If a
+     * command cannot be parsed, the commands before it are kept and the
+     * parse error is rethrown, just as a text run would stop there.
+     *
+     * @param commandFile The text command file.
+     * @param logFile The operation log to write.
+     * @return The number of commands written.
+     * @throws Exception if the files cannot be used or a seminar
+     *         cannot be serialized.
+     */
+    public static int compile(File commandFile, File logFile)
+        throws Exception {
+        int count = 0;
+        try (CommandParser parser = new CommandParser(
+            new Scanner(commandFile));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                    new FileOutputStream(logFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            Command slot = new Command();
+            while (parser.next(slot)) {
+                write(out, slot);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void write(DataOutputStream out, Command command)
+        throws Exception {
+        int opcode = command.getOpcode();
+        out.writeByte(opcode);
+        if (opcode == Command.INSERT) {
+            byte[] payload = command.getSeminar().serialize();
+            out.writeInt(command.getId());
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        else if (opcode == Command.DELETE || opcode == Command.SEARCH) {
+            out.writeInt(command.getId());
+        }
+        else if (opcode == Command.SNAPSHOT
+            || opcode == Command.CHECKPOINT) {
+            out.writeUTF(command.getArgument());
+        }
+    }
+
+    /**
+     * Memory-maps an operation log and applies every record to the
+     * database. Large logs are mapped one window at a time.
+     *
+     * @param logFile The operation log.
+     * @param dbInstance The database the records are applied to.
+     * @throws FileNotFoundException if the log does not exist.
+     * @throws IOException if the log cannot be read or is not a log.
+     */
+    public static void replay(File logFile, SeminarDB dbInstance)
+        throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r");
+            FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            MappedByteBuffer window = map(channel, 0, size);
+            if (size < HEADER_SIZE || window.getInt() != MAGIC) {
+                throw new IOException(logFile + " is not an operation log");
+            }
+            long base = 0;
+            byte[] payload = new byte[256];
+            while (base + window.position() < size) {
+                // Remap so the next record lies entirely in the window
+                if (window.remaining() < 9) {
+                    base += window.position();
+                    window = map(channel, base, size);
+                }
+                int opcode = window.get();
+                switch (opcode) {
+                    case Command.INSERT:
+                        int id = window.getInt();
+                        int length = window.getInt();
+                        if (window.remaining() < length) {
+                            base += window.position();
+                            window = map(channel, base, size);
+                        }
+                        if (payload.length < length) {
+                            payload = new byte[Math.max(
+                                length, payload.length * 2)];
+                        }
+                        window.get(payload, 0, length);
+                        dbInstance.addSerializedSeminar(
+                            id, payload, 0, length);
+                        break;
+                    case Command.DELETE:
+                        dbInstance.eraseSeminar(window.getInt());
+                        break;
+                    case Command.SEARCH:
+                        dbInstance.findSeminar(window.getInt());
+                        break;
+                    case Command.PRINT_HASHTABLE:
+                        dbInstance.showHashTableContents();
+                        break;
+                    case Command.PRINT_BLOCKS:
+                        dbInstance.listFreeBlocks();
+                        break;
+                    case Command.SNAPSHOT:
+                    case Command.CHECKPOINT:
+                        int utfLength = 2 + (window.getShort(
+                            window.position()) & 0xFFFF);
+                        if (window.remaining() < utfLength) {
+                            base += window.position();
+                            window = map(channel, base, size);
+                        }
+                        String path = readUtf(window, utfLength);
+                        if (opcode == Command.SNAPSHOT) {
+                            dbInstance.saveSnapshot(path);
+                        }
+                        else {
+                            dbInstance.saveCheckpoint(path);
+                        }
+                        break;
+                    case Command.INVALID:
+                        dbInstance.getOutput().println("Invalid command");
+                        break;
+                    default:
+                        throw new IOException("Corrupt operation log at "
+                            + (base + window.position() - 1));
+                }
+            }
+        }
+    }
+
+    private static String readUtf(MappedByteBuffer window, int length) {
+        byte[] encoded = new byte[length];
+        window.get(encoded);
+        try {
+            return new DataInputStream(
+                new ByteArrayInputStream(encoded)).readUTF();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long from,
+        long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from,
+            Math.min(WINDOW_SIZE, size - from));
+    }
+}
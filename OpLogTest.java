@@ -0,0 +1,91 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import student.TestCase;
+
+/**
+ * Test class for OpLog
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class OpLogTest extends TestCase {
+
+    private File logFile;
+
+    /**
+     * Sets up the log file used by the tests.
+     */
+    @Override
+    public void setUp() {
+        logFile = new File("memoryBlocks.oplog");
+    }
+
+    /**
+     * Removes the log file after each test.
+     */
+    @Override
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    /**
+     * Tests that replaying a compiled log prints the same output as
+     * running the command file as text.
+     * 
+     * @throws Exception if the log cannot be written
+     */
+    public void testReplayMatchesText() throws Exception {
+        String commands = ParallelParserTest.commands(200);
+        int count = 0;
+        for (String line : commands.split("\n")) {
+            if (line.matches("(insert|delete|search|print) .*")) {
+                count++;
+            }
+        }
+        File text = ParallelParserTest.commandFile(
+            commands.getBytes("US-ASCII"));
+        Reader reader = new Reader();
+        reader.interpretFile(
+            new String[] { "2048", "2048", text.getPath() });
+        String expected = systemOut().getHistory();
+        assertTrue(expected.contains("Found record with ID 98"));
+        systemOut().clearHistory();
+
+        assertEquals(count, OpLog.compile(text, logFile));
+        reader.interpretFile(new String[] { 
+            "2048", "2048", logFile.getPath(), "-replay" });
+        assertEquals(expected, systemOut().getHistory());
+    }
+
+    /**
+     * Tests that a command file, which is not a log, is rejected as one
+     * without running any of it.
+     * 
+     * @throws Exception if the command file cannot be written
+     */
+    public void testRejectsText() throws Exception {
+        File text = File.createTempFile("commands", ".txt");
+        text.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(text, "US-ASCII")) {
+            writer.println("insert 1");
+            writer.println("Title");
+            writer.println("2405231000 75 15 33 125");
+            writer.println("A B");
+            writer.println("Description");
+        }
+        SeminarDB dbInstance = new SeminarDB(64, 4);
+        IOException thrown = null;
+        try {
+            OpLog.replay(text, dbInstance);
+        }
+        catch (IOException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+        assertFalse(thrown instanceof FileNotFoundException);
+        assertEquals(text + " is not an operation log", thrown.getMessage());
+        assertFalse(dbInstance.findSeminar(1));
+    }
+}
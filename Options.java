@@ -0,0 +1,170 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional command line flags that follow the three required arguments.
+ * A flag is written as "-name" or "-name=value".
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class Options {
+
+    /**
+     * Flags that are understood. Anything else is a command line error.
+     */
+    private static final String[] KNOWN_FLAGS = {
+        "pipeline", "parallel", "output", "replay", "wal", "walLatency",
+        "restore", "storage", "tier", "spill", "index", "indexFile",
+        "indexCache", "cache", "bloom", "hash", "loadFactor", "probes",
+        "magazines", "bulk"
+    };
+
+    /** Values of -index. */
+    private static final String[] INDEXES = {
+        "memory", "robinhood", "cuckoo", "concurrent", "disk"
+    };
+
+    /** Values of -output. */
+    private static final String[] OUTPUTS = {
+        "buffered", "console", "async", "count"
+    };
+
+    /** Flags whose value is a count, which must be at least one. */
+    private static final String[] COUNTS = {
+        "parallel", "tier", "indexCache", "cache", "magazines", "bulk"
+    };
+
+    private final Map<String, String> flags;
+
+    /**
+     * Creates an empty set of options.
+     */
+    public Options() {
+        this.flags = new HashMap<>();
+    }
+
+    /**
+     * Parses the flags starting at the given argument position.
+     *
+     * @param args Arguments from the command line.
+     * @param first Index of the first flag.
+     * @return The parsed options, or null if any flag is not recognized
+     *         or has a value it cannot take.
+     */
+    public static Options parse(String[] args, int first) {
+        Options options = new Options();
+        for (int i = first; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.length() < 2 || arg.charAt(0) != '-') {
+                return null;
+            }
+            int split = arg.indexOf('=');
+            String name = split < 0
+                ? arg.substring(1)
+                : arg.substring(1, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            if (!isOneOf(name, KNOWN_FLAGS)) {
+                return null;
+            }
+            options.flags.put(name, value);
+        }
+        return options.valuesValid() ? options : null;
+    }
+
+    private static boolean isOneOf(String value, String[] values) {
+        for (String known : values) {
+            if (known.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the flag values, so that a value no part of the program
+     * takes is a command line error instead of being ignored or failing
+     * partway through the run.
+     */
+    private boolean valuesValid() {
+        String index = get("index", "memory");
+        if (!StorageRegistry.names().contains(
+            get("storage", StorageRegistry.DEFAULT))
+            || !isOneOf(index, INDEXES)
+            || !isOneOf(get("output", "buffered"), OUTPUTS)) {
+            return false;
+        }
+        try {
+            HashFunction.named(get("hash", "modulo"));
+            for (String count : COUNTS) {
+                if (getInt(count, 1) < 1) {
+                    return false;
+                }
+            }
+            // A cuckoo table keeps its load below one half
+            double maxLoad = index.equals("cuckoo") ? 0.5 : 1;
+            return isBetween(getDouble("loadFactor",
+                CuckooTable.DEFAULT_LOAD_FACTOR), maxLoad)
+                && isBetween(getDouble("bloom",
+                    FilteredIndex.DEFAULT_FALSE_POSITIVE_RATE), 1)
+                && getInt("walLatency", 0) >= 0;
+        }
+        catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isBetween(double value, double limit) {
+        return value > 0 && value < limit;
+    }
+
+    /**
+     * Checks whether a flag was given.
+     *
+     * @param name Flag name without the leading dash.
+     * @return true if the flag is present.
+     */
+    public boolean has(String name) {
+        return flags.containsKey(name);
+    }
+
+    /**
+     * Gets the value of a flag.
+     *
+     * @param name Flag name without the leading dash.
+     * @param fallback Value used when the flag is absent or has no value.
+     * @return The flag value or the fallback.
+     */
+    public String get(String name, String fallback) {
+        String value = flags.get(name);
+        return value == null || value.isEmpty() ? fallback : value;
+    }
+
+    /**
+     * Gets the integer value of a flag.
+     *
+     * @param name Flag name without the leading dash.
+     * @param fallback Value used when the flag is absent or has no value.
+     * @return The flag value or the fallback.
+     */
+    public int getInt(String name, int fallback) {
+        String value = flags.get(name);
+        return value == null || value.isEmpty()
+            ? fallback
+            : Integer.parseInt(value);
+    }
+
+    /**
+     * Gets the decimal value of a flag.
+     *
+     * @param name Flag name without the leading dash.
+     * @param fallback Value used when the flag is absent or has no value.
+     * @return The flag value or the fallback.
+     */
+    public double getDouble(String name, double fallback) {
+        String value = flags.get(name);
+        return value == null || value.isEmpty()
+            ? fallback
+            : Double.parseDouble(value);
+    }
+}
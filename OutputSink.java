@@ -0,0 +1,52 @@
+/**
+ * Destination for every line of text the seminar database prints.
+ * SeminarDB, HashTable and MemoryManager all write through a sink, so the
+ * same run can print straight to the console, through a large buffer,
+ * from a background thread, or nowhere at all for benchmarks.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public interface OutputSink {
+
+    /**
+     * Writes text without a line separator.
+     *
+     * @param text The text to write.
+     */
+    void print(String text);
+
+    /**
+     * Writes a single character.
+     *
+     * @param c The character to write.
+     */
+    void print(char c);
+
+    /**
+     * Writes a range of characters.
+     *
+     * @param chars Array holding the characters.
+     * @param offset Position of the first character to write.
+     * @param length Number of characters to write.
+     */
+    void print(char[] chars, int offset, int length);
+
+    /**
+     * Writes text followed by the platform line separator.
+     *
+     * @param line The line to write.
+     */
+    void println(String line);
+
+    /**
+     * Pushes any buffered text to its destination.
+     */
+    void flush();
+
+    /**
+     * Flushes the sink and releases anything it holds. The stream the
+     * sink writes to is left open.
+     */
+    void close();
+}
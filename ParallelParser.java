@@ -0,0 +1,166 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a command file in parallel and applies the commands in their
+ * original order. The file is read as a stream, cut at command boundaries
+ * by a CommandSplitter, and each chunk is parsed into a CommandBatch on a
+ * fork-join pool. Batches are applied on the calling thread in file
+ * order, so later chunks keep parsing while earlier ones execute.
+ *
+ * At most two chunks per thread are read ahead of the one being applied,
+ * and a batch is dropped once applied, so memory use depends on the
+ * chunk size rather than the length of the file. Like the Scanner of a
+ * serial run, reading stops at the first input the default charset
+ * cannot decode instead of replacing it.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ParallelParser {
+
+    /** Number of commands in every chunk but the last. */
+    public static final int CHUNK_COMMANDS = 4096;
+
+    // Characters asked of the decoder at a time, as a Scanner does
+    private static final int READ_CHARS = 1024;
+    // Characters read between looks for complete chunks
+    private static final int SPLIT_CHARS = 1 << 16;
+
+    private final int parallelism;
+    private final int chunkCommands;
+
+    /**
+     * Creates a parser using the given number of worker threads.
+     *
+     * @param parallelism Number of fork-join worker threads.
+     */
+    public ParallelParser(int parallelism) {
+        this(parallelism, CHUNK_COMMANDS);
+    }
+
+    /**
+     * Creates a parser with a custom chunk size.
+     *
+     * @param parallelism Number of fork-join worker threads.
+     * @param chunkCommands Number of commands per chunk.
+     */
+    public ParallelParser(int parallelism, int chunkCommands) {
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkCommands = Math.max(1, chunkCommands);
+    }
+
+    /**
+     * Parses the file in chunks and applies every command to the database.
+     *
+     * @param inputFile The command file.
+     * @param dbInstance The database commands are applied to.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    public void run(File inputFile, SeminarDB dbInstance)
+        throws FileNotFoundException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<CommandBatch>> inFlight = new ArrayDeque<>();
+        try (InputStreamReader in = new InputStreamReader(
+            new FileInputStream(inputFile),
+            Charset.defaultCharset().newDecoder())) {
+            StringBuilder pending = new StringBuilder();
+            char[] block = new char[READ_CHARS];
+            int unsplit = 0;
+            boolean more = true;
+            while (more) {
+                int read = read(in, block);
+                more = read >= 0;
+                if (more) {
+                    pending.append(block, 0, read);
+                    unsplit += read;
+                    if (unsplit < SPLIT_CHARS) {
+                        continue;
+                    }
+                }
+                unsplit = 0;
+                String text = pending.toString();
+                int[] bounds = new CommandSplitter(text).split(chunkCommands);
+                // The last chunk may still be missing commands
+                int complete = more ? bounds.length - 2 : bounds.length - 1;
+                for (int i = 0; i < complete; i++) {
+                    if (inFlight.size() == 2 * parallelism) {
+                        inFlight.poll().join().applyTo(dbInstance);
+                    }
+                    inFlight.add(pool.submit(new ChunkTask(
+                        text.substring(bounds[i], bounds[i + 1]))));
+                }
+                pending.delete(0, bounds[complete]);
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().join().applyTo(dbInstance);
+            }
+        }
+        catch (FileNotFoundException ex) {
+            throw ex;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the next characters of the file.
+     *
+     * @return The number read, or -1 at the end of the file or at input
+     *         that cannot be decoded.
+     */
+    private static int read(InputStreamReader in, char[] block)
+        throws IOException {
+        try {
+            return in.read(block);
+        }
+        catch (CharacterCodingException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses one chunk of the file into a batch.
+     */
+    private static class ChunkTask extends RecursiveTask<CommandBatch> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        ChunkTask(String text) {
+            this.text = text;
+        }
+
+        @Override
+        protected CommandBatch compute() {
+            CommandBatch batch = new CommandBatch();
+            try (CommandParser parser = new CommandParser(
+                new Scanner(text))) {
+                Command slot = new Command();
+                while (parser.next(slot)) {
+                    batch.add(slot);
+                }
+            }
+            catch (RuntimeException ex) {
+                batch.setFailure(ex);
+            }
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Scanner;
+import student.TestCase;
+
+/**
+ * Test class for ParallelParser
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ParallelParserTest extends TestCase {
+
+    /**
+     * Writes a command file to a temporary file.
+     *
+     * @param text The bytes of the file.
+     * @return The file, deleted when the tests exit.
+     * @throws IOException if the file cannot be written
+     */
+    static File commandFile(byte[] text) throws IOException {
+        File file = File.createTempFile("commands", ".txt");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text);
+        }
+        return file;
+    }
+
+    /**
+     * Builds a command file that inserts seminars, inserts some of them
+     * twice, deletes and searches for some, then prints the free blocks
+     * and the hash table.
+     *
+     * @param count Number of seminars to insert.
+     * @return The commands, one per line or per insert.
+     */
+    static String commands(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int id = 0; id < count; id++) {
+            int copies = id % 5 == 4 ? 2 : 1;
+            for (int copy = 0; copy < copies; copy++) {
+                text.append("insert ").append(id).append("\nTitle ")
+                    .append(id).append("\n2405231000 75 15 33 125\n")
+                    .append("A B\nDescription\n");
+            }
+            if (id % 3 == 2) {
+                text.append("delete ").append(id - 1).append("\n");
+                text.append("search ").append(id / 2).append("\n");
+            }
+        }
+        return text.append("print blocks\nprint hashtable\n").toString();
+    }
+
+    private String serialOutput(File file) throws IOException {
+        systemOut().clearHistory();
+        SeminarDB db = new SeminarDB(64, 4, new ConsoleSink());
+        try (CommandParser parser = new CommandParser(new Scanner(file))) {
+            Command slot = new Command();
+            while (parser.next(slot)) {
+                slot.applyTo(db);
+            }
+        }
+        return systemOut().getHistory();
+    }
+
+    private String parallelOutput(File file, int parallelism, int chunk)
+        throws IOException {
+        systemOut().clearHistory();
+        new ParallelParser(parallelism, chunk).run(file,
+            new SeminarDB(64, 4, new ConsoleSink()));
+        return systemOut().getHistory();
+    }
+
+    /**
+     * Tests that chunks of one command, with only two parsed ahead of
+     * the one applied, and a file longer than one read give the same
+     * output as a serial run.
+     */
+    public void testMatchesSerialOutput() throws IOException {
+        File file = commandFile(commands(600).getBytes("US-ASCII"));
+        String serial = serialOutput(file);
+        assertTrue(serial.contains(
+            "Successfully inserted record with ID 599"));
+        assertEquals(serial, parallelOutput(file, 1, 1));
+        assertEquals(serial, parallelOutput(file, 3, 7));
+    }
+
+    /**
+     * Tests that input the charset cannot decode ends the file, as it
+     * does for the Scanner of a serial run, rather than being replaced.
+     */
+    public void testStopsAtUndecodableInput() throws IOException {
+        byte[] valid = (commands(2) + "insert 9\nT").getBytes("US-ASCII");
+        byte[] text = Arrays.copyOf(valid, valid.length + 2);
+        text[valid.length] = (byte)0xFF;
+        text[valid.length + 1] = '\n';
+        File file = commandFile(text);
+        String serial = serialOutput(file);
+        assertEquals(serial, parallelOutput(file, 2, 1));
+        if (!serial.isEmpty()) {
+            // The default charset decodes every byte
+            assertTrue(serial.contains("Successfully inserted record"));
+        }
+    }
+}
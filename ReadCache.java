@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of rendered seminars keyed by ID, bounded in bytes, so a search
+ * for a hot ID prints the cached text instead of reading and decoding the
+ * stored record again.
+ *
+ * Admission follows W-TinyLFU. New entries go into a small LRU window
+ * (1% of the space). An entry pushed out of the window only enters the
+ * main space if a FrequencySketch says its ID has been searched more
+ * often than the entry it would replace. The main space is a segmented
+ * LRU: entries start on probation and move to the protected segment
+ * (80% of the main space) when they are hit again.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ReadCache {
+
+    /** Default space for cached entries. */
+    public static final int DEFAULT_MAX_BYTES = 1 << 20;
+
+    /** Bytes counted for an entry on top of its text. */
+    static final int ENTRY_OVERHEAD = 64;
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+    private static final int AVERAGE_ENTRY_BYTES = 512;
+
+    /**
+     * A cached rendering and its size.
+     */
+    private static class Entry {
+        private final char[] text;
+        private final long weight;
+
+        Entry(char[] text) {
+            this.text = text;
+            this.weight = ENTRY_OVERHEAD + 2L * text.length;
+        }
+    }
+
+    // Each map is kept in LRU order, least recently used first
+    private final Map<Integer, Entry> window = new LinkedHashMap<>();
+    private final Map<Integer, Entry> probation = new LinkedHashMap<>();
+    private final Map<Integer, Entry> protectedSegment =
+        new LinkedHashMap<>();
+    private final FrequencySketch sketch;
+    private final long maxBytes;
+    private final long windowMax;
+    private final long protectedMax;
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache holding at most the given number of bytes.
+     *
+     * @param maxBytes Space for cached entries, overhead included.
+     */
+    public ReadCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.windowMax = Math.max(1, (long) (maxBytes * WINDOW_SHARE));
+        this.protectedMax = (long) ((maxBytes - windowMax) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24,
+            Math.max(16, maxBytes / AVERAGE_ENTRY_BYTES)));
+    }
+
+    /**
+     * Looks up the rendered text of a seminar and counts the search.
+     *
+     * @param id ID of the seminar.
+     * @return The text, or null on a miss.
+     */
+    public char[] get(int id) {
+        sketch.increment(id);
+        Entry entry = window.remove(id);
+        if (entry != null) {
+            window.put(id, entry);
+        }
+        else if ((entry = protectedSegment.remove(id)) != null) {
+            protectedSegment.put(id, entry);
+        }
+        else if ((entry = probation.remove(id)) != null) {
+            probationBytes -= entry.weight;
+            promote(id, entry);
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.text;
+    }
+
+    /**
+     * Offers the rendered text of a seminar that was just searched for.
+     *
+     * @param id ID of the seminar.
+     * @param text The text printed for it.
+     */
+    public void put(int id, char[] text) {
+        invalidate(id);
+        Entry entry = new Entry(text);
+        if (entry.weight > maxBytes - windowMax) {
+            return;
+        }
+        window.put(id, entry);
+        windowBytes += entry.weight;
+        while (windowBytes > windowMax) {
+            Map.Entry<Integer, Entry> oldest = eldest(window);
+            window.remove(oldest.getKey());
+            windowBytes -= oldest.getValue().weight;
+            admit(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * Drops the entry for an ID, after it was deleted or moved.
+     *
+     * @param id ID of the seminar.
+     */
+    public void invalidate(int id) {
+        Entry entry = window.remove(id);
+        if (entry != null) {
+            windowBytes -= entry.weight;
+        }
+        else if ((entry = probation.remove(id)) != null) {
+            probationBytes -= entry.weight;
+        }
+        else if ((entry = protectedSegment.remove(id)) != null) {
+            protectedBytes -= entry.weight;
+        }
+    }
+
+    /**
+     * Gets the number of searches answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of searches the cache could not answer.
+     *
+     * @return The miss count.
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of entries pushed out or refused for lack of space.
+     *
+     * @return The eviction count.
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of bytes used by cached entries.
+     *
+     * @return The weighted size.
+     */
+    public long size() {
+        return windowBytes + probationBytes + protectedBytes;
+    }
+
+    /**
+     * Moves an entry hit on probation to the protected segment, demoting
+     * the least recently used protected entries if it is full.
+     */
+    private void promote(int id, Entry entry) {
+        protectedSegment.put(id, entry);
+        protectedBytes += entry.weight;
+        while (protectedBytes > protectedMax && protectedSegment.size() > 1) {
+            Map.Entry<Integer, Entry> oldest = eldest(protectedSegment);
+            protectedSegment.remove(oldest.getKey());
+            protectedBytes -= oldest.getValue().weight;
+            probation.put(oldest.getKey(), oldest.getValue());
+            probationBytes += oldest.getValue().weight;
+        }
+    }
+
+    /**
+     * Lets a candidate from the window into the main space if it has
+     * been searched more often than each entry it has to push out. The
+     * victims are all chosen before any is removed, so a candidate that
+     * loses to one of them leaves the main space as it was.
+     */
+    private void admit(int id, Entry candidate) {
+        long excess = probationBytes + protectedBytes + candidate.weight
+            - (maxBytes - windowMax);
+        int candidateFrequency = sketch.frequency(id);
+        List<Map.Entry<Integer, Entry>> victims = new ArrayList<>();
+        for (Map<Integer, Entry> segment : Arrays.asList(
+            probation, protectedSegment)) {
+            Iterator<Map.Entry<Integer, Entry>> oldest =
+                segment.entrySet().iterator();
+            while (excess > 0 && oldest.hasNext()) {
+                Map.Entry<Integer, Entry> victim = oldest.next();
+                if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                    evictions++;
+                    return;
+                }
+                victims.add(victim);
+                excess -= victim.getValue().weight;
+            }
+        }
+        for (Map.Entry<Integer, Entry> victim : victims) {
+            if (probation.remove(victim.getKey()) != null) {
+                probationBytes -= victim.getValue().weight;
+            }
+            else {
+                protectedSegment.remove(victim.getKey());
+                protectedBytes -= victim.getValue().weight;
+            }
+            evictions++;
+        }
+        probation.put(id, candidate);
+        probationBytes += candidate.weight;
+    }
+
+    private static Map.Entry<Integer, Entry> eldest(Map<Integer, Entry> map) {
+        Iterator<Map.Entry<Integer, Entry>> oldest =
+            map.entrySet().iterator();
+        return oldest.next();
+    }
+}
@@ -0,0 +1,119 @@
+import student.TestCase;
+
+/**
+ * Test class for ReadCache
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class ReadCacheTest extends TestCase {
+
+    private char[] text(int length) {
+        return new char[length];
+    }
+
+    /**
+     * Tests hits, misses and invalidation.
+     */
+    public void testHitsAndMisses() {
+        ReadCache cache = new ReadCache(100_000);
+        assertNull(cache.get(1));
+        char[] rendered = "ID: 1".toCharArray();
+        cache.put(1, rendered);
+        assertSame(rendered, cache.get(1));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that the cache stays within its size.
+     */
+    public void testBoundedBySize() {
+        ReadCache cache = new ReadCache(10_000);
+        for (int id = 0; id < 500; id++) {
+            cache.put(id, text(100));
+            assertTrue(cache.size() <= 10_000);
+        }
+        assertTrue(cache.evictions() > 0);
+        cache.put(999, text(10_000));
+        assertNull(cache.get(999));
+    }
+
+    /**
+     * Tests that frequently searched entries survive a scan of entries
+     * searched only once.
+     */
+    public void testFrequentEntriesSurviveScans() {
+        ReadCache cache = new ReadCache(20_000);
+        for (int id = 0; id < 10; id++) {
+            cache.get(id);
+            cache.put(id, text(200));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int id = 0; id < 10; id++) {
+                cache.get(id);
+            }
+        }
+        for (int id = 1000; id < 2000; id++) {
+            cache.get(id);
+            cache.put(id, text(200));
+        }
+        for (int id = 0; id < 10; id++) {
+            assertNotNull(cache.get(id));
+        }
+    }
+
+    /**
+     * Tests that a candidate refused by a frequent entry it would push
+     * out leaves the colder entries before it in place.
+     */
+    public void testRefusedCandidateEvictsNothing() {
+        ReadCache cache = new ReadCache(10_000);
+        cache.put(1, text(100));
+        cache.put(2, text(2000));
+        cache.put(3, text(2000));
+        for (int round = 0; round < 5; round++) {
+            cache.get(2);
+            cache.get(3);
+        }
+        long size = cache.size();
+        cache.get(4);
+        cache.get(4);
+        cache.put(4, text(900));
+        assertEquals(size, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(4));
+    }
+
+    /**
+     * Tests that a SeminarDB answers repeated searches from the cache and
+     * stops doing so once the seminar is deleted.
+     */
+    public void testUnderSeminarDB() {
+        SeminarDB db = new SeminarDB(256, 4);
+        ReadCache cache = new ReadCache(100_000);
+        db.setReadCache(cache);
+        db.addSeminar(1, new Seminar(1, "Title", "2405231000", 75,
+            (short) 15, (short) 33, 125, new String[] { "A" }, "Desc"));
+        systemOut().clearHistory();
+        assertTrue(db.findSeminar(1));
+        String first = systemOut().getHistory();
+        systemOut().clearHistory();
+        assertTrue(db.findSeminar(1));
+        assertEquals(first, systemOut().getHistory());
+        assertEquals(1, cache.hits());
+        systemOut().clearHistory();
+        db.showHashTableContents();
+        assertTrue(systemOut().getHistory().contains(
+            "Read cache: 1 hits, 1 misses, 0 evictions"));
+
+        db.eraseSeminar(1);
+        assertFalse(db.findSeminar(1));
+        assertSame(cache, db.getReadCache());
+    }
+}
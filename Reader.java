@@ -1,5 +1,7 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
 
 /**
@@ -12,6 +14,9 @@ import java.util.Scanner;
  */
 public class Reader {
 
+    /** Most inserts added at once by -bulk when no number is given. */
+    static final int DEFAULT_BULK = 1024;
+
     /**
      * Default constructor for SeminarManager.
      */
@@ -29,66 +34,291 @@ public class Reader {
         int memoryCapacity = Integer.parseInt(args[0]);
         int hashTableCapacity = Integer.parseInt(args[1]);
         String inputFile = args[2];
-        SeminarDB dbInstance = new SeminarDB(memoryCapacity, hashTableCapacity);
+        Options options = Options.parse(args, 3);
+        if (options == null) {
+            options = new Options();
+        }
+        OutputSink output = createSink(options.get("output", "buffered"));
+        WriteAheadLog log = null;
+        SeminarDB dbInstance = null;
         
-        try (Scanner fileScanner = new Scanner(new File(inputFile))) {
-            int seminarId; // Holds the ID of the current seminar
-            String printParam; // Holds the parameter for the "print" command
-            
-            while (fileScanner.hasNext()) {
-                String action 
-                    = fileScanner.next().trim(); // Current operation command
-                switch (action) {
-                    case "insert": {
-                        // Extract seminar details and insert into the database
-                        seminarId = Integer.parseInt(
-                            fileScanner.nextLine().trim());
-                        String seminarTitle = fileScanner.nextLine().trim();
-                        String[] details = fileScanner.nextLine(
-                            ).trim().replaceAll(" +", " ").split(" ");
-                        String seminarDate = details[0];
-                        int duration = Integer.parseInt(details[1]);
-                        short posX = Short.parseShort(details[2]);
-                        short posY = Short.parseShort(details[3]);
-                        int fee = Integer.parseInt(details[4]);
-                        String[] tags = fileScanner.nextLine(
-                            ).trim().replaceAll(" +", " ").split(" ");
-                        String summary = fileScanner.nextLine().trim();
-                        Seminar seminar = new Seminar(
-                            seminarId, seminarTitle, seminarDate
-                            , duration, posX, posY, fee, tags, summary);
-                        dbInstance.addSeminar(seminarId, seminar);
-                        break;
-                    }
-                    case "delete": {
-                        // Delete seminar
-                        seminarId = Integer.parseInt(
-                            fileScanner.nextLine().trim());
-                        dbInstance.eraseSeminar(seminarId);
-                        break;
-                    }
-                    case "search": {
-                        // Search for a seminar using its ID
-                        seminarId = Integer.parseInt(
-                            fileScanner.nextLine().trim());
-                        dbInstance.findSeminar(seminarId);
-                        break;
-                    }
-                    case "print": {
-                        // Print specific database details based on parameter
-                        printParam = fileScanner.nextLine().trim();
-                        if (printParam.equals("hashtable"))
-                            dbInstance.showHashTableContents();
-                        else
-                            dbInstance.listFreeBlocks();
-                        break;
-                    }
-                    default:
-                        System.out.println("Invalid command");
-                }
+        try {
+            dbInstance = openDatabase(
+                memoryCapacity, hashTableCapacity, options, output);
+            if (options.has("cache")) {
+                // Answer repeated searches from already rendered text
+                dbInstance.setReadCache(new ReadCache(options.getInt(
+                    "cache", ReadCache.DEFAULT_MAX_BYTES)));
+            }
+            if (options.has("bloom")) {
+                // Turn away lookups of absent IDs before probing
+                dbInstance.setBloomFilter(hashTableCapacity,
+                    options.getDouble("bloom",
+                        FilteredIndex.DEFAULT_FALSE_POSITIVE_RATE));
+            }
+            if (options.has("wal")) {
+                // Rebuild from the log, then log every later mutation
+                log = new WriteAheadLog(new File(options.get("wal", "")),
+                    options.getInt("walLatency",
+                        (int) WriteAheadLog.DEFAULT_MAX_LATENCY_MILLIS));
+                dbInstance.recover(log);
             }
+            runCommands(new File(inputFile), dbInstance, options);
         } catch (FileNotFoundException e) {
-            System.out.println(e);
+            output.println(e.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                closeDatabase(dbInstance);
+            }
+            finally {
+                closeLog(log);
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the database, loading it from a snapshot when -restore
+     * names one that exists.
+     *
+     * @param memoryCapacity Initial memory pool size.
+     * @param hashTableCapacity Initial hash table size.
+     * @param options Flags from the command line.
+     * @param output Where every result line is written.
+     * @return The database.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    private SeminarDB openDatabase(int memoryCapacity, int hashTableCapacity,
+        Options options, OutputSink output) throws IOException {
+        File snapshot = new File(options.get("restore", ""));
+        if (options.has("restore") && snapshot.exists()) {
+            // Load the pool and hash table in bulk
+            return SeminarDB.fromSnapshot(snapshot, output);
+        }
+        Storage storage = StorageRegistry.create(options.get("storage",
+            StorageRegistry.DEFAULT), memoryCapacity, options, output);
+        if (options.has("tier")) {
+            // Cap the records kept in memory and spill the rest to disk
+            storage = new TieredStorage(storage,
+                options.getInt("tier", memoryCapacity),
+                scratchFile(options.get("spill", ""), ".spill"), output);
+        }
+        return new SeminarDB(storage, createIndex(options.get("index",
+            "memory"), hashTableCapacity, options, output), output);
+    }
+
+    /**
+     * Creates the ID index named by the -index flag.
+     *
+     * @param kind memory, robinhood, cuckoo, concurrent or disk.
+     * @param hashTableCapacity Initial hash table size.
+     * @param options Flags from the command line.
+     * @param output Where listings and expansion messages are written.
+     * @return The index.
+     * @throws IOException if the disk index file cannot be opened.
+     */
+    private HashIndex createIndex(String kind, int hashTableCapacity,
+        Options options, OutputSink output) throws IOException {
+        if (kind.equals("disk")) {
+            // Keep the ID index in a paged file instead of the heap
+            return new DiskHashIndex(
+                scratchFile(options.get("indexFile", ""), ".index"),
+                DiskHashIndex.bucketsFor(hashTableCapacity),
+                options.getInt("indexCache",
+                    DiskHashIndex.DEFAULT_CACHE_PAGES), output);
+        }
+        if (kind.equals("cuckoo")) {
+            // Bound every lookup to two slots and a small stash
+            CuckooTable table = new CuckooTable(hashTableCapacity,
+                options.getDouble("loadFactor",
+                    CuckooTable.DEFAULT_LOAD_FACTOR), output);
+            table.setProbeReport(options.has("probes"));
+            return table;
+        }
+        double loadFactor =
+            options.getDouble("loadFactor", HashTable.DEFAULT_LOAD_FACTOR);
+        HashFunction hashFunction =
+            HashFunction.named(options.get("hash", "modulo"));
+        if (kind.equals("robinhood")) {
+            // Probe neighbouring slots and delete without tombstones
+            RobinHoodTable table = new RobinHoodTable(hashTableCapacity,
+                loadFactor, hashFunction, output);
+            table.setProbeReport(options.has("probes"));
+            return table;
+        }
+        if (kind.equals("concurrent")) {
+            // Let threads search and change the index without a lock
+            return new ConcurrentTable(hashTableCapacity, loadFactor,
+                hashFunction, output);
+        }
+        HashTable table = new HashTable(
+            hashTableCapacity, loadFactor, hashFunction, output);
+        table.setProbeReport(options.has("probes"));
+        return table;
+    }
+
+    /**
+     * Picks a working file, such as the one spilled records go to, using
+     * a temporary one unless the flag names one.
+     *
+     * @param path The flag value, or an empty string.
+     * @param suffix Suffix of a temporary file.
+     * @return The working file.
+     * @throws IOException if a temporary file cannot be created.
+     */
+    private File scratchFile(String path, String suffix) throws IOException {
+        if (!path.isEmpty()) {
+            return new File(path);
+        }
+        File temporary = File.createTempFile("seminars", suffix);
+        temporary.deleteOnExit();
+        return temporary;
+    }
+
+    /**
+     * Runs the command file in the mode chosen by the flags.
+     *
+     * @param inputFile The command file or operation log.
+     * @param dbInstance The database commands are applied to.
+     * @param options Flags from the command line.
+     * @throws IOException if the file cannot be read.
+     */
+    private void runCommands(File inputFile, SeminarDB dbInstance,
+        Options options) throws IOException {
+        if (options.has("replay")) {
+            // The command file is a compiled operation log
+            OpLog.replay(inputFile, dbInstance);
+        }
+        else if (options.has("pipeline")) {
+            // Parse on a separate thread while this one executes
+            new CommandPipeline().run(inputFile, dbInstance);
+        }
+        else if (options.has("bulk")) {
+            // Add each run of inserts in one pass
+            loadInBulk(inputFile, dbInstance,
+                Math.max(1, options.getInt("bulk", DEFAULT_BULK)));
+        }
+        else if (options.has("parallel")) {
+            // Parse chunks of the file on a fork-join pool
+            new ParallelParser(options.getInt("parallel",
+                Runtime.getRuntime().availableProcessors())).run(
+                    inputFile, dbInstance);
+        }
+        else {
+            interpretSerially(inputFile, dbInstance);
+        }
+    }
+
+    /**
+     * Closes the files the database keeps open, such as a disk index.
+     *
+     * @param dbInstance The database, or null if none was opened.
+     */
+    private void closeDatabase(SeminarDB dbInstance) {
+        if (dbInstance == null) {
+            return;
+        }
+        try {
+            dbInstance.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes the write-ahead log durable and closes it.
+     *
+     * @param log The log, or null if none was opened.
+     */
+    private void closeLog(WriteAheadLog log) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates the sink named by the -output flag.
+     *
+     * @param kind One of buffered, console, async or count.
+     * @return The sink all database output is written to.
+     */
+    private OutputSink createSink(String kind) {
+        switch (kind) {
+            case "console":
+                return new ConsoleSink();
+            case "async":
+                return new AsyncSink(System.out);
+            case "count":
+                return new CountingSink();
+            default:
+                return new BufferedSink(System.out);
+        }
+    }
+
+    /**
+     * Parses and executes one command at a time on the calling thread.
+     *
+     * @param inputFile The command file.
+     * @param dbInstance The database commands are applied to.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    private void interpretSerially(File inputFile, SeminarDB dbInstance)
+        throws FileNotFoundException {
+        try (CommandParser parser = new CommandParser(
+            new Scanner(inputFile))) {
+            Command slot = new Command();
+            while (parser.next(slot)) {
+                slot.applyTo(dbInstance);
+            }
+        }
+    }
+
+    /**
+     * Parses the command file, collecting each run of inserts and adding
+     * it with one call. Any other command adds the inserts before it
+     * first, so it sees the database a serial run would.
+     *
+     * @param inputFile The command file.
+     * @param dbInstance The database commands are applied to.
+     * @param limit Most inserts collected before they are added.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    private void loadInBulk(File inputFile, SeminarDB dbInstance, int limit)
+        throws FileNotFoundException {
+        int[] ids = new int[limit];
+        Seminar[] seminars = new Seminar[limit];
+        int pending = 0;
+        try (CommandParser parser = new CommandParser(
+            new Scanner(inputFile))) {
+            Command slot = new Command();
+            while (parser.next(slot)) {
+                if (slot.getOpcode() != Command.INSERT) {
+                    dbInstance.addSeminars(ids, seminars, pending);
+                    pending = 0;
+                    slot.applyTo(dbInstance);
+                    continue;
+                }
+                ids[pending] = slot.getId();
+                seminars[pending] = slot.getSeminar();
+                pending++;
+                if (pending == limit) {
+                    dbInstance.addSeminars(ids, seminars, pending);
+                    pending = 0;
+                }
+            }
+        }
+        finally {
+            // Inserts parsed before a parse error still take effect
+            dbInstance.addSeminars(ids, seminars, pending);
         }
     }
 }
\ No newline at end of file
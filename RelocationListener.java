@@ -0,0 +1,18 @@
+/**
+ * Told by a storage engine that moves records, such as LogStorage while
+ * it cleans a segment, where a record went so its handle can be updated.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public interface RelocationListener {
+
+    /**
+     * Called after a record has been copied to a new place. The old
+     * handle must not be used any more.
+     *
+     * @param from Handle the record had.
+     * @param to Handle the record has now.
+     */
+    void relocated(Handle from, Handle to);
+}
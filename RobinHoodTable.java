@@ -0,0 +1,298 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A hash index using Robin Hood linear probing, as an alternative to the
+ * double hashing of HashTable. An ID is stored at or after its home slot,
+ * and inserting takes the slot of any entry that is closer to its own
+ * home, so probe lengths stay short and even. Probing walks neighbouring
+ * slots of a plain int array of IDs, which keeps lookups within a few
+ * cache lines, and a lookup for an absent ID stops as soon as it meets an
+ * entry closer to home than it would be.
+ *
+ * Deleting shifts the following entries of the cluster back by one slot
+ * instead of leaving a tombstone, so the table never fills up with dead
+ * slots under churn.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class RobinHoodTable implements HashIndex {
+
+    private static final int EMPTY = -1;
+
+    private final double loadFactor;
+    private final HashFunction hashFunction;
+    private int[] keys;
+    private Handle[] handles;
+    // Distance of each entry from its home slot, or EMPTY
+    private int[] distances;
+    private int totalEntries;
+    private boolean reportProbes;
+    private OutputSink output;
+
+    // Slot and distance where the last walk stopped
+    private int walkSlot;
+    private int walkDistance;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param initialSize Initial number of slots.
+     * @param loadFactor Share of slots that may be live before the table
+     *        doubles, above 0 and below 1.
+     * @param hashFunction Mixer applied to IDs before probing.
+     * @param output Where listings and expansion messages are written.
+     */
+    public RobinHoodTable(int initialSize, double loadFactor,
+        HashFunction hashFunction, OutputSink output) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException(
+                "Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.hashFunction = hashFunction;
+        this.output = output;
+        allocate(Math.max(2, initialSize));
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public Handle retrieve(int id) {
+        return walk(id) ? handles[walkSlot] : null;
+    }
+
+    @Override
+    public boolean addEntry(int id, Handle handle) {
+        if (id < 0) {
+            return false;
+        }
+        return putIfAbsent(id, () -> handle) == null;
+    }
+
+    @Override
+    public Handle putIfAbsent(int id, Supplier<Handle> handle) {
+        if (walk(id)) {
+            return handles[walkSlot];
+        }
+        Handle added = handle.get();
+        if (totalEntries >= keys.length * loadFactor) {
+            resize(keys.length * 2);
+            walk(id);
+        }
+        place(id, added);
+        totalEntries++;
+        return null;
+    }
+
+    @Override
+    public boolean deleteEntry(int id) {
+        if (!walk(id)) {
+            return false;
+        }
+        shiftBack(walkSlot);
+        return true;
+    }
+
+    @Override
+    public Handle removeEntry(int id) {
+        if (!walk(id)) {
+            return null;
+        }
+        Handle removed = handles[walkSlot];
+        shiftBack(walkSlot);
+        return removed;
+    }
+
+    @Override
+    public boolean relocate(int id, Handle from, Handle to) {
+        int slot = EMPTY;
+        if (id >= 0 && walk(id) && from.equals(handles[walkSlot])) {
+            slot = walkSlot;
+        }
+        for (int i = 0; i < keys.length && slot == EMPTY; i++) {
+            if (distances[i] != EMPTY && from.equals(handles[i])) {
+                slot = i;
+            }
+        }
+        if (slot == EMPTY) {
+            return false;
+        }
+        handles[slot] = to;
+        return true;
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (distances[i] != EMPTY) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    @Override
+    public void displayHash() {
+        output.println("Hashtable:");
+        for (int i = 0; i < keys.length; i++) {
+            if (distances[i] != EMPTY) {
+                output.println(i + ": " + keys[i]);
+            }
+        }
+        output.println("total records: " + totalEntries);
+        if (reportProbes) {
+            HashTable.printProbes(probeHistogram(), totalEntries, output);
+        }
+    }
+
+    @Override
+    public int count() {
+        return totalEntries;
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return The table length.
+     */
+    public int limit() {
+        return keys.length;
+    }
+
+    /**
+     * Finds the home slot of an ID.
+     *
+     * @param id The ID.
+     * @return The slot a lookup for the ID starts at.
+     */
+    public int homeSlot(int id) {
+        return hashFunction.mix(id) % keys.length;
+    }
+
+    /**
+     * Counts the live entries by the number of slots a lookup visits to
+     * find them, 1 meaning the entry sits in its home slot.
+     *
+     * @return Entries found after each number of probes, indexed by that
+     *         number; index 0 is always 0.
+     */
+    public int[] probeHistogram() {
+        int[] histogram = new int[2];
+        for (int distance : distances) {
+            if (distance == EMPTY) {
+                continue;
+            }
+            if (distance + 1 >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, distance + 2);
+            }
+            histogram[distance + 1]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Makes displayHash also print the probe length histogram.
+     *
+     * @param report true to print it.
+     */
+    public void setProbeReport(boolean report) {
+        this.reportProbes = report;
+    }
+
+    /**
+     * Walks from the home slot of an ID until it is found, or until an
+     * empty slot or an entry closer to its home shows it is absent. Leaves
+     * the slot and distance reached in walkSlot and walkDistance.
+     */
+    private boolean walk(int id) {
+        int slot = homeSlot(id);
+        int distance = 0;
+        while (distances[slot] != EMPTY && distances[slot] >= distance) {
+            if (distances[slot] == distance && keys[slot] == id) {
+                walkSlot = slot;
+                walkDistance = distance;
+                return true;
+            }
+            slot = next(slot);
+            distance++;
+        }
+        walkSlot = slot;
+        walkDistance = distance;
+        return false;
+    }
+
+    /**
+     * Inserts an entry where the last failed walk stopped, pushing the
+     * entries from there on along until one lands in an empty slot.
+     */
+    private void place(int key, Handle handle) {
+        int slot = walkSlot;
+        int distance = walkDistance;
+        while (distances[slot] != EMPTY) {
+            if (distances[slot] < distance) {
+                int displacedKey = keys[slot];
+                Handle displacedHandle = handles[slot];
+                int displacedDistance = distances[slot];
+                keys[slot] = key;
+                handles[slot] = handle;
+                distances[slot] = distance;
+                key = displacedKey;
+                handle = displacedHandle;
+                distance = displacedDistance;
+            }
+            slot = next(slot);
+            distance++;
+        }
+        keys[slot] = key;
+        handles[slot] = handle;
+        distances[slot] = distance;
+    }
+
+    /**
+     * Removes the entry in a slot by moving each following entry that is
+     * not in its home slot back by one.
+     */
+    private void shiftBack(int slot) {
+        int following = next(slot);
+        while (distances[following] > 0) {
+            keys[slot] = keys[following];
+            handles[slot] = handles[following];
+            distances[slot] = distances[following] - 1;
+            slot = following;
+            following = next(following);
+        }
+        distances[slot] = EMPTY;
+        handles[slot] = null;
+        totalEntries--;
+    }
+
+    private int next(int slot) {
+        return slot + 1 == keys.length ? 0 : slot + 1;
+    }
+
+    private void allocate(int size) {
+        keys = new int[size];
+        handles = new Handle[size];
+        distances = new int[size];
+        Arrays.fill(distances, EMPTY);
+    }
+
+    private void resize(int size) {
+        int[] oldKeys = keys;
+        Handle[] oldHandles = handles;
+        int[] oldDistances = distances;
+        allocate(size);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDistances[i] != EMPTY) {
+                walk(oldKeys[i]);
+                place(oldKeys[i], oldHandles[i]);
+            }
+        }
+        output.println("Hash table expanded to " + size + " records");
+    }
+}
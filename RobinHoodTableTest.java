@@ -0,0 +1,115 @@
+import student.TestCase;
+
+/**
+ * Test class for RobinHoodTable
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class RobinHoodTableTest extends TestCase {
+
+    private RobinHoodTable table;
+
+    /**
+     * Sets up a table of 8 slots before each test.
+     */
+    @Override
+    public void setUp() {
+        table = new RobinHoodTable(8, 0.75, HashFunction.MODULO,
+            new ConsoleSink());
+    }
+
+    /**
+     * Tests adding, finding and deleting entries.
+     */
+    public void testAddRetrieveDelete() {
+        Handle handle = new Handle(10, 5);
+        assertTrue(table.addEntry(3, handle));
+        assertFalse(table.addEntry(3, new Handle(0, 1)));
+        assertFalse(table.addEntry(-1, handle));
+        assertEquals(handle, table.retrieve(3));
+        assertNull(table.retrieve(11));
+        assertEquals(handle, table.removeEntry(3));
+        assertFalse(table.deleteEntry(3));
+        assertEquals(0, table.count());
+    }
+
+    /**
+     * Tests that an entry further from home takes the slot of one closer
+     * to home, and that deleting shifts the cluster back.
+     */
+    public void testRobinHoodOrder() {
+        // 1, 9 and 17 share home slot 1; 2 has home slot 2
+        table.addEntry(1, new Handle(1, 1));
+        table.addEntry(2, new Handle(2, 1));
+        table.addEntry(9, new Handle(9, 1));
+        table.addEntry(17, new Handle(17, 1));
+        systemOut().clearHistory();
+        table.displayHash();
+        assertFuzzyEquals("Hashtable:\n1: 1\n2: 9\n3: 17\n4: 2\n"
+            + "total records: 4\n", systemOut().getHistory());
+        int[] histogram = table.probeHistogram();
+        assertEquals(4, histogram.length);
+        assertEquals(1, histogram[1]);
+        assertEquals(1, histogram[2]);
+        assertEquals(2, histogram[3]);
+
+        assertTrue(table.deleteEntry(9));
+        systemOut().clearHistory();
+        table.displayHash();
+        assertFuzzyEquals("Hashtable:\n1: 1\n2: 17\n3: 2\n"
+            + "total records: 3\n", systemOut().getHistory());
+        assertEquals(2, table.retrieve(2).getStartPosition());
+        assertEquals(17, table.retrieve(17).getStartPosition());
+    }
+
+    /**
+     * Tests that the table doubles at its load factor and wraps probes
+     * around its end.
+     */
+    public void testGrowsAndWraps() {
+        table.addEntry(7, new Handle(7, 1));
+        table.addEntry(15, new Handle(15, 1));
+        assertEquals(15, table.retrieve(15).getStartPosition());
+        for (int id = 0; id < 5; id++) {
+            table.addEntry(id, new Handle(id, 1));
+        }
+        assertEquals(16, table.limit());
+        for (int id = 0; id < 5; id++) {
+            assertEquals(id, table.retrieve(id).getStartPosition());
+        }
+        assertEquals(7, table.count());
+    }
+
+    /**
+     * Tests that long churn leaves no dead slots behind.
+     */
+    public void testChurn() {
+        for (int id = 0; id < 5; id++) {
+            table.addEntry(id, new Handle(id, 1));
+        }
+        for (int id = 5; id < 5000; id++) {
+            assertTrue(table.deleteEntry(id - 5));
+            assertTrue(table.addEntry(id, new Handle(id, 1)));
+        }
+        assertEquals(5, table.count());
+        assertEquals(8, table.limit());
+        for (int id = 4995; id < 5000; id++) {
+            assertNotNull(table.retrieve(id));
+        }
+    }
+
+    /**
+     * Tests relocate, by ID and by scanning for the old handle.
+     */
+    public void testRelocate() {
+        Handle old = new Handle(10, 10);
+        Handle moved = new Handle(50, 10);
+        table.addEntry(1, old);
+        assertTrue(table.relocate(1, old, moved));
+        assertEquals(moved, table.retrieve(1));
+        assertTrue(table.relocate(-1, moved, old));
+        assertEquals(old, table.retrieve(1));
+        assertFalse(table.relocate(1, moved, old));
+    }
+}
@@ -48,9 +48,10 @@ public class SemManager {
      * @return true if inputs meet criteria, false otherwise.
      */
     private static boolean validateInputs(String[] inputs) {
-        return inputs.length == 3 
+        return inputs.length >= 3 
                && isStringPowerOfTwo(inputs[0]) 
-               && isStringPowerOfTwo(inputs[1]);
+               && isStringPowerOfTwo(inputs[1])
+               && Options.parse(inputs, 3) != null;
     }
 
     /**
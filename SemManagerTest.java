@@ -50,4 +50,28 @@ public class SemManagerTest extends TestCase {
             systemOut().clearHistory();
         }
     }
+
+    /**
+     * Tests that flag values nothing takes are command line errors,
+     * reported before the command file is read
+     */
+    public void testFlagValues() {
+        String[][] flags = {
+            {"-storage=bogus"}, {"-index=bogus"}, {"-output=bogus"},
+            {"-hash=bogus"}, {"-loadFactor=1.5"}, {"-loadFactor=0"},
+            {"-loadFactor=half"}, {"-index=cuckoo", "-loadFactor=0.6"},
+            {"-bloom=1"}, {"-parallel=0"}, {"-bulk=many"},
+            {"-walLatency=-1"}
+        };
+        for (String[] flag : flags) {
+            String[] args = new String[3 + flag.length];
+            args[0] = "64";
+            args[1] = "4";
+            args[2] = "missingFile.txt";
+            System.arraycopy(flag, 0, args, 3, flag.length);
+            SemManager.main(args);
+            assertEquals(errorMessage, systemOut().getHistory());
+            systemOut().clearHistory();
+        }
+    }
 }
\ No newline at end of file
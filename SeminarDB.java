@@ -1,3 +1,12 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 /**
  * Orchestrates the operations on seminars, 
  * utilizing HashTable and MemManager for storage and management.
@@ -7,8 +16,15 @@
  */
 public class SeminarDB {
 
-    private HashTable hashTable; 
-    private MemoryManager memoryManager;
+    private HashIndex hashTable; 
+    private Storage storage;
+    private OutputSink output;
+    private SeminarRenderer renderer = new SeminarRenderer();
+    private WriteAheadLog log;
+    private long logStart;
+    private File checkpointBase;
+    private ReadCache readCache;
+    private Map<Integer, Handle> batchMoves;
 
     /**
      * Initializes the SeminarDB with specified sizes for memory and hash table.
@@ -19,8 +35,303 @@ public class SeminarDB {
      *            Initial capacity of the hash table.
      */
     public SeminarDB(int initialMemorySize, int initialHashSize) {
-        this.memoryManager = new MemoryManager(initialMemorySize);
-        this.hashTable = new HashTable(initialHashSize);
+        this(initialMemorySize, initialHashSize, new ConsoleSink());
+    }
+
+    /**
+     * Initializes the SeminarDB with all output going to the given sink.
+     * 
+     * @param initialMemorySize
+     *            Initial space for seminar data storage.
+     * @param initialHashSize
+     *            Initial capacity of the hash table.
+     * @param output
+     *            Where every result line is written.
+     */
+    public SeminarDB(int initialMemorySize, int initialHashSize,
+        OutputSink output) {
+        this(new MemoryManager(initialMemorySize, output), initialHashSize,
+            output);
+    }
+
+    /**
+     * Initializes the SeminarDB on top of the given storage engine.
+     * 
+     * @param storage
+     *            Where serialized seminars are kept.
+     * @param initialHashSize
+     *            Initial capacity of the hash table.
+     * @param output
+     *            Where every result line is written.
+     */
+    public SeminarDB(Storage storage, int initialHashSize,
+        OutputSink output) {
+        this(storage, new HashTable(initialHashSize, output), output);
+    }
+
+    /**
+     * Initializes the SeminarDB on top of the given storage engine and
+     * ID index.
+     * 
+     * @param storage
+     *            Where serialized seminars are kept.
+     * @param index
+     *            Maps seminar IDs to their stored records.
+     * @param output
+     *            Where every result line is written.
+     */
+    public SeminarDB(Storage storage, HashIndex index, OutputSink output) {
+        this.output = output;
+        this.storage = storage;
+        this.hashTable = index;
+        storage.setRelocationListener(this::relocate);
+    }
+
+    /**
+     * Builds a database around structures restored from a snapshot.
+     */
+    private SeminarDB(Snapshot snapshot, OutputSink output) {
+        this.output = output;
+        this.storage = snapshot.getMemoryManager();
+        this.hashTable = snapshot.getHashTable();
+        this.logStart = snapshot.getLogPosition();
+    }
+
+    /**
+     * Loads a database from a snapshot file in bulk, followed by any
+     * incremental checkpoints taken on top of it.
+     * 
+     * @param file
+     *            The snapshot file.
+     * @param output
+     *            Where every result line is written.
+     * @return The restored database.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    public static SeminarDB fromSnapshot(File file, OutputSink output)
+        throws IOException {
+        Snapshot snapshot = Snapshot.load(file, output);
+        long position = Checkpoint.applyAll(file, snapshot);
+        SeminarDB db = new SeminarDB(snapshot, output);
+        db.logStart = position;
+        db.checkpointBase = file;
+        return db;
+    }
+
+    /**
+     * Saves the whole database to a snapshot file. With a write-ahead log
+     * attached, the log is made durable first and its position is stored
+     * in the snapshot, so recovery only replays what came after.
+     * 
+     * @param path
+     *            Name of the snapshot file.
+     * @return true if the snapshot was written, false otherwise.
+     */
+    public boolean saveSnapshot(String path) {
+        try {
+            writeSnapshot(new File(path));
+            output.println("Snapshot saved to " + path);
+            return true;
+        }
+        catch (IOException ex) {
+            output.println(ex.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Saves only what changed since the last snapshot or checkpoint of
+     * the same file. The first checkpoint of a file, or one whose deltas
+     * have grown to half the size of the base, writes a full snapshot
+     * instead.
+     * 
+     * @param path
+     *            Name of the snapshot file the checkpoint builds on.
+     * @return true if the checkpoint was written, false otherwise.
+     */
+    public boolean saveCheckpoint(String path) {
+        File file = new File(path);
+        try {
+            if (!file.equals(checkpointBase) || !file.exists()
+                || Checkpoint.deltaFile(file).length() * 2 > file.length()) {
+                writeSnapshot(file);
+                output.println("Checkpoint saved to " + path + " (full)");
+                return true;
+            }
+            long bytes = Checkpoint.append(file, logPosition(),
+                memoryPool(), heapTable());
+            output.println("Checkpoint saved to " + path + " (" + bytes
+                + " bytes)");
+            return true;
+        }
+        catch (IOException ex) {
+            output.println(ex.toString());
+            return false;
+        }
+    }
+
+    private void writeSnapshot(File file) throws IOException {
+        MemoryManager pool = memoryPool();
+        HashTable table = heapTable();
+        Snapshot.write(file, logPosition(), pool, table);
+        Checkpoint.deltaFile(file).delete();
+        pool.clearDirty();
+        table.clearDirty();
+        checkpointBase = file;
+    }
+
+    private MemoryManager memoryPool() throws IOException {
+        if (!(storage instanceof MemoryManager)) {
+            throw new IOException(
+                "Snapshots need the buddy memory pool as storage");
+        }
+        return (MemoryManager) storage;
+    }
+
+    private HashTable heapTable() throws IOException {
+        HashIndex index = hashTable;
+        if (index instanceof FilteredIndex) {
+            index = ((FilteredIndex) index).getIndex();
+        }
+        if (!(index instanceof HashTable)) {
+            throw new IOException(
+                "Snapshots need the in-memory hash table as index");
+        }
+        return (HashTable) index;
+    }
+
+    private long logPosition() throws IOException {
+        if (log == null) {
+            return 0;
+        }
+        log.commit();
+        return log.durablePosition();
+    }
+
+    /**
+     * Rebuilds the database from a write-ahead log and then records every
+     * later insert and erase in it. Nothing is printed while the log is
+     * replayed. A database loaded from a snapshot only replays the records
+     * written after the snapshot was taken.
+     * 
+     * @param writeAheadLog
+     *            The log to replay and append to.
+     * @return The number of log records replayed.
+     * @throws IOException if the log cannot be read.
+     */
+    public int recover(WriteAheadLog writeAheadLog) throws IOException {
+        OutputSink visible = output;
+        setOutput(new CountingSink());
+        try {
+            return writeAheadLog.replay(this, logStart);
+        }
+        finally {
+            setOutput(visible);
+            this.log = writeAheadLog;
+        }
+    }
+
+    /**
+     * Closes the files behind a disk index or tiered storage, writing
+     * back the index pages still cached.
+     * 
+     * @throws IOException if a file cannot be written or closed.
+     */
+    public void close() throws IOException {
+        HashIndex index = hashTable;
+        if (index instanceof FilteredIndex) {
+            index = ((FilteredIndex) index).getIndex();
+        }
+        try {
+            if (index instanceof DiskHashIndex) {
+                ((DiskHashIndex) index).close();
+            }
+        }
+        finally {
+            if (storage instanceof TieredStorage) {
+                ((TieredStorage) storage).close();
+            }
+        }
+    }
+
+    private void setOutput(OutputSink sink) {
+        output = sink;
+        hashTable.setOutput(sink);
+        storage.setOutput(sink);
+    }
+
+    /**
+     * Points the hash table at a record the storage engine has moved,
+     * using the ID stored in the record itself to find its entry. The
+     * record is read at its new place, or at its old one if the new place
+     * is not in memory.
+     */
+    private void relocate(Handle from, Handle to) {
+        int id = storedId(to);
+        if (id < 0) {
+            id = storedId(from);
+        }
+        if (batchMoves != null && batchMoves.containsKey(id)) {
+            // Claimed by the batch being added, whose handles come later
+            batchMoves.put(id, to);
+        }
+        else {
+            hashTable.relocate(id, from, to);
+        }
+        if (readCache != null && id >= 0) {
+            readCache.invalidate(id);
+        }
+    }
+
+    private int storedId(Handle handle) {
+        byte[] bytes = storage.peek(handle);
+        if (bytes != null && renderer.load(
+            bytes, handle.getStartPosition(), handle.getDataLength())) {
+            return renderer.storedId();
+        }
+        return -1;
+    }
+
+    /**
+     * Puts a cache of rendered seminars in front of findSeminar.
+     * 
+     * @param cache
+     *            The cache, or null to search without one.
+     */
+    public void setReadCache(ReadCache cache) {
+        this.readCache = cache;
+    }
+
+    /**
+     * Puts a counting Bloom filter in front of the hash table, so lookups
+     * of IDs that are not present skip probing it.
+     * 
+     * @param expected
+     *            Number of IDs to size the filter for.
+     * @param falsePositiveRate
+     *            Target false positive rate of the filter.
+     */
+    public void setBloomFilter(int expected, double falsePositiveRate) {
+        hashTable = new FilteredIndex(
+            hashTable, expected, falsePositiveRate, output);
+    }
+
+    /**
+     * Gets the cache of rendered seminars, for its hit and miss counts.
+     * 
+     * @return The cache, or null if there is none.
+     */
+    public ReadCache getReadCache() {
+        return readCache;
+    }
+
+    /**
+     * Gets the sink all output of this database goes to.
+     * 
+     * @return The output sink.
+     */
+    public OutputSink getOutput() {
+        return output;
     }
 
     /**
@@ -33,36 +344,205 @@ public class SeminarDB {
      * @return true if the operation was successful, false otherwise.
      */
     public boolean addSeminar(int id, Seminar seminar) {
-        if (hashTable.retrieve(id) != null) {
-            notifyInsertionFailure(id);
+        byte[] serializedData;
+        try {
+            serializedData = seminar.serialize();
+        }
+        catch (Exception ex) {
+            output.println(String.valueOf(ex.getMessage()));
             return false;
         }
-        return tryAddition(id, seminar);
+        return tryAddition(
+            id, seminar, serializedData, 0, serializedData.length);
+    }
+
+    /**
+     * Adds many seminars at once, printing the same lines as adding them
+     * one after another would. The seminars are serialized first; the
+     * hash table then makes room for every ID in the batch with one
+     * resize, claims an entry for each new ID as it checks it, and the
+     * storage places every record in one pass, so expansion messages
+     * come before the lines of the seminars. If storing fails, each
+     * seminar not yet added reports the failure in its turn.
+     *
+     * @param ids
+     *        Identifiers of the seminars.
+     * @param seminars
+     *        The seminars, at the same positions as their IDs.
+     * @param count
+     *        Number of seminars to add from the start of the arrays.
+     * @return The number of seminars added.
+     */
+    public int addSeminars(int[] ids, Seminar[] seminars, int count) {
+        byte[][] records = new byte[count][];
+        String[] failures = new String[count];
+        Map<Integer, Integer> firstAt = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            try {
+                records[i] = seminars[i].serialize();
+            }
+            catch (Exception ex) {
+                failures[i] = String.valueOf(ex.getMessage());
+                continue;
+            }
+            // Left unstored, a repeated ID prints what its first one does
+            if (firstAt.putIfAbsent(ids[i], i) != null) {
+                records[i] = null;
+            }
+        }
+        List<Consumer<Handle>> entries = new ArrayList<>(count);
+        Handle[] handles = null;
+        String storeFailure = null;
+        batchMoves = new HashMap<>();
+        try {
+            hashTable.reserve(firstAt.size());
+            for (int i = 0; i < count; i++) {
+                // One walk checks the ID and keeps its slot for the handle
+                Consumer<Handle> entry =
+                    records[i] == null ? null : hashTable.claim(ids[i]);
+                if (entry == null) {
+                    records[i] = null;
+                }
+                else {
+                    batchMoves.put(ids[i], null);
+                }
+                entries.add(entry);
+            }
+            handles = storage.insertAll(records);
+        }
+        catch (Exception ex) {
+            storeFailure = String.valueOf(ex.getMessage());
+        }
+        Map<Integer, Handle> moves = batchMoves;
+        batchMoves = null;
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            Consumer<Handle> entry = i < entries.size() ? entries.get(i)
+                : null;
+            try {
+                if (failures[i] != null) {
+                    output.println(failures[i]);
+                }
+                else if (handles == null
+                    && records[firstAt.get(ids[i])] != null) {
+                    // Claimed or not yet checked when storing failed
+                    if (entry != null) {
+                        entry.accept(null);
+                    }
+                    output.println(storeFailure);
+                }
+                else if (records[i] == null) {
+                    notifyInsertionFailure(ids[i]);
+                }
+                else {
+                    // A record the storage moved while storing the batch
+                    Handle moved = moves.get(ids[i]);
+                    Handle stored = moved != null ? moved : handles[i];
+                    entry.accept(stored);
+                    if (!logInsert(ids[i], stored, records[i], 0,
+                        records[i].length)) {
+                        continue;
+                    }
+                    confirmAddition(ids[i], seminars[i], records[i], 0,
+                        records[i].length);
+                    added++;
+                }
+            }
+            catch (Exception ex) {
+                output.println(String.valueOf(ex.getMessage()));
+            }
+        }
+        return added;
     }
 
     private void notifyInsertionFailure(int id) {
-        System.out.println(
+        output.println(
             "Insert FAILED - There is already a record with ID " + id);
     }
 
-    private boolean tryAddition(int id, Seminar seminar) {
+    /**
+     * Adds a seminar that is already in its serialized form, such as one
+     * read from an operation log, without building a Seminar object.
+     * 
+     * @param id
+     *        Identifier for the seminar.
+     * @param data
+     *        Array holding the serialized seminar.
+     * @param offset
+     *        Position of the serialized seminar in the array.
+     * @param length
+     *        Length of the serialized seminar.
+     * @return true if the operation was successful, false otherwise.
+     */
+    public boolean addSerializedSeminar(int id, byte[] data, int offset,
+        int length) {
+        return tryAddition(id, null, data, offset, length);
+    }
+
+    /**
+     * Stores a seminar and adds its entry in one walk of the hash table,
+     * the record only being stored once the ID is known to be new.
+     */
+    private boolean tryAddition(int id, Seminar seminar, byte[] data,
+        int offset, int length) {
+        Handle[] stored = new Handle[1];
         try {
-            byte[] serializedData = seminar.serialize();
-            Handle handlePosition = memoryManager.insert(serializedData);
-            hashTable.addEntry(id, handlePosition);
-            confirmAddition(id, seminar, serializedData.length);
+            Handle existing = hashTable.putIfAbsent(id,
+                () -> stored[0] = storage.insert(data, offset, length));
+            if (existing != null) {
+                notifyInsertionFailure(id);
+                return false;
+            }
+            if (!logInsert(id, stored[0], data, offset, length)) {
+                return false;
+            }
+            confirmAddition(id, seminar, data, offset, length);
             return true;
         } 
         catch (Exception ex) {
-            System.out.println(ex.getMessage());
+            output.println(String.valueOf(ex.getMessage()));
             return false;
         }
     }
 
-    private void confirmAddition(int id, Seminar seminar, int size) {
-        System.out.println("Successfully inserted record with ID " + id);
-        System.out.println(seminar.toString());
-        System.out.println("Size: " + size);
+    /**
+     * Appends a stored insert to the write-ahead log. If the log fails,
+     * the insert is undone and the failure printed, so memory never holds
+     * a seminar recovery would not rebuild.
+     */
+    private boolean logInsert(int id, Handle stored, byte[] data,
+        int offset, int length) {
+        if (log == null) {
+            return true;
+        }
+        try {
+            log.appendInsert(id, data, offset, length);
+            return true;
+        }
+        catch (RuntimeException ex) {
+            hashTable.deleteEntry(id);
+            storage.remove(stored);
+            output.println(String.valueOf(ex.getMessage()));
+            return false;
+        }
+    }
+
+    private void confirmAddition(int id, Seminar seminar, byte[] data,
+        int offset, int length) throws Exception {
+        renderer.printLine(
+            output, "Successfully inserted record with ID ", id, "");
+        if (renderer.load(data, offset, length)) {
+            renderer.render(output);
+        }
+        else {
+            Seminar shown = seminar;
+            if (shown == null) {
+                shown = Seminar.deserialize(
+                    Arrays.copyOfRange(data, offset, offset + length));
+            }
+            output.println(shown.toString());
+        }
+        renderer.printLine(output, "Size: ", length, "");
     }
 
     /**
@@ -72,6 +552,13 @@ public class SeminarDB {
      * @return true if the seminar was found, false otherwise.
      */
     public boolean findSeminar(int id) {
+        char[] cached = readCache == null ? null : readCache.get(id);
+        if (cached != null) {
+            renderer.printLine(output, "Found record with ID ", id, ":");
+            output.print(cached, 0, cached.length);
+            return true;
+        }
+
         Handle seminarLocation = fetchHandle(id);
         
         if (seminarLocation == null) {
@@ -83,15 +570,28 @@ public class SeminarDB {
     }
 
     private Handle fetchHandle(int id) {
-        return hashTable.retrieve(id);
+        Handle handle = hashTable.retrieve(id);
+        return handle == null ? null : storage.access(handle);
     }
 
     private void displaySearchFailure(int id) {
-        System.out.println("Search FAILED -- There is no record with ID " + id);
+        output.println("Search FAILED -- There is no record with ID " + id);
     }
 
     private boolean displaySeminarDetails(int id, Handle handle) {
-        byte[] seminarData = memoryManager.get(handle);
+        // Render straight from the pool when the record is well formed
+        byte[] pool = storage.peek(handle);
+        if (renderer.load(pool, handle.getStartPosition(), 
+            handle.getDataLength())) {
+            renderer.printLine(output, "Found record with ID ", id, ":");
+            renderer.render(output);
+            if (readCache != null) {
+                readCache.put(id, renderer.copyRendered());
+            }
+            return true;
+        }
+
+        byte[] seminarData = storage.get(handle);
         try {
             Seminar seminar = Seminar.deserialize(seminarData);
             displayLocatedSeminar(id, seminar);
@@ -104,12 +604,12 @@ public class SeminarDB {
     }
 
     private void displayLocatedSeminar(int id, Seminar seminar) {
-        System.out.println("Found record with ID " + id + ":");
-        System.out.println(seminar.toString());
+        output.println("Found record with ID " + id + ":");
+        output.println(seminar.toString());
     }
 
     private void displayError(Exception error) {
-        System.out.println(error);
+        output.println(String.valueOf(error));
     }
 
     /**
@@ -119,18 +619,31 @@ public class SeminarDB {
      * @return true if the deletion was successful, false otherwise.
      */
     public boolean eraseSeminar(int id) {
-        Handle targetHandle = hashTable.retrieve(id);
+        Handle targetHandle = hashTable.removeEntry(id);
         
         if (targetHandle == null) {
-            System.out.println(
+            output.println(
                 "Delete FAILED -- There is no record with ID " + id);
             return false;
         }
         
-        hashTable.deleteEntry(id);
-        memoryManager.remove(targetHandle);
+        if (log != null) {
+            try {
+                log.appendErase(id);
+            }
+            catch (RuntimeException ex) {
+                // Kept, like an insert the log refuses is undone
+                hashTable.addEntry(id, targetHandle);
+                output.println(String.valueOf(ex.getMessage()));
+                return false;
+            }
+        }
+        storage.remove(targetHandle);
+        if (readCache != null) {
+            readCache.invalidate(id);
+        }
         
-        System.out.println("Record with ID " + id
+        output.println("Record with ID " + id
             + " successfully deleted from the database");
         return true;
     }
@@ -140,12 +653,17 @@ public class SeminarDB {
      */
     public void showHashTableContents() {
         hashTable.displayHash();
+        if (readCache != null) {
+            output.println("Read cache: " + readCache.hits() + " hits, "
+                + readCache.misses() + " misses, " + readCache.evictions()
+                + " evictions, " + readCache.size() + " bytes");
+        }
     }
 
     /**
      * Displays the current memory blocks.
      */
     public void listFreeBlocks() {
-        memoryManager.dump();
+        storage.dump();
     }
 }
\ No newline at end of file
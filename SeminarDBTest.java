@@ -66,4 +66,103 @@ public class SeminarDBTest extends TestCase {
         seminarId = 789; // Some random ID for negative testing
         assertFalse(seminarDatabase.findSeminar(seminarId));
     }
+
+    /**
+     * Tests that adding seminars together prints what adding them one at
+     * a time does, refusing IDs already present or repeated.
+     */
+    public void testAddSeminars() {
+        int[] ids = { 123, 5, 123, 9 };
+        Seminar[] seminars = { primarySeminar, primarySeminar,
+            primarySeminar, primarySeminar };
+        for (int id : ids) {
+            seminarDatabase.addSeminar(id, primarySeminar);
+        }
+        seminarDatabase.listFreeBlocks();
+        String expected = systemOut().getHistory();
+        systemOut().clearHistory();
+        SeminarDB batch = new SeminarDB(1024, 1024);
+        assertEquals(0, batch.addSeminars(ids, seminars, 0));
+        assertEquals(3, batch.addSeminars(ids, seminars, ids.length));
+        batch.listFreeBlocks();
+        assertEquals(expected, systemOut().getHistory());
+        assertTrue(batch.findSeminar(9));
+        assertEquals(0, batch.addSeminars(ids, seminars, 2));
+    }
+
+    /**
+     * Tests that a batch that cannot be stored still reports each of its
+     * seminars in turn, and leaves no entry for the IDs it claimed.
+     */
+    public void testAddSeminarsStoreFailure() {
+        Storage full = new MemoryManager(64, new ConsoleSink()) {
+            @Override
+            public Handle[] insertAll(byte[][] records) {
+                throw new IllegalStateException("Memory pool is full");
+            }
+        };
+        SeminarDB batch = new SeminarDB(full, 16, new ConsoleSink());
+        assertTrue(batch.addSeminar(5, primarySeminar));
+        systemOut().clearHistory();
+        int[] ids = { 7, 5, 7, 5 };
+        Seminar[] seminars = { primarySeminar, primarySeminar,
+            primarySeminar, primarySeminar };
+        assertEquals(0, batch.addSeminars(ids, seminars, ids.length));
+        assertEquals("Memory pool is full\n"
+            + "Insert FAILED - There is already a record with ID 5\n"
+            + "Memory pool is full\n"
+            + "Insert FAILED - There is already a record with ID 5\n",
+            systemOut().getHistory());
+        assertFalse(batch.findSeminar(7));
+        assertTrue(batch.addSeminar(7, primarySeminar));
+    }
+
+    /**
+     * Tests adding seminars together through indexes that claim entries
+     * by looking the ID up, and through a Bloom filter.
+     */
+    public void testAddSeminarsOtherIndexes() {
+        int[] ids = { 123, 5, 123, 9 };
+        Seminar[] seminars = { primarySeminar, primarySeminar,
+            primarySeminar, primarySeminar };
+        HashIndex[] indexes = {
+            new RobinHoodTable(4, 0.5, HashFunction.MODULO,
+                new ConsoleSink()),
+            new FilteredIndex(new HashTable(4), 1, 0.01,
+                new ConsoleSink()) };
+        for (HashIndex index : indexes) {
+            SeminarDB batch = new SeminarDB(
+                new MemoryManager(1024, new ConsoleSink()), index,
+                new ConsoleSink());
+            assertEquals(3, batch.addSeminars(ids, seminars, ids.length));
+            assertEquals(3, index.count());
+            assertEquals(0, batch.addSeminars(ids, seminars, 2));
+            assertTrue(batch.findSeminar(9));
+            assertTrue(batch.eraseSeminar(5));
+            assertFalse(batch.findSeminar(5));
+        }
+    }
+
+    /**
+     * Tests that a SeminarDB inserts, finds and deletes on the open
+     * addressing tables other than HashTable.
+     */
+    public void testUnderOtherTables() {
+        HashIndex[] indexes = {
+            new RobinHoodTable(8, 0.75, HashFunction.MODULO,
+                new ConsoleSink()),
+            new CuckooTable(8, CuckooTable.DEFAULT_LOAD_FACTOR,
+                new ConsoleSink()) };
+        Seminar seminar = new Seminar(3, "Title", "2405231000", 75,
+            (short) 15, (short) 33, 125, new String[] { "A" }, "Desc");
+        for (HashIndex index : indexes) {
+            SeminarDB db = new SeminarDB(new MemoryManager(512,
+                new ConsoleSink()), index, new ConsoleSink());
+            assertTrue(db.addSeminar(3, seminar));
+            assertFalse(db.addSeminar(3, seminar));
+            assertTrue(db.findSeminar(3));
+            assertTrue(db.eraseSeminar(3));
+            assertFalse(db.findSeminar(3));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+import java.util.Arrays;
+
+/**
+ * Prints a serialized Seminar straight from its stored bytes, producing
+ * the same text as Seminar.toString without building a Seminar or any
+ * intermediate Strings. The bytes are the ObjectOutputStream form written
+ * by Seminar.serialize: a stream header followed by block data records
+ * holding the fields, with strings in modified UTF-8 that is decoded one
+ * character at a time as it is printed.
+ *
+ * One renderer is reused for every record, so rendering allocates nothing.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class SeminarRenderer {
+
+    private static final int STREAM_MAGIC = 0xACED;
+    private static final int STREAM_VERSION = 5;
+    private static final int TC_BLOCKDATA = 0x77;
+    private static final int TC_BLOCKDATALONG = 0x7A;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private byte[] data;
+    private int start;
+    private int end;
+
+    // Cursor over the block data
+    private int pos;
+    private int blockLeft;
+
+    // Rendered text of the current record, reused between records
+    private char[] scratch;
+    private int used;
+    private boolean emitting;
+
+    /**
+     * Creates a renderer with nothing loaded.
+     */
+    public SeminarRenderer() {
+        data = new byte[0];
+        scratch = new char[256];
+    }
+
+    /**
+     * Points the renderer at a serialized seminar and checks that the whole
+     * record can be decoded, so rendering never stops half way.
+     *
+     * @param bytes Array holding the record.
+     * @param offset Position of the record in the array.
+     * @param length Length of the record.
+     * @return true if the record is well formed and can be rendered.
+     */
+    public boolean load(byte[] bytes, int offset, int length) {
+        data = bytes;
+        start = offset;
+        end = offset + length;
+        if (bytes == null || length < 4 || end > bytes.length) {
+            return false;
+        }
+        try {
+            rewind();
+            emitting = false;
+            walk();
+            return true;
+        }
+        catch (IllegalStateException malformed) {
+            return false;
+        }
+    }
+
+    /**
+     * Prints the loaded record in the format of Seminar.toString,
+     * followed by a line separator.
+     *
+     * @param out The sink to print to.
+     */
+    public void render(OutputSink out) {
+        rewind();
+        used = 0;
+        emitting = true;
+        walk();
+        text(LINE_SEPARATOR);
+        emitting = false;
+        out.print(scratch, 0, used);
+    }
+
+    /**
+     * Copies the text printed by the last call to render, line separator
+     * included, so it can be printed again without the record.
+     *
+     * @return The rendered text.
+     */
+    public char[] copyRendered() {
+        return Arrays.copyOf(scratch, used);
+    }
+
+    /**
+     * Reads the seminar ID stored at the start of the loaded record.
+     *
+     * @return The stored ID.
+     */
+    public int storedId() {
+        rewind();
+        return readInt();
+    }
+
+    /**
+     * Prints a line made of a prefix, a number and a suffix, such as
+     * "Size: 95", without creating a String.
+     *
+     * @param out The sink to print to.
+     * @param prefix Text before the number.
+     * @param value The number, printed in decimal.
+     * @param suffix Text after the number.
+     */
+    public void printLine(OutputSink out, String prefix, long value,
+        String suffix) {
+        used = 0;
+        emitting = true;
+        text(prefix);
+        number(value);
+        text(suffix);
+        text(LINE_SEPARATOR);
+        emitting = false;
+        out.print(scratch, 0, used);
+    }
+
+    /**
+     * Goes through every field in order, emitting text when rendering.
+     * Keywords are stored before the description but printed after it,
+     * so the keyword position is remembered and revisited at the end.
+     */
+    private void walk() {
+        text("ID: ");
+        number(readInt());
+        text(", Title: ");
+        readUtf(emitting);
+        text("\nDate: ");
+        readUtf(emitting);
+        text(", Length: ");
+        number(readInt());
+        text(", X: ");
+        number(readShort());
+        text(", Y: ");
+        number(readShort());
+        text(", Cost: ");
+        number(readInt());
+
+        int numKeywords = readInt();
+        if (numKeywords < 0) {
+            throw new IllegalStateException();
+        }
+        int keywordsPos = pos;
+        int keywordsBlockLeft = blockLeft;
+        for (int i = 0; i < numKeywords; i++) {
+            readUtf(false);
+        }
+        text("\nDescription: ");
+        readUtf(emitting);
+
+        text("\nKeywords: ");
+        pos = keywordsPos;
+        blockLeft = keywordsBlockLeft;
+        for (int i = 0; i < numKeywords; i++) {
+            readUtf(emitting);
+            if (i != numKeywords - 1) {
+                text(", ");
+            }
+        }
+    }
+
+    private void rewind() {
+        pos = start;
+        if ((readRaw() << 8 | readRaw()) != STREAM_MAGIC
+            || (readRaw() << 8 | readRaw()) != STREAM_VERSION) {
+            throw new IllegalStateException();
+        }
+        blockLeft = 0;
+    }
+
+    private void text(String text) {
+        if (emitting) {
+            for (int i = 0; i < text.length(); i++) {
+                emit(text.charAt(i));
+            }
+        }
+    }
+
+    private void number(long value) {
+        if (!emitting) {
+            return;
+        }
+        if (value < 0) {
+            emit('-');
+        }
+        else {
+            value = -value;
+        }
+        // Digits are taken from the negative value so MIN_VALUE fits
+        long divisor = -1;
+        while (divisor >= Long.MIN_VALUE / 10 && value <= divisor * 10) {
+            divisor *= 10;
+        }
+        while (divisor != 0) {
+            emit((char) ('0' + value / divisor));
+            value %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    private void emit(char c) {
+        if (used == scratch.length) {
+            char[] grown = new char[scratch.length * 2];
+            System.arraycopy(scratch, 0, grown, 0, used);
+            scratch = grown;
+        }
+        scratch[used++] = c;
+    }
+
+    /**
+     * Reads a modified UTF-8 string, emitting each decoded character
+     * when print is set.
+     */
+    private void readUtf(boolean print) {
+        int length = readByte() << 8 | readByte();
+        int count = 0;
+        while (count < length) {
+            int first = readByte();
+            char decoded;
+            if (first < 0x80) {
+                count++;
+                decoded = (char) first;
+            }
+            else if ((first & 0xE0) == 0xC0) {
+                count += 2;
+                decoded = (char) ((first & 0x1F) << 6 | continuation());
+            }
+            else if ((first & 0xF0) == 0xE0) {
+                count += 3;
+                int second = continuation();
+                decoded = (char) ((first & 0x0F) << 12 | second << 6
+                    | continuation());
+            }
+            else {
+                throw new IllegalStateException();
+            }
+            if (count > length) {
+                throw new IllegalStateException();
+            }
+            if (print) {
+                emit(decoded);
+            }
+        }
+    }
+
+    private int continuation() {
+        int next = readByte();
+        if ((next & 0xC0) != 0x80) {
+            throw new IllegalStateException();
+        }
+        return next & 0x3F;
+    }
+
+    private int readInt() {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8
+            | readByte();
+    }
+
+    private short readShort() {
+        return (short) (readByte() << 8 | readByte());
+    }
+
+    /**
+     * Reads one byte of block data, stepping over block headers.
+     */
+    private int readByte() {
+        while (blockLeft == 0) {
+            int tag = readRaw();
+            if (tag == TC_BLOCKDATA) {
+                blockLeft = readRaw();
+            }
+            else if (tag == TC_BLOCKDATALONG) {
+                blockLeft = readRaw() << 24 | readRaw() << 16
+                    | readRaw() << 8 | readRaw();
+                if (blockLeft < 0) {
+                    throw new IllegalStateException();
+                }
+            }
+            else {
+                throw new IllegalStateException();
+            }
+        }
+        blockLeft--;
+        return readRaw();
+    }
+
+    private int readRaw() {
+        if (pos >= end) {
+            throw new IllegalStateException();
+        }
+        return data[pos++] & 0xFF;
+    }
+}
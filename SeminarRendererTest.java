@@ -0,0 +1,87 @@
+import java.io.StringWriter;
+import student.TestCase;
+
+/**
+ * Test class for SeminarRenderer
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class SeminarRendererTest extends TestCase {
+
+    private SeminarRenderer renderer;
+
+    /**
+     * Sets up a renderer before each test.
+     */
+    @Override
+    public void setUp() {
+        renderer = new SeminarRenderer();
+    }
+
+    /**
+     * Tests that rendering matches Seminar.toString, including strings
+     * long enough to span several serialized blocks and characters that
+     * need multi-byte modified UTF-8.
+     * 
+     * @throws Exception from serialization
+     */
+    public void testMatchesToString() throws Exception {
+        String longText = "x".repeat(3000) + "\u00e9\u20ac\u0000";
+        Seminar[] seminars = {
+            new Seminar(1729, "Seminar Title", "2405231000", 75,
+                (short) 15, (short) 33, 125,
+                new String[] { "Good", "Bad", "Ugly" },
+                "This is a great seminar"),
+            new Seminar(-5, longText, "d", Integer.MIN_VALUE,
+                (short) -3, Short.MAX_VALUE, 0,
+                new String[] { "a", longText }, longText),
+            new Seminar(7, "", "", 0, (short) 0, (short) 0, 0,
+                new String[0], "d")
+        };
+        for (Seminar seminar : seminars) {
+            byte[] bytes = seminar.serialize();
+            byte[] pool = new byte[bytes.length + 8];
+            System.arraycopy(bytes, 0, pool, 4, bytes.length);
+
+            StringWriter target = new StringWriter();
+            BufferedSink sink = new BufferedSink(target, 64);
+            assertTrue(renderer.load(pool, 4, bytes.length));
+            renderer.render(sink);
+            sink.flush();
+            assertEquals(seminar.toString() + System.lineSeparator(),
+                target.toString());
+        }
+    }
+
+    /**
+     * Tests that truncated or empty records are rejected up front.
+     * 
+     * @throws Exception from serialization
+     */
+    public void testRejectsMalformed() throws Exception {
+        byte[] bytes = new Seminar(1, "T", "D", 1, (short) 1, (short) 1, 1,
+            new String[] { "k" }, "d").serialize();
+        assertFalse(renderer.load(bytes, 0, bytes.length - 1));
+        assertFalse(renderer.load(new byte[0], 0, 0));
+        assertFalse(renderer.load(null, 0, 0));
+        assertTrue(renderer.load(bytes, 0, bytes.length));
+        assertEquals(1, renderer.storedId());
+    }
+
+    /**
+     * Tests printing numbers at the edges of the long range.
+     */
+    public void testPrintLine() {
+        StringWriter target = new StringWriter();
+        BufferedSink sink = new BufferedSink(target, 16);
+        renderer.printLine(sink, "Size: ", 0, "");
+        renderer.printLine(sink, "[", Long.MIN_VALUE, "]");
+        renderer.printLine(sink, "", Long.MAX_VALUE, ":");
+        sink.flush();
+        String separator = System.lineSeparator();
+        assertEquals("Size: 0" + separator
+            + "[" + Long.MIN_VALUE + "]" + separator
+            + Long.MAX_VALUE + ":" + separator, target.toString());
+    }
+}
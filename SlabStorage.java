@@ -0,0 +1,366 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps small records in size classes instead of power-of-two blocks.
+ * The buddy system rounds a 130 byte seminar up to a 256 byte block,
+ * wasting a third of the pool on typical records. Here record lengths
+ * up to 256 bytes are rounded up to a multiple of 16 bytes, and longer
+ * ones to one of four classes per power of two, so that a long record
+ * wastes less than a fifth of its slot. Records of each class are
+ * packed into slabs: pages taken from a MemoryManager as ordinary buddy
+ * blocks and cut into equal slots, with a bitmap of the free ones.
+ * Records longer than the largest class go to the MemoryManager
+ * directly.
+ *
+ * The first slab of a class is the smallest page that holds eight slots,
+ * so a class with few records holds little more than those records.
+ * Each further slab of the class is twice the size of the one before, up
+ * to MAX_PAGE or eight slots, whichever is larger. At most an eighth of a
+ * page is left over at its end. Slabs with a free slot are kept on a
+ * list per class and inserts fill the most recently used one first. A
+ * slab whose last record is removed goes back to the buddy pool, unless
+ * it is the only one of its class with room, which is kept so a class
+ * that repeatedly gains and loses one record does not split and merge a
+ * page each time.
+ *
+ * dump prints the free blocks of the buddy pool, then the slot size,
+ * number of slabs and free slots of each class in use.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class SlabStorage implements Storage {
+
+    /** Difference in size between neighbouring classes up to 256 bytes. */
+    static final int CLASS_STEP = 16;
+
+    /** Longest record of the classes CLASS_STEP apart. */
+    static final int LINEAR_LIMIT = 256;
+
+    /** Longest record kept in a slab. */
+    static final int MAX_SLAB_RECORD = 2048;
+
+    /** Largest page a class grows to, unless eight slots need more. */
+    static final int MAX_PAGE = 4096;
+
+    // Fewest slots a slab holds, bounding the waste at its end
+    private static final int MIN_SLOTS = 8;
+    // Each power of two above LINEAR_LIMIT is split into 2^SPLIT_LOG classes
+    private static final int SPLIT_LOG = 2;
+    private static final int LINEAR_CLASSES = LINEAR_LIMIT / CLASS_STEP;
+    private static final int CLASSES = sizeClass(MAX_SLAB_RECORD) + 1;
+    // Zeros copied into each new page, long enough for the largest
+    private static final byte[] BLANK =
+        new byte[pageSize(sizeClass(MAX_SLAB_RECORD), Integer.MAX_VALUE)];
+
+    /**
+     * One page cut into slots of one class.
+     */
+    private static final class Slab {
+        private final Handle page;
+        private final int sizeClass;
+        private final int slotSize;
+        private final int slots;
+        // A set bit marks a free slot
+        private final long[] free;
+        private int freeCount;
+        // Neighbours on the list of slabs of its class with a free slot
+        private Slab previous;
+        private Slab next;
+        private boolean listed;
+
+        private Slab(Handle page, int sizeClass) {
+            this.page = page;
+            this.sizeClass = sizeClass;
+            this.slotSize = slotSize(sizeClass);
+            slots = page.getDataLength() / slotSize;
+            free = new long[(slots + 63) / 64];
+            for (int slot = 0; slot < slots; slot++) {
+                free[slot / 64] |= 1L << slot;
+            }
+            freeCount = slots;
+        }
+
+        private int start() {
+            return page.getStartPosition();
+        }
+
+        private boolean isFree(int slot) {
+            return (free[slot / 64] & (1L << slot)) != 0;
+        }
+
+        // Takes the lowest free slot; the slab must have one
+        private int take() {
+            int word = 0;
+            while (free[word] == 0) {
+                word++;
+            }
+            int slot = word * 64 + Long.numberOfTrailingZeros(free[word]);
+            free[word] &= ~(1L << slot);
+            freeCount--;
+            return slot;
+        }
+
+        private void give(int slot) {
+            free[slot / 64] |= 1L << slot;
+            freeCount++;
+        }
+    }
+
+    private final MemoryManager pages;
+    // Head of the list of slabs with a free slot, per class
+    private final Slab[] partial = new Slab[CLASSES];
+    // Number of slabs of each class
+    private final int[] slabCounts = new int[CLASSES];
+    // Every slab, by the start of its page
+    private final TreeMap<Integer, Slab> slabs = new TreeMap<>();
+    private OutputSink output;
+
+    /**
+     * Creates slab storage taking its pages from a buddy allocator.
+     *
+     * @param pages The allocator pages and large records come from.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public SlabStorage(MemoryManager pages, OutputSink output) {
+        this.pages = pages;
+        this.output = output;
+        pages.setOutput(output);
+    }
+
+    /**
+     * Gets the class of a record. Up to LINEAR_LIMIT bytes it is the
+     * number of CLASS_STEP units the record is rounded up to; above, the
+     * classes go on in four steps per power of two.
+     *
+     * @param length Length of the record, at most MAX_SLAB_RECORD.
+     * @return The class.
+     */
+    static int sizeClass(int length) {
+        if (length <= LINEAR_LIMIT) {
+            return (length + CLASS_STEP - 1) / CLASS_STEP;
+        }
+        int log = 31 - Integer.numberOfLeadingZeros(length - 1);
+        int step = 1 << (log - SPLIT_LOG);
+        int linearLog = 31 - Integer.numberOfLeadingZeros(LINEAR_LIMIT);
+        return LINEAR_CLASSES + ((log - linearLog) << SPLIT_LOG)
+            + (length - (1 << log) + step - 1) / step;
+    }
+
+    /**
+     * Gets the length of the slots of a class, the longest record it
+     * holds.
+     *
+     * @param sizeClass The class.
+     * @return The slot length in bytes.
+     */
+    static int slotSize(int sizeClass) {
+        if (sizeClass <= LINEAR_CLASSES) {
+            return sizeClass * CLASS_STEP;
+        }
+        int above = sizeClass - LINEAR_CLASSES - 1;
+        int log = 31 - Integer.numberOfLeadingZeros(LINEAR_LIMIT)
+            + (above >> SPLIT_LOG);
+        return (1 << log)
+            + ((above & ((1 << SPLIT_LOG) - 1)) + 1) * (1 << (log - SPLIT_LOG));
+    }
+
+    /**
+     * Gets the length of the page for a new slab of a class: the smallest
+     * power of two that holds eight slots, doubled for each slab the class
+     * already has, up to MAX_PAGE.
+     *
+     * @param sizeClass The class.
+     * @param slabCount Number of slabs the class already has.
+     * @return The page length in bytes.
+     */
+    static int pageSize(int sizeClass, int slabCount) {
+        int least = Integer.highestOneBit(
+            slotSize(sizeClass) * MIN_SLOTS - 1) << 1;
+        int page = least;
+        for (int slab = 0; slab < slabCount && page < MAX_PAGE; slab++) {
+            page <<= 1;
+        }
+        return Math.max(least, Math.min(page, MAX_PAGE));
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        if (length > MAX_SLAB_RECORD) {
+            return pages.insert(data, offset, length);
+        }
+        int sizeClass = sizeClass(length);
+        Slab slab = partial[sizeClass];
+        if (slab == null) {
+            slab = newSlab(sizeClass);
+        }
+        int position = slab.start() + slab.take() * slab.slotSize;
+        if (slab.freeCount == 0) {
+            unlink(sizeClass, slab);
+        }
+        pages.write(position, data, offset, length);
+        return new Handle(position, length);
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        if (handle.getDataLength() > MAX_SLAB_RECORD) {
+            return pages.get(handle);
+        }
+        byte[] data = new byte[0];
+        if (isHeld(handle)) {
+            data = new byte[handle.getDataLength()];
+            System.arraycopy(pages.getPool(), handle.getStartPosition(),
+                data, 0, data.length);
+        }
+        return data;
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        if (handle.getDataLength() > MAX_SLAB_RECORD) {
+            return pages.peek(handle);
+        }
+        return isHeld(handle) ? pages.getPool() : null;
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        if (handle.getDataLength() > MAX_SLAB_RECORD) {
+            pages.remove(handle);
+            return;
+        }
+        Slab slab = slabOf(handle);
+        if (slab == null) {
+            return;
+        }
+        int slot = (handle.getStartPosition() - slab.start()) / slab.slotSize;
+        if (slab.isFree(slot)) {
+            return;
+        }
+        slab.give(slot);
+        int sizeClass = slab.sizeClass;
+        if (!slab.listed) {
+            link(sizeClass, slab);
+        }
+        if (slab.freeCount == slab.slots
+            && (partial[sizeClass] != slab || slab.next != null)) {
+            // Another slab of the class has room, so give the page back
+            unlink(sizeClass, slab);
+            slabs.remove(slab.start());
+            slabCounts[sizeClass]--;
+            pages.remove(slab.page);
+        }
+    }
+
+    @Override
+    public void dump() {
+        pages.dump();
+        int[] counts = new int[CLASSES];
+        int[] freeSlots = new int[CLASSES];
+        for (Slab slab : slabs.values()) {
+            counts[slab.sizeClass]++;
+            freeSlots[slab.sizeClass] += slab.freeCount;
+        }
+        StringBuilder report = new StringBuilder();
+        for (int sizeClass = 1; sizeClass < CLASSES; sizeClass++) {
+            if (counts[sizeClass] > 0) {
+                report.append(slotSize(sizeClass)).append(": ")
+                    .append(counts[sizeClass]).append(" slabs, ")
+                    .append(freeSlots[sizeClass]).append(" free slots\n");
+            }
+        }
+        output.println("Slab classes:");
+        if (report.length() == 0) {
+            output.println("There are no slabs in the memory pool");
+        }
+        else {
+            output.print(report.toString());
+        }
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+        pages.setOutput(sink);
+    }
+
+    // Free slots of slabs are not counted, only whole free buddy blocks
+    @Override
+    public long freeBytes() {
+        return pages.freeBytes();
+    }
+
+    @Override
+    public long capacity() {
+        return pages.capacity();
+    }
+
+    /**
+     * Takes a page for a new slab of a class and lists it.
+     */
+    private Slab newSlab(int sizeClass) {
+        Slab slab = new Slab(pages.insert(BLANK, 0,
+            pageSize(sizeClass, slabCounts[sizeClass])), sizeClass);
+        slabs.put(slab.start(), slab);
+        slabCounts[sizeClass]++;
+        link(sizeClass, slab);
+        return slab;
+    }
+
+    /**
+     * Finds the slab a handle points into.
+     *
+     * @return The slab, or null if the handle is not in one of its class.
+     */
+    private Slab slabOf(Handle handle) {
+        Map.Entry<Integer, Slab> floor =
+            slabs.floorEntry(handle.getStartPosition());
+        if (floor == null) {
+            return null;
+        }
+        Slab slab = floor.getValue();
+        int within = handle.getStartPosition() - slab.start();
+        if (within >= slab.page.getDataLength()
+            || slab.sizeClass != sizeClass(handle.getDataLength())
+            || within % slab.slotSize != 0) {
+            return null;
+        }
+        return slab;
+    }
+
+    private boolean isHeld(Handle handle) {
+        Slab slab = slabOf(handle);
+        return slab != null && !slab.isFree(
+            (handle.getStartPosition() - slab.start()) / slab.slotSize);
+    }
+
+    private void link(int sizeClass, Slab slab) {
+        slab.previous = null;
+        slab.next = partial[sizeClass];
+        if (slab.next != null) {
+            slab.next.previous = slab;
+        }
+        partial[sizeClass] = slab;
+        slab.listed = true;
+    }
+
+    private void unlink(int sizeClass, Slab slab) {
+        if (slab.previous == null) {
+            partial[sizeClass] = slab.next;
+        }
+        else {
+            slab.previous.next = slab.next;
+        }
+        if (slab.next != null) {
+            slab.next.previous = slab.previous;
+        }
+        slab.previous = null;
+        slab.next = null;
+        slab.listed = false;
+    }
+}
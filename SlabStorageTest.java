@@ -0,0 +1,120 @@
+import student.TestCase;
+
+/**
+ * Test class for SlabStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class SlabStorageTest extends TestCase {
+
+    private SlabStorage storage;
+
+    /**
+     * Sets up slab storage on a pool of 16 KB before each test.
+     */
+    @Override
+    public void setUp() {
+        storage = new SlabStorage(new MemoryManager(1 << 14,
+            new ConsoleSink()), new ConsoleSink());
+    }
+
+    /**
+     * Tests rounding records up to classes, 16 bytes apart up to 256 and
+     * four per power of two above, and the pages of each class.
+     */
+    public void testSizeClasses() {
+        assertEquals(1, SlabStorage.sizeClass(1));
+        assertEquals(1, SlabStorage.sizeClass(16));
+        assertEquals(2, SlabStorage.sizeClass(17));
+        assertEquals(9, SlabStorage.sizeClass(130));
+        assertEquals(16, SlabStorage.sizeClass(256));
+        assertEquals(17, SlabStorage.sizeClass(257));
+        assertEquals(17, SlabStorage.sizeClass(320));
+        assertEquals(18, SlabStorage.sizeClass(321));
+        assertEquals(28, SlabStorage.sizeClass(2048));
+        assertEquals(144, SlabStorage.slotSize(9));
+        assertEquals(320, SlabStorage.slotSize(17));
+        assertEquals(512, SlabStorage.slotSize(20));
+        assertEquals(640, SlabStorage.slotSize(21));
+        assertEquals(2048, SlabStorage.slotSize(28));
+        assertEquals(128, SlabStorage.pageSize(1, 0));
+        assertEquals(2048, SlabStorage.pageSize(9, 0));
+        assertEquals(4096, SlabStorage.pageSize(9, 1));
+        assertEquals(4096, SlabStorage.pageSize(9, 5));
+        assertEquals(16384, SlabStorage.pageSize(28, 3));
+    }
+
+    /**
+     * Tests that records of a class are packed next to each other in one
+     * page and read back.
+     */
+    public void testPacksRecords() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 130));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 140));
+        assertEquals(0, first.getStartPosition());
+        assertEquals(144, second.getStartPosition());
+        byte[] read = storage.get(second);
+        assertEquals(140, read.length);
+        assertEquals(2, read[0]);
+        assertEquals((byte) 141, read[139]);
+        assertEquals(1, storage.peek(first)[0]);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n2048: 2048\n4096: 4096\n"
+            + "8192: 8192\nSlab classes:\n144: 1 slabs, 12 free slots\n",
+            systemOut().getHistory());
+        assertEquals(2048, storage.capacity() - storage.freeBytes());
+    }
+
+    /**
+     * Tests that records longer than the largest class are stored in
+     * buddy blocks of their own.
+     */
+    public void testLargeRecords() {
+        Handle large = storage.insert(StorageConformanceTest.bytes(3, 3000));
+        assertEquals(3000, storage.get(large).length);
+        assertEquals(4096, storage.capacity() - storage.freeBytes());
+        storage.remove(large);
+        assertEquals(storage.capacity(), storage.freeBytes());
+    }
+
+    /**
+     * Tests that removed records are no longer readable and that removing
+     * one twice does nothing.
+     */
+    public void testRemove() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 50));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 50));
+        storage.remove(first);
+        assertEquals(0, storage.get(first).length);
+        assertNull(storage.peek(first));
+        storage.remove(first);
+        assertEquals(50, storage.get(second).length);
+        // The freed slot is the first one filled again
+        assertEquals(0, storage.insert(
+            StorageConformanceTest.bytes(3, 60)).getStartPosition());
+    }
+
+    /**
+     * Tests that a class takes a larger page for its second slab, and
+     * that an empty slab goes back to the buddy pool unless it is the
+     * last of its class with room.
+     */
+    public void testEmptySlabsReturn() {
+        Handle[] handles = new Handle[29];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = storage.insert(StorageConformanceTest.bytes(i, 130));
+        }
+        assertEquals(13 * 144, handles[13].getStartPosition());
+        assertEquals(4096, handles[14].getStartPosition());
+        for (Handle handle : handles) {
+            storage.remove(handle);
+        }
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n4096: 0\n8192: 8192\n"
+            + "Slab classes:\n144: 1 slabs, 28 free slots\n",
+            systemOut().getHistory());
+    }
+}
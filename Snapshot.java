@@ -0,0 +1,151 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Point-in-time image of a SeminarDB: the memory pool, its free lists and
+ * every hash table slot, stored in one file. The file is written with a
+ * single gathering write and read back with a single scattering read, so
+ * loading costs a few large sequential transfers instead of re-inserting
+ * every record. The header also remembers how far the write-ahead log
+ * had got, so only later log records need to be replayed.
+ *
+ * Layout: magic, log position, then the lengths of the free list, hash
+ * table and pool sections, followed by the sections themselves.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class Snapshot {
+
+    /** First four bytes of every snapshot ("SNP2"). */
+    public static final int MAGIC = 0x534E5032;
+
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 4;
+
+    private final MemoryManager memoryManager;
+    private final HashTable hashTable;
+    private final long logPosition;
+
+    private Snapshot(MemoryManager memoryManager, HashTable hashTable,
+        long logPosition) {
+        this.memoryManager = memoryManager;
+        this.hashTable = hashTable;
+        this.logPosition = logPosition;
+    }
+
+    /**
+     * Writes a snapshot. The data goes to a temporary file that is forced
+     * to disk and then renamed over the target, so a crash never leaves
+     * a half written snapshot behind.
+     *
+     * @param file The snapshot file.
+     * @param logPosition Write-ahead log position the snapshot covers.
+     * @param memoryManager The memory pool to save.
+     * @param hashTable The hash table to save.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(File file, long logPosition,
+        MemoryManager memoryManager, HashTable hashTable)
+        throws IOException {
+        ByteBuffer freeLists = memoryManager.exportFreeLists();
+        ByteBuffer entries = hashTable.exportEntries();
+        ByteBuffer pool = ByteBuffer.wrap(memoryManager.getPool());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(logPosition)
+            .putInt(freeLists.remaining()).putInt(entries.remaining())
+            .putInt(pool.remaining());
+        header.flip();
+
+        Path target = file.toPath().toAbsolutePath();
+        Path temporary = target.resolveSibling(
+            target.getFileName() + ".tmp");
+        ByteBuffer[] sections = { header, freeLists, entries, pool };
+        try (FileChannel channel = FileChannel.open(temporary,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (pool.hasRemaining()) {
+                channel.write(sections);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot written by write.
+     *
+     * @param file The snapshot file.
+     * @param output Where the restored structures print.
+     * @return The loaded snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static Snapshot load(File file, OutputSink output)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, new ByteBuffer[] { header }, header);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            long logPosition = header.getLong();
+            ByteBuffer freeLists = ByteBuffer.allocate(header.getInt());
+            ByteBuffer entries = ByteBuffer.allocate(header.getInt());
+            byte[] poolBytes = new byte[header.getInt()];
+            ByteBuffer pool = ByteBuffer.wrap(poolBytes);
+            readFully(channel, new ByteBuffer[] { freeLists, entries, pool },
+                pool);
+            freeLists.flip();
+            entries.flip();
+            return new Snapshot(
+                new MemoryManager(poolBytes, freeLists, output),
+                new HashTable(entries, output), logPosition);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer[] targets,
+        ByteBuffer last) throws IOException {
+        while (last.hasRemaining()) {
+            if (channel.read(targets) < 0) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+    }
+
+    /**
+     * Gets the restored memory manager.
+     *
+     * @return The memory manager.
+     */
+    public MemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    /**
+     * Gets the restored hash table.
+     *
+     * @return The hash table.
+     */
+    public HashTable getHashTable() {
+        return hashTable;
+    }
+
+    /**
+     * Gets the write-ahead log position the snapshot covers.
+     *
+     * @return The log position.
+     */
+    public long getLogPosition() {
+        return logPosition;
+    }
+}
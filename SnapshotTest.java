@@ -0,0 +1,99 @@
+import java.io.File;
+import student.TestCase;
+
+/**
+ * Test class for Snapshot
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class SnapshotTest extends TestCase {
+
+    private File snapshotFile;
+    private Seminar seminar;
+
+    /**
+     * Sets up a snapshot file name and a seminar before each test.
+     */
+    @Override
+    public void setUp() {
+        snapshotFile = new File("test.snap");
+        seminar = new Seminar(1, "Title", "2405231000", 75, (short) 15,
+            (short) 33, 125, new String[] { "A", "B" }, "Desc");
+    }
+
+    /**
+     * Removes the snapshot file after each test.
+     */
+    @Override
+    public void tearDown() {
+        snapshotFile.delete();
+    }
+
+    /**
+     * Tests that a loaded snapshot holds the same records, free blocks
+     * and hash table slots, tombstones included.
+     * 
+     * @throws Exception if the snapshot cannot be used
+     */
+    public void testRoundTrip() throws Exception {
+        SeminarDB original = new SeminarDB(256, 4);
+        for (int id = 1; id <= 4; id++) {
+            original.addSeminar(id, seminar);
+        }
+        original.eraseSeminar(2);
+        assertTrue(original.saveSnapshot(snapshotFile.getPath()));
+        systemOut().clearHistory();
+        original.showHashTableContents();
+        original.listFreeBlocks();
+        original.findSeminar(3);
+        String expected = systemOut().getHistory();
+        systemOut().clearHistory();
+
+        SeminarDB restored = SeminarDB.fromSnapshot(
+            snapshotFile, new ConsoleSink());
+        restored.showHashTableContents();
+        restored.listFreeBlocks();
+        restored.findSeminar(3);
+        assertEquals(expected, systemOut().getHistory());
+        assertFalse(restored.findSeminar(2));
+    }
+
+    /**
+     * Tests that the hash function and load factor of the table are
+     * restored with it, so restored entries can still be found.
+     * 
+     * @throws Exception if the snapshot cannot be used
+     */
+    public void testKeepsHashFunction() throws Exception {
+        SeminarDB original = new SeminarDB(new MemoryManager(256,
+            new ConsoleSink()), new HashTable(16, 0.75,
+                HashFunction.MURMUR3, new ConsoleSink()), new ConsoleSink());
+        for (int id = 1; id <= 12; id++) {
+            original.addSeminar(id, seminar);
+        }
+        assertTrue(original.saveSnapshot(snapshotFile.getPath()));
+        Snapshot loaded = Snapshot.load(snapshotFile, new ConsoleSink());
+        HashTable table = loaded.getHashTable();
+        assertEquals(HashFunction.MURMUR3, table.hashFunction());
+        assertEquals(0.75, table.loadFactor(), 0.0);
+        assertEquals(16, table.limit());
+        for (int id = 1; id <= 12; id++) {
+            assertNotNull(table.retrieve(id));
+        }
+    }
+
+    /**
+     * Tests that a file that is not a snapshot is rejected.
+     */
+    public void testRejectsOtherFiles() {
+        Exception thrown = null;
+        try {
+            Snapshot.load(new File("hash.txt"), new ConsoleSink());
+        }
+        catch (Exception ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * A place serialized seminars are kept. SeminarDB stores the Handle
+ * returned by insert in its hash table and hands it back to read or
+ * remove the record, so any engine that can do that can sit under it.
+ * Engines are created by name through StorageRegistry, and every one of
+ * them is held to the same contract by StorageConformanceTest.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public interface Storage {
+
+    /**
+     * Stores a serialized seminar.
+     *
+     * @param data The serialized seminar.
+     * @return Handle to the stored bytes.
+     */
+    default Handle insert(byte[] data) {
+        return insert(data, 0, data.length);
+    }
+
+    /**
+     * Stores part of an array as a serialized seminar.
+     *
+     * @param data Array holding the serialized seminar.
+     * @param offset Position of the first byte to store.
+     * @param length Number of bytes to store.
+     * @return Handle to the stored bytes.
+     */
+    Handle insert(byte[] data, int offset, int length);
+
+    /**
+     * Stores many serialized seminars at once. Engines that can size the
+     * whole group before placing any of it override this; the rest store
+     * the records one at a time.
+     *
+     * @param records The serialized seminars, in the order to store them.
+     * @return A handle for each record, null for an empty one.
+     */
+    default Handle[] insertAll(byte[][] records) {
+        Handle[] handles = new Handle[records.length];
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] != null) {
+                handles[i] = insert(records[i], 0, records[i].length);
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * Copies the bytes behind a handle.
+     *
+     * @param handle Handle returned by insert.
+     * @return The bytes, or an empty array if they have been removed.
+     */
+    byte[] get(Handle handle);
+
+    /**
+     * Gives read access to the bytes behind a handle without copying
+     * them. The array is only valid until the next insert or remove.
+     *
+     * @param handle Handle returned by insert.
+     * @return Array holding the bytes at the handle's start position, or
+     *         null if they have been removed or are not held in memory.
+     */
+    byte[] peek(Handle handle);
+
+    /**
+     * Records that a record is being read and gives the handle to read it
+     * through. An engine that moves the record on access, such as one
+     * bringing it back from disk, tells the relocation listener first.
+     *
+     * @param handle Handle returned by insert.
+     * @return The handle to read the record through.
+     */
+    default Handle access(Handle handle) {
+        return handle;
+    }
+
+    /**
+     * Releases the bytes behind a handle.
+     *
+     * @param handle Handle returned by insert.
+     */
+    void remove(Handle handle);
+
+    /**
+     * Prints the free space of the engine for "print blocks".
+     */
+    void dump();
+
+    /**
+     * Gets the number of bytes of the engine's space that are free to
+     * hold new records. The rest of the capacity holds records along with
+     * whatever the engine loses to rounding, headers and space it has not
+     * yet reclaimed.
+     *
+     * @return The free bytes.
+     */
+    long freeBytes();
+
+    /**
+     * Gets the number of bytes of space the engine manages, which grows as
+     * records are added.
+     *
+     * @return The capacity in bytes.
+     */
+    long capacity();
+
+    /**
+     * Registers the listener told about records the engine moves. Engines
+     * that never move a record ignore it.
+     *
+     * @param listener The listener.
+     */
+    default void setRelocationListener(RelocationListener listener) {
+        // Records never move
+    }
+
+    /**
+     * Redirects expansion messages and dumps to another sink.
+     *
+     * @param sink The new sink.
+     */
+    void setOutput(OutputSink sink);
+}
@@ -0,0 +1,187 @@
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Runs every engine in StorageRegistry through the same checks of the
+ * Storage contract, so a newly registered allocator is tested without
+ * writing anything but its own unit tests.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class StorageConformanceTest extends TestCase {
+
+    private static final int CAPACITY = 1024;
+    private static final int RECORDS = 64;
+    private static final int OPERATIONS = 20000;
+    // Generous bound on a churn run, to catch work that grows with the
+    // number of operations rather than to time anything precisely
+    private static final long CHURN_NANOS = 5_000_000_000L;
+
+    private Storage create(String name) {
+        return StorageRegistry.create(name, CAPACITY, new Options(),
+            new CountingSink());
+    }
+
+    /**
+     * Builds a record whose bytes count up from a value, so a record read
+     * back from the wrong place does not match.
+     *
+     * @param value The first byte.
+     * @param length Number of bytes.
+     * @return The record.
+     */
+    static byte[] bytes(int value, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (value + i);
+        }
+        return data;
+    }
+
+    /**
+     * Tests that the engines of the -storage flag are registered and that
+     * an unknown name is refused.
+     */
+    public void testRegistry() {
+        for (String name : new String[] { "buddy", "inpool", "slab",
+            "tlsf", "concurrent", "log" }) {
+            assertTrue(name, StorageRegistry.names().contains(name));
+        }
+        assertTrue(create(StorageRegistry.DEFAULT) instanceof MemoryManager);
+        Exception thrown = null;
+        try {
+            create("missing");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+    /**
+     * Tests that records of many lengths, including ones larger than the
+     * initial space, read back through get and peek, taken from the
+     * middle of an array.
+     */
+    public void testRoundTrip() {
+        int[] lengths = { 1, 15, 16, 17, 130, 1000, 3000 };
+        for (String name : StorageRegistry.names()) {
+            Storage storage = create(name);
+            Handle[] handles = new Handle[lengths.length];
+            for (int i = 0; i < lengths.length; i++) {
+                handles[i] = storage.insert(bytes(i, lengths[i] + 6), 3,
+                    lengths[i]);
+                checkSpace(name, storage);
+            }
+            for (int i = 0; i < lengths.length; i++) {
+                byte[] read = storage.get(handles[i]);
+                assertEquals(name, lengths[i], read.length);
+                assertEquals(name, (byte) (i + 3), read[0]);
+                assertEquals(name, (byte) (i + 2 + lengths[i]),
+                    read[lengths[i] - 1]);
+                byte[] peeked = storage.peek(handles[i]);
+                assertEquals(name, (byte) (i + 3),
+                    peeked[handles[i].getStartPosition()]);
+            }
+            assertTrue(name, storage.capacity() >= 3000);
+        }
+    }
+
+    /**
+     * Tests that a removed record can no longer be read, that its
+     * neighbour is untouched and that its space is freed.
+     */
+    public void testRemove() {
+        for (String name : StorageRegistry.names()) {
+            Storage storage = create(name);
+            Handle first = storage.insert(bytes(1, 100));
+            Handle second = storage.insert(bytes(2, 100));
+            long free = storage.freeBytes();
+            storage.remove(first);
+            assertEquals(name, 0, storage.get(first).length);
+            assertTrue(name, storage.peek(first) == null);
+            assertEquals(name, (byte) 2, storage.get(second)[0]);
+            assertTrue(name, storage.freeBytes() >= free);
+            checkSpace(name, storage);
+        }
+    }
+
+    /**
+     * Tests many random inserts and removes on every engine within a time
+     * bound, checking each record before it is removed, following records
+     * the engine moves, and that space freed by removing every record is
+     * used again.
+     */
+    public void testChurn() {
+        for (String name : StorageRegistry.names()) {
+            Storage storage = create(name);
+            Handle[] handles = new Handle[RECORDS];
+            storage.setRelocationListener((from, to) -> {
+                for (int slot = 0; slot < handles.length; slot++) {
+                    if (from.equals(handles[slot])) {
+                        handles[slot] = to;
+                    }
+                }
+            });
+            long start = System.nanoTime();
+            churn(name, storage, handles, new Random(name.hashCode()));
+            long elapsed = System.nanoTime() - start;
+            assertTrue(name + " took " + elapsed / 1000000 + " ms",
+                elapsed < CHURN_NANOS);
+            long capacity = storage.capacity();
+            churn(name, storage, handles, new Random(name.hashCode()));
+            assertEquals(name, capacity, storage.capacity());
+        }
+    }
+
+    /**
+     * Tests that dump and expansion messages go to the sink last set.
+     */
+    public void testOutput() {
+        for (String name : StorageRegistry.names()) {
+            Storage storage = create(name);
+            CountingSink sink = new CountingSink();
+            storage.setOutput(sink);
+            storage.dump();
+            long lines = sink.getLines();
+            assertTrue(name, lines > 0);
+            long capacity = storage.capacity();
+            while (storage.capacity() == capacity) {
+                storage.insert(bytes(0, 1000));
+            }
+            assertTrue(name, sink.getLines() > lines);
+        }
+    }
+
+    /**
+     * Replaces random records OPERATIONS times, then removes them all.
+     */
+    private void churn(String name, Storage storage, Handle[] handles,
+        Random random) {
+        int[] values = new int[handles.length];
+        for (int i = 0; i < OPERATIONS; i++) {
+            int slot = random.nextInt(handles.length);
+            if (handles[slot] != null) {
+                byte[] read = storage.get(handles[slot]);
+                assertEquals(name, (byte) values[slot], read[0]);
+                assertEquals(name, (byte) (values[slot] + read.length - 1),
+                    read[read.length - 1]);
+                storage.remove(handles[slot]);
+            }
+            values[slot] = random.nextInt(100);
+            handles[slot] = storage.insert(
+                bytes(values[slot], 1 + random.nextInt(600)));
+        }
+        checkSpace(name, storage);
+        for (int slot = 0; slot < handles.length; slot++) {
+            storage.remove(handles[slot]);
+            handles[slot] = null;
+        }
+    }
+
+    private void checkSpace(String name, Storage storage) {
+        assertTrue(name, storage.freeBytes() >= 0);
+        assertTrue(name, storage.freeBytes() <= storage.capacity());
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Creates a storage engine for StorageRegistry from the settings on the
+ * command line.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public interface StorageFactory {
+
+    /**
+     * Creates an empty engine.
+     *
+     * @param memoryCapacity Initial size of the engine's space in bytes.
+     * @param options Flags from the command line, for engine settings.
+     * @param output Where expansion messages and dumps are written.
+     * @return The engine.
+     */
+    Storage create(int memoryCapacity, Options options, OutputSink output);
+}
@@ -0,0 +1,90 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The storage engines that can be chosen with -storage, by name. Every
+ * engine registered here is run through StorageConformanceTest, and the
+ * fragmentation benchmark compares all of them, so trying out a new
+ * allocator only takes a Storage class and one register call.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public final class StorageRegistry {
+
+    /** Name of the engine used when -storage is not given. */
+    public static final String DEFAULT = "buddy";
+
+    private static final Map<String, StorageFactory> FACTORIES =
+        new LinkedHashMap<>();
+
+    static {
+        register(DEFAULT, (capacity, options, output) ->
+            new MemoryManager(capacity, output));
+        register("inpool", (capacity, options, output) ->
+            new InPoolBuddyStorage(capacity, output));
+        register("slab", (capacity, options, output) ->
+            new SlabStorage(new MemoryManager(capacity, output), output));
+        register("tlsf", (capacity, options, output) ->
+            new TlsfStorage(capacity, output));
+        // Cache free blocks per thread when -magazines is given
+        register("concurrent", (capacity, options, output) ->
+            new ConcurrentBuddyStorage(capacity,
+                options.has("magazines")
+                    ? options.getInt("magazines",
+                        ConcurrentBuddyStorage.DEFAULT_MAGAZINE_SIZE)
+                    : 0,
+                output));
+        register("log", (capacity, options, output) ->
+            new LogStorage(capacity, output));
+    }
+
+    private StorageRegistry() {
+        // Only static members
+    }
+
+    /**
+     * Adds an engine, replacing any registered under the same name.
+     *
+     * @param name Name given to -storage.
+     * @param factory Creates the engine.
+     */
+    public static synchronized void register(String name,
+        StorageFactory factory) {
+        FACTORIES.put(name, factory);
+    }
+
+    /**
+     * Gets the names of the registered engines, in the order they were
+     * registered.
+     *
+     * @return The names.
+     */
+    public static synchronized Set<String> names() {
+        return Collections.unmodifiableSet(
+            new LinkedHashSet<>(FACTORIES.keySet()));
+    }
+
+    /**
+     * Creates an engine by name.
+     *
+     * @param name Name of a registered engine.
+     * @param memoryCapacity Initial size of the engine's space in bytes.
+     * @param options Flags from the command line.
+     * @param output Where expansion messages and dumps are written.
+     * @return The engine.
+     * @throws IllegalArgumentException if no engine has the name.
+     */
+    public static synchronized Storage create(String name,
+        int memoryCapacity, Options options, OutputSink output) {
+        StorageFactory factory = FACTORIES.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown storage engine "
+                + name + ", expected one of " + FACTORIES.keySet());
+        }
+        return factory.create(memoryCapacity, options, output);
+    }
+}
@@ -0,0 +1,380 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps the hot part of the data in an in-memory storage engine and
+ * spills the rest to a file. The bytes held in memory are capped: before
+ * an insert would go over the cap, the least recently used records are
+ * written to the end of the spill file and removed from memory. Reading
+ * a spilled record through access brings it back into memory.
+ *
+ * Space left in the spill file by records that were promoted or removed
+ * is reused: free extents merge with free neighbours, a spilled record
+ * takes the smallest one it fits in, and free space at the end of the
+ * file is cut off. The file therefore stays close to the size of the
+ * records spilled at the moment, however many have passed through it.
+ *
+ * Handles of spilled records have a negative start position, -1 minus
+ * their offset in the spill file. Every move between the tiers, and every
+ * move made by the memory tier itself, is reported to the
+ * RelocationListener so the hash table always holds the current handle.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class TieredStorage implements Storage {
+
+    private static final int OFFSET_BITS = 31;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    /**
+     * A record held in memory, linked into the recency list.
+     */
+    private static class Node {
+        private Handle handle;
+        private Node older;
+        private Node newer;
+
+        Node(Handle handle) {
+            this.handle = handle;
+        }
+    }
+
+    private final Storage memory;
+    private final long memoryCap;
+    private final RandomAccessFile spillFile;
+    private final FileChannel spill;
+    private final Map<Integer, Node> resident = new HashMap<>();
+    private final Node recency = new Node(null);
+    // Free spill extents by offset, and the same ones by length
+    private final TreeMap<Long, Integer> freeByOffset = new TreeMap<>();
+    private final TreeSet<Long> freeBySize = new TreeSet<>();
+    private long memoryBytes;
+    private long spillLength;
+    private long spillLiveBytes;
+    private int spilledRecords;
+    private int evictions;
+    private int promotions;
+    private RelocationListener listener;
+    private OutputSink output;
+
+    /**
+     * Creates tiered storage on top of an in-memory engine.
+     *
+     * @param memory The engine for the hot records.
+     * @param memoryCap Most bytes of records kept in memory.
+     * @param spillPath File cold records are written to; it is emptied.
+     * @param output Where dumps are written.
+     * @throws IOException if the spill file cannot be opened.
+     */
+    public TieredStorage(Storage memory, long memoryCap, File spillPath,
+        OutputSink output) throws IOException {
+        this.memory = memory;
+        this.memoryCap = memoryCap;
+        this.output = output;
+        this.spillFile = new RandomAccessFile(spillPath, "rw");
+        this.spill = spillFile.getChannel();
+        spill.truncate(0);
+        recency.older = recency;
+        recency.newer = recency;
+        memory.setRelocationListener(this::movedInMemory);
+    }
+
+    @Override
+    public void setRelocationListener(RelocationListener relocations) {
+        this.listener = relocations;
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+        memory.setOutput(sink);
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        makeRoom(length);
+        Handle handle = memory.insert(data, offset, length);
+        admit(handle);
+        return handle;
+    }
+
+    @Override
+    public Handle access(Handle handle) {
+        if (!isSpilled(handle)) {
+            Node node = resident.get(handle.getStartPosition());
+            if (node != null) {
+                unlink(node);
+                linkNewest(node);
+            }
+            return handle;
+        }
+        byte[] data = readSpilled(handle);
+        makeRoom(data.length);
+        Handle promoted = memory.insert(data, 0, data.length);
+        admit(promoted);
+        dropSpilled(handle);
+        promotions++;
+        notifyMoved(handle, promoted);
+        return promoted;
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        return isSpilled(handle) ? readSpilled(handle) : memory.get(handle);
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        return isSpilled(handle) ? null : memory.peek(handle);
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        if (isSpilled(handle)) {
+            dropSpilled(handle);
+            return;
+        }
+        Node node = resident.remove(handle.getStartPosition());
+        if (node != null) {
+            unlink(node);
+            memoryBytes -= handle.getDataLength();
+        }
+        memory.remove(handle);
+    }
+
+    @Override
+    public void dump() {
+        memory.dump();
+        output.println("Memory tier: " + resident.size() + " records, "
+            + memoryBytes + " of " + memoryCap + " bytes");
+        output.println("Spill file: " + spilledRecords + " records, "
+            + spillLiveBytes + " live of " + spillLength + " bytes");
+    }
+
+    // Only the memory tier is counted; the spill file grows as needed
+    @Override
+    public long freeBytes() {
+        return memory.freeBytes();
+    }
+
+    @Override
+    public long capacity() {
+        return memory.capacity();
+    }
+
+    /**
+     * Gets the number of bytes of records held in memory.
+     *
+     * @return The bytes in memory.
+     */
+    public long memoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Gets the number of records written to the spill file so far.
+     *
+     * @return The eviction count.
+     */
+    public int evictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of records brought back from the spill file.
+     *
+     * @return The promotion count.
+     */
+    public int promotions() {
+        return promotions;
+    }
+
+    /**
+     * Closes the spill file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    public void close() throws IOException {
+        spillFile.close();
+    }
+
+    private static boolean isSpilled(Handle handle) {
+        return handle.getStartPosition() < 0;
+    }
+
+    /**
+     * Spills least recently used records until a record of the given
+     * length fits under the cap.
+     */
+    private void makeRoom(int length) {
+        while (memoryBytes + length > memoryCap
+            && recency.older != recency) {
+            Node coldest = recency.older;
+            Handle cold = coldest.handle;
+            Handle spilled = writeSpilled(memory.get(cold));
+            evictions++;
+            // Reported while the record can still be read in memory
+            notifyMoved(cold, spilled);
+            remove(cold);
+        }
+    }
+
+    private void admit(Handle handle) {
+        Node node = new Node(handle);
+        resident.put(handle.getStartPosition(), node);
+        linkNewest(node);
+        memoryBytes += handle.getDataLength();
+    }
+
+    /**
+     * Keeps the recency list in step when the memory tier moves a record,
+     * such as a log cleaner compacting a segment.
+     */
+    private void movedInMemory(Handle from, Handle to) {
+        Node node = resident.remove(from.getStartPosition());
+        if (node != null) {
+            node.handle = to;
+            resident.put(to.getStartPosition(), node);
+        }
+        notifyMoved(from, to);
+    }
+
+    private void notifyMoved(Handle from, Handle to) {
+        if (listener != null) {
+            listener.relocated(from, to);
+        }
+    }
+
+    private void linkNewest(Node node) {
+        node.older = recency;
+        node.newer = recency.newer;
+        recency.newer.older = node;
+        recency.newer = node;
+    }
+
+    private void unlink(Node node) {
+        node.older.newer = node.newer;
+        node.newer.older = node.older;
+    }
+
+    private Handle writeSpilled(byte[] data) {
+        long offset = allocateSpill(data.length);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                spill.write(buffer, offset + buffer.position());
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        spillLiveBytes += data.length;
+        spilledRecords++;
+        return new Handle((int) (-1 - offset), data.length);
+    }
+
+    private byte[] readSpilled(Handle handle) {
+        long offset = -1L - handle.getStartPosition();
+        byte[] data = new byte[handle.getDataLength()];
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (spill.read(buffer, offset + buffer.position()) < 0) {
+                    return new byte[0];
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return data;
+    }
+
+    private void dropSpilled(Handle handle) {
+        spillLiveBytes -= handle.getDataLength();
+        spilledRecords--;
+        freeSpill(-1L - handle.getStartPosition(), handle.getDataLength());
+    }
+
+    /**
+     * Finds room for a spilled record: the smallest free extent that
+     * holds it, split if larger, or else the end of the file.
+     */
+    private long allocateSpill(int length) {
+        Long fit = freeBySize.ceiling(sizeKey(length, 0));
+        if (fit != null) {
+            long offset = fit & OFFSET_MASK;
+            int extent = (int) (fit >>> OFFSET_BITS);
+            removeFree(offset, extent);
+            if (extent > length) {
+                addFree(offset + length, extent - length);
+            }
+            return offset;
+        }
+        long offset = spillLength;
+        if (offset + length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Spill file is full");
+        }
+        spillLength += length;
+        return offset;
+    }
+
+    /**
+     * Returns a record's extent to the free space, merging it with free
+     * neighbours and cutting the file short if it ends there.
+     */
+    private void freeSpill(long offset, int length) {
+        Map.Entry<Long, Integer> before = freeByOffset.lowerEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            removeFree(before.getKey(), before.getValue());
+            offset = before.getKey();
+            length += before.getValue();
+        }
+        Integer after = freeByOffset.get(offset + length);
+        if (after != null) {
+            removeFree(offset + length, after);
+            length += after;
+        }
+        if (offset + length < spillLength) {
+            addFree(offset, length);
+            return;
+        }
+        spillLength = offset;
+        try {
+            spill.truncate(spillLength);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void addFree(long offset, int length) {
+        freeByOffset.put(offset, length);
+        freeBySize.add(sizeKey(length, offset));
+    }
+
+    private void removeFree(long offset, int length) {
+        freeByOffset.remove(offset);
+        freeBySize.remove(sizeKey(length, offset));
+    }
+
+    /**
+     * Orders free extents by length, then offset. Both fit in 31 bits,
+     * since spill handles hold offsets as ints.
+     */
+    private static long sizeKey(int length, long offset) {
+        return (long) length << OFFSET_BITS | offset;
+    }
+}
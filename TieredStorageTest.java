@@ -0,0 +1,181 @@
+import java.io.File;
+import java.io.PrintWriter;
+import student.TestCase;
+
+/**
+ * Test class for TieredStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class TieredStorageTest extends TestCase {
+
+    private File spillPath;
+    private TieredStorage storage;
+    private Handle[] lastMove;
+
+    /**
+     * Sets up tiered storage holding at most 100 bytes in memory.
+     *
+     * @throws Exception if the spill file cannot be opened
+     */
+    @Override
+    public void setUp() throws Exception {
+        spillPath = new File("test.spill");
+        storage = new TieredStorage(new MemoryManager(256, new CountingSink()),
+            100, spillPath, new CountingSink());
+        lastMove = null;
+        storage.setRelocationListener(
+            (from, to) -> lastMove = new Handle[] { from, to });
+    }
+
+    /**
+     * Closes and removes the spill file after each test.
+     *
+     * @throws Exception if the spill file cannot be closed
+     */
+    @Override
+    public void tearDown() throws Exception {
+        storage.close();
+        spillPath.delete();
+    }
+
+    /**
+     * Tests that the least recently used record is spilled when the cap
+     * is reached and reads back from disk.
+     */
+    public void testSpillsLeastRecentlyUsed() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 40));
+        assertSame(first, storage.access(first));
+        storage.insert(StorageConformanceTest.bytes(3, 40));
+
+        assertEquals(second, lastMove[0]);
+        Handle spilled = lastMove[1];
+        assertTrue(spilled.getStartPosition() < 0);
+        assertNull(storage.peek(spilled));
+        assertEquals(2, storage.get(spilled)[0]);
+        assertEquals(1, storage.evictions());
+        assertEquals(80, storage.memoryBytes());
+        assertEquals(40, spillPath.length());
+    }
+
+    /**
+     * Tests that reading a spilled record brings it back into memory.
+     */
+    public void testPromotesOnAccess() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        storage.insert(StorageConformanceTest.bytes(2, 40));
+        storage.insert(StorageConformanceTest.bytes(3, 40));
+        Handle spilled = lastMove[1];
+        assertEquals(first, lastMove[0]);
+
+        Handle promoted = storage.access(spilled);
+        assertEquals(promoted, lastMove[1]);
+        assertTrue(promoted.getStartPosition() >= 0);
+        assertEquals(1, storage.peek(promoted)[promoted.getStartPosition()]);
+        assertEquals(1, storage.promotions());
+        assertEquals(80, storage.memoryBytes());
+    }
+
+    /**
+     * Tests that a SeminarDB keeps finding seminars that were spilled.
+     */
+    public void testUnderSeminarDB() {
+        SeminarDB db = new SeminarDB(storage, 8, new ConsoleSink());
+        for (int id = 1; id <= 4; id++) {
+            Seminar seminar = new Seminar(id, "Title", "2405231000", 75,
+                (short) 15, (short) 33, 125, new String[] { "A" }, "Desc");
+            assertTrue(db.addSeminar(id, seminar));
+        }
+        assertTrue(storage.evictions() > 0);
+        systemOut().clearHistory();
+        for (int id = 1; id <= 4; id++) {
+            assertTrue(db.findSeminar(id));
+            assertTrue(systemOut().getHistory().contains("ID: " + id + ","));
+        }
+        assertTrue(db.eraseSeminar(1));
+        assertFalse(db.findSeminar(1));
+    }
+
+    /**
+     * Tests that space left by removed and promoted records is reused, so
+     * records passing through the spill file do not keep growing it.
+     */
+    public void testReusesSpillSpace() {
+        Handle[] handles = new Handle[8];
+        storage.setRelocationListener((from, to) -> {
+            for (int i = 0; i < handles.length; i++) {
+                if (from.equals(handles[i])) {
+                    handles[i] = to;
+                }
+            }
+        });
+        for (int round = 0; round < 500; round++) {
+            int slot = round % handles.length;
+            if (handles[slot] != null) {
+                assertEquals(slot, storage.get(handles[slot])[0]
+                    - handles[slot].getDataLength());
+                if (round % 3 == 0) {
+                    handles[slot] = storage.access(handles[slot]);
+                }
+                storage.remove(handles[slot]);
+            }
+            int length = 10 + round % 31;
+            handles[slot] = storage.insert(
+                StorageConformanceTest.bytes(slot + length, length));
+        }
+        assertTrue(storage.evictions() > 400);
+        assertTrue(spillPath.length() <= 8 * 40);
+        for (Handle handle : handles) {
+            storage.remove(handle);
+        }
+        assertEquals(0, spillPath.length());
+    }
+
+    private String runLines(String[] args) {
+        systemOut().clearHistory();
+        new Reader().interpretFile(args);
+        StringBuilder kept = new StringBuilder();
+        for (String line : systemOut().getHistory().split("\n")) {
+            if (!line.contains("expanded to")) {
+                kept.append(line).append('\n');
+            }
+        }
+        return kept.toString();
+    }
+
+    /**
+     * Tests that seminars added in bulk are found at their new place when
+     * the memory tier spills some of them while the batch is stored.
+     *
+     * @throws Exception if the command file cannot be written
+     */
+    public void testUnderBulkLoad() throws Exception {
+        File commands = File.createTempFile("commands", ".txt");
+        commands.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(commands, "US-ASCII")) {
+            for (int id = 1; id <= 12; id++) {
+                writer.println("insert " + id);
+                writer.println("Title " + id + " of a seminar long enough "
+                    + "to spill");
+                writer.println("2405231000 75 15 33 125");
+                writer.println("A B C");
+                writer.println("Description " + id + " of the seminar");
+            }
+            for (int id = 1; id <= 12; id++) {
+                writer.println("search " + id);
+            }
+        }
+        String path = commands.getPath();
+        String bulk = runLines(
+            new String[] { "512", "8", path, "-tier=600", "-bulk" });
+        assertEquals(runLines(
+            new String[] { "512", "8", path, "-tier=600" }), bulk);
+        String searches = bulk.substring(bulk.indexOf("Found record"));
+        for (int id = 1; id <= 12; id++) {
+            assertTrue(searches.contains("ID: " + id + ", Title: Title "
+                + id + " "));
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A Two-Level Segregated Fit allocator. Blocks are any multiple of 8
+ * bytes instead of a power of two, so a 130 byte seminar takes 136 bytes
+ * rather than 256, and both insert and remove take a bounded number of
+ * steps whatever the state of the pool, short of the pool doubling.
+ *
+ * Free blocks are kept on lists by size. Each power of two is split into
+ * 16 lists of equal ranges, with a first-level bitmap of the powers of two
+ * that have a free block and a second-level bitmap per power of two of
+ * its lists that have one. An insert rounds its size up to the start of
+ * the next list, so that every block on the list found is large enough,
+ * and finds the first non-empty list at or above it with two bit scans;
+ * the block taken is split and the rest goes back on a list.
+ *
+ * Block headers live in the pool, in front of each record. A header holds
+ * the block size along with whether the block and the one before it are
+ * free. A free block also holds the neighbours on its list and ends with
+ * its size, so a removed record merges with free blocks on both sides at
+ * once. No two free blocks are ever next to each other.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class TlsfStorage implements Storage {
+
+    /** Blocks are a multiple of this many bytes. */
+    static final int GRANULE = 8;
+
+    /** Bytes in front of each record holding its block's header. */
+    static final int HEADER = 4;
+
+    /** Smallest block: a header, two list links and a size at its end. */
+    static final int MIN_BLOCK = 16;
+
+    // Each power of two is split into 2^SL_LOG lists
+    private static final int SL_LOG = 4;
+    private static final int SL_COUNT = 1 << SL_LOG;
+    // Blocks below 2^SMALL_LOG all map to the first level, a list per 8
+    private static final int SMALL_LOG = 7;
+    private static final int FL_COUNT = 31 - SMALL_LOG + 1;
+    private static final int FREE = 1;
+    private static final int PREV_FREE = 2;
+    private static final int FLAGS = GRANULE - 1;
+    private static final int NONE = -1;
+
+    private byte[] pool;
+    private int firstLevel;
+    private final int[] secondLevel = new int[FL_COUNT];
+    // First free block of each list
+    private final int[] heads = new int[FL_COUNT * SL_COUNT];
+    // A set bit marks the start of a block holding a record, by granule
+    private final BitSet used = new BitSet();
+    // Whether the last block of the pool is free
+    private boolean tailFree;
+    private int freeBytes;
+    private OutputSink output;
+
+    /**
+     * Creates an allocator with one free block covering the pool.
+     *
+     * @param initialSize Size of the pool, rounded down to a multiple of
+     *        8 bytes and at least 16.
+     * @param output Where expansion messages and dumps are written.
+     */
+    public TlsfStorage(int initialSize, OutputSink output) {
+        this.output = output;
+        pool = new byte[Math.max(MIN_BLOCK, initialSize & -GRANULE)];
+        Arrays.fill(heads, NONE);
+        addFree(0, pool.length);
+    }
+
+    /**
+     * Gets the list a free block of a given size is kept on.
+     *
+     * @param size Block size, a multiple of 8 bytes.
+     * @return The list, the first level times 16 plus the second level.
+     */
+    static int listIndex(int size) {
+        if (size < 1 << SMALL_LOG) {
+            return size / GRANULE;
+        }
+        int log = 31 - Integer.numberOfLeadingZeros(size);
+        return (log - SMALL_LOG + 1) * SL_COUNT
+            + (size >>> (log - SL_LOG)) - SL_COUNT;
+    }
+
+    @Override
+    public Handle insert(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return null;
+        }
+        int need = Math.max(MIN_BLOCK,
+            (length + HEADER + GRANULE - 1) & -GRANULE);
+        int block = findFree(need);
+        while (block == NONE) {
+            grow();
+            block = findFree(need);
+        }
+        int size = sizeOf(block);
+        removeFree(block);
+        if (size - need >= MIN_BLOCK) {
+            addFree(block + need, size - need);
+            size = need;
+        }
+        else {
+            setPrevFree(block + size, false);
+        }
+        // The block before a free block is never free
+        writeInt(block, size);
+        used.set(block / GRANULE);
+        System.arraycopy(data, offset, pool, block + HEADER, length);
+        return new Handle(block + HEADER, length);
+    }
+
+    @Override
+    public byte[] get(Handle handle) {
+        if (!isHeld(handle)) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(pool, handle.getStartPosition(),
+            handle.getStartPosition() + handle.getDataLength());
+    }
+
+    @Override
+    public byte[] peek(Handle handle) {
+        return isHeld(handle) ? pool : null;
+    }
+
+    @Override
+    public void remove(Handle handle) {
+        if (!isHeld(handle)) {
+            return;
+        }
+        int block = handle.getStartPosition() - HEADER;
+        used.clear(block / GRANULE);
+        int size = sizeOf(block);
+        int next = block + size;
+        if (next < pool.length && (readInt(next) & FREE) != 0) {
+            size += sizeOf(next);
+            removeFree(next);
+        }
+        if ((readInt(block) & PREV_FREE) != 0) {
+            int previousSize = readInt(block - 4);
+            block -= previousSize;
+            size += previousSize;
+            removeFree(block);
+        }
+        addFree(block, size);
+    }
+
+    @Override
+    public void dump() {
+        TreeMap<Integer, StringBuilder> bySize = new TreeMap<>();
+        for (int block = 0; block < pool.length; block += sizeOf(block)) {
+            if ((readInt(block) & FREE) != 0) {
+                bySize.computeIfAbsent(sizeOf(block),
+                    size -> new StringBuilder()).append(" ").append(block);
+            }
+        }
+        output.println("Freeblock List:");
+        if (bySize.isEmpty()) {
+            output.println("There are no freeblocks in the memory pool");
+            return;
+        }
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<Integer, StringBuilder> entry : bySize.entrySet()) {
+            report.append(entry.getKey()).append(":")
+                .append(entry.getValue()).append("\n");
+        }
+        output.print(report.toString());
+    }
+
+    @Override
+    public void setOutput(OutputSink sink) {
+        this.output = sink;
+    }
+
+    @Override
+    public long freeBytes() {
+        return freeBytes;
+    }
+
+    @Override
+    public long capacity() {
+        return pool.length;
+    }
+
+    /**
+     * Finds a free block of at least the given size without taking it.
+     *
+     * @return The block, or NONE if no list holds one.
+     */
+    private int findFree(int need) {
+        int size = need;
+        if (size >= 1 << SMALL_LOG) {
+            // Round up to the next list so any block on it is big enough
+            size += (1 << (31 - Integer.numberOfLeadingZeros(size)
+                - SL_LOG)) - 1;
+        }
+        int list = listIndex(size);
+        int level = list / SL_COUNT;
+        if (level >= FL_COUNT) {
+            return NONE;
+        }
+        int lists = secondLevel[level] & (-1 << (list % SL_COUNT));
+        if (lists == 0) {
+            int levels = level + 1 < FL_COUNT
+                ? firstLevel & (-1 << (level + 1))
+                : 0;
+            if (levels == 0) {
+                return NONE;
+            }
+            level = Integer.numberOfTrailingZeros(levels);
+            lists = secondLevel[level];
+        }
+        return heads[level * SL_COUNT + Integer.numberOfTrailingZeros(lists)];
+    }
+
+    /**
+     * Marks a block free, writes its size at its end and puts it at the
+     * head of its list.
+     */
+    private void addFree(int block, int size) {
+        int list = listIndex(size);
+        writeInt(block, size | FREE);
+        writeInt(block + size - 4, size);
+        int next = heads[list];
+        writeInt(block + 4, next);
+        writeInt(block + 8, NONE);
+        if (next != NONE) {
+            writeInt(next + 8, block);
+        }
+        heads[list] = block;
+        secondLevel[list / SL_COUNT] |= 1 << (list % SL_COUNT);
+        firstLevel |= 1 << (list / SL_COUNT);
+        setPrevFree(block + size, true);
+        freeBytes += size;
+    }
+
+    /**
+     * Takes a free block off its list. Its header is left as it is.
+     */
+    private void removeFree(int block) {
+        int size = sizeOf(block);
+        int list = listIndex(size);
+        int next = readInt(block + 4);
+        int previous = readInt(block + 8);
+        if (previous == NONE) {
+            heads[list] = next;
+        }
+        else {
+            writeInt(previous + 4, next);
+        }
+        if (next != NONE) {
+            writeInt(next + 8, previous);
+        }
+        if (heads[list] == NONE) {
+            secondLevel[list / SL_COUNT] &= ~(1 << (list % SL_COUNT));
+            if (secondLevel[list / SL_COUNT] == 0) {
+                firstLevel &= ~(1 << (list / SL_COUNT));
+            }
+        }
+        freeBytes -= size;
+    }
+
+    /**
+     * Records whether the block before the one at a position is free.
+     * The position may be the end of the pool.
+     */
+    private void setPrevFree(int block, boolean free) {
+        if (block == pool.length) {
+            tailFree = free;
+        }
+        else if (free) {
+            writeInt(block, readInt(block) | PREV_FREE);
+        }
+        else {
+            writeInt(block, readInt(block) & ~PREV_FREE);
+        }
+    }
+
+    /**
+     * Doubles the pool, merging the new half with a free block at the end
+     * of the old one.
+     */
+    private void grow() {
+        int block = pool.length;
+        int size = pool.length;
+        pool = Arrays.copyOf(pool, pool.length * 2);
+        if (tailFree) {
+            int previousSize = readInt(block - 4);
+            block -= previousSize;
+            size += previousSize;
+            removeFree(block);
+        }
+        addFree(block, size);
+        output.println("Memory pool expanded to " + pool.length + " bytes");
+    }
+
+    private boolean isHeld(Handle handle) {
+        int block = handle.getStartPosition() - HEADER;
+        return block >= 0 && block % GRANULE == 0
+            && used.get(block / GRANULE)
+            && sizeOf(block) - HEADER >= handle.getDataLength();
+    }
+
+    private int sizeOf(int block) {
+        return readInt(block) & ~FLAGS;
+    }
+
+    private int readInt(int position) {
+        return (pool[position] << 24) | ((pool[position + 1] & 0xFF) << 16)
+            | ((pool[position + 2] & 0xFF) << 8) | (pool[position + 3] & 0xFF);
+    }
+
+    private void writeInt(int position, int value) {
+        pool[position] = (byte) (value >>> 24);
+        pool[position + 1] = (byte) (value >>> 16);
+        pool[position + 2] = (byte) (value >>> 8);
+        pool[position + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test class for TlsfStorage
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class TlsfStorageTest extends TestCase {
+
+    private TlsfStorage storage;
+
+    /**
+     * Sets up a pool of 1024 bytes before each test.
+     */
+    @Override
+    public void setUp() {
+        storage = new TlsfStorage(1024, new ConsoleSink());
+    }
+
+    /**
+     * Tests the lists block sizes map to.
+     */
+    public void testListIndex() {
+        assertEquals(2, TlsfStorage.listIndex(16));
+        assertEquals(15, TlsfStorage.listIndex(120));
+        assertEquals(16, TlsfStorage.listIndex(128));
+        assertEquals(31, TlsfStorage.listIndex(248));
+        assertEquals(32, TlsfStorage.listIndex(256));
+        assertEquals(32, TlsfStorage.listIndex(264));
+        assertEquals(33, TlsfStorage.listIndex(272));
+        assertEquals(48, TlsfStorage.listIndex(512));
+    }
+
+    /**
+     * Tests that blocks are cut to the record plus its header and that
+     * removed blocks merge with free neighbours on both sides.
+     */
+    public void testSplitAndMerge() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 40));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 100));
+        Handle third = storage.insert(StorageConformanceTest.bytes(3, 10));
+        assertEquals(4, first.getStartPosition());
+        assertEquals(52, second.getStartPosition());
+        assertEquals(156, third.getStartPosition());
+        assertEquals(1024 - 48 - 104 - 16, storage.freeBytes());
+        assertEquals(101, storage.get(second)[99]);
+        assertEquals(1, storage.peek(first)[4]);
+
+        storage.remove(first);
+        storage.remove(third);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n48: 0\n872: 152\n",
+            systemOut().getHistory());
+        storage.remove(second);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n1024: 0\n",
+            systemOut().getHistory());
+        assertEquals(1024, storage.freeBytes());
+    }
+
+    /**
+     * Tests that removed records are no longer readable and that removing
+     * one twice does nothing.
+     */
+    public void testRemove() {
+        Handle first = storage.insert(StorageConformanceTest.bytes(1, 30));
+        Handle second = storage.insert(StorageConformanceTest.bytes(2, 30));
+        storage.remove(first);
+        assertEquals(0, storage.get(first).length);
+        assertNull(storage.peek(first));
+        storage.remove(first);
+        assertEquals(30, storage.get(second).length);
+        assertEquals(1024 - 40, storage.freeBytes());
+    }
+
+    /**
+     * Tests that the pool doubles until a record fits, merging the new
+     * half with the free block at the end of the old one.
+     */
+    public void testGrows() {
+        Handle full = storage.insert(StorageConformanceTest.bytes(0, 1000));
+        Handle next = storage.insert(StorageConformanceTest.bytes(5, 100));
+        assertEquals(2048, storage.capacity());
+        assertEquals(1012, next.getStartPosition());
+        assertTrue(systemOut().getHistory().contains(
+            "Memory pool expanded to 2048 bytes"));
+        assertEquals(5, storage.get(next)[0]);
+        storage.remove(full);
+        storage.remove(next);
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n2048: 0\n",
+            systemOut().getHistory());
+    }
+
+    /**
+     * Tests many random inserts and removes, checking every record before
+     * it is removed and that the pool ends up in one block.
+     */
+    public void testChurn() {
+        Random random = new Random(7);
+        Handle[] handles = new Handle[64];
+        int[] values = new int[handles.length];
+        for (int i = 0; i < 20000; i++) {
+            int slot = random.nextInt(handles.length);
+            if (handles[slot] != null) {
+                byte[] read = storage.get(handles[slot]);
+                assertEquals(values[slot], read[0]);
+                assertEquals((byte) (values[slot] + read.length - 1),
+                    read[read.length - 1]);
+                storage.remove(handles[slot]);
+            }
+            values[slot] = random.nextInt(100);
+            handles[slot] = storage.insert(StorageConformanceTest.bytes(
+                values[slot], 1 + random.nextInt(600)));
+        }
+        for (Handle handle : handles) {
+            storage.remove(handle);
+        }
+        assertEquals(storage.capacity(), storage.freeBytes());
+        systemOut().clearHistory();
+        storage.dump();
+        assertFuzzyEquals("Freeblock List:\n" + storage.capacity() + ": 0\n",
+            systemOut().getHistory());
+    }
+}
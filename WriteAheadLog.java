@@ -0,0 +1,372 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Durable log of every successful SeminarDB mutation. Each insert or
+ * erase is appended as a compact binary record to an in-memory buffer;
+ * a flusher thread writes whatever has accumulated through a FileChannel
+ * and makes it durable with a single force, so many mutations share one
+ * fsync (group commit). A record waits at most the configured latency
+ * before it is flushed. Callers that must know a mutation is on disk can
+ * wait for it with awaitDurable or commit.
+ *
+ * Record layout: type byte, seminar ID, payload length, payload bytes
+ * (the serialized seminar for inserts, empty for erases) and a CRC32 of
+ * everything before it. Replay stops at the first torn or corrupt record
+ * and cuts the file back to the last good one.
+ *
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    /** Record type for a successful insert. */
+    public static final byte INSERT = 1;
+    /** Record type for a successful erase. */
+    public static final byte ERASE = 2;
+
+    /** Default longest time a record waits before it is flushed. */
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 10;
+
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4;
+    private static final int FLUSH_THRESHOLD = 1 << 20;
+
+    private final FileChannel channel;
+    private final long maxLatencyNanos;
+    private final Thread flusher;
+    private final CRC32 checksum;
+
+    // Guarded by this
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appendedLsn;
+    private long firstPendingNanos;
+    private boolean urgent;
+    private boolean started;
+    private boolean closed;
+    private long durableLsn;
+    private IOException failure;
+
+    /**
+     * Opens or creates a log and starts its flusher thread.
+     *
+     * @param file The log file.
+     * @param maxLatencyMillis Longest time a record waits before it is
+     *        made durable.
+     * @throws IOException if the file cannot be opened.
+     */
+    public WriteAheadLog(File file, long maxLatencyMillis)
+        throws IOException {
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.maxLatencyNanos = Math.max(0, maxLatencyMillis) * 1_000_000L;
+        this.checksum = new CRC32();
+        this.pending = ByteBuffer.allocate(1 << 16);
+        this.spare = ByteBuffer.allocate(1 << 16);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+    }
+
+    /**
+     * Applies every intact record in the log to the database, cuts off
+     * anything after the last intact record, and starts accepting new
+     * records at the end of the log. Must be called once, before any
+     * append.
+     *
+     * @param dbInstance The database to rebuild.
+     * @return The number of records replayed.
+     * @throws IOException if the log cannot be read.
+     */
+    public int replay(SeminarDB dbInstance) throws IOException {
+        return replay(dbInstance, 0);
+    }
+
+    /**
+     * Replays the log starting at a position, such as the one recorded by
+     * a snapshot, so records the snapshot already holds are skipped.
+     *
+     * @param dbInstance The database to rebuild.
+     * @param from Log position to start at.
+     * @return The number of records replayed.
+     * @throws IOException if the log cannot be read, or ends before the
+     *         position, as it does when it is not the log the snapshot
+     *         was taken with.
+     */
+    public int replay(SeminarDB dbInstance, long from) throws IOException {
+        long size = channel.size();
+        if (from > size) {
+            // Appending here would leave a gap the snapshot never saw
+            throw new IOException("Log ends at " + size
+                + ", before the replay position " + from);
+        }
+        long good = from;
+        int count = 0;
+        channel.position(good);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(channel), 1 << 16));
+        byte[] payload = new byte[256];
+        byte[] header = new byte[RECORD_OVERHEAD - 4];
+        ByteBuffer headerView = ByteBuffer.wrap(header);
+        try {
+            while (true) {
+                in.readFully(header);
+                byte type = header[0];
+                int id = headerView.getInt(1);
+                int length = headerView.getInt(5);
+                if ((type != INSERT && type != ERASE) || length < 0
+                    || good + RECORD_OVERHEAD + length > size) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                in.readFully(payload, 0, length);
+                checksum.reset();
+                checksum.update(header, 0, header.length);
+                checksum.update(payload, 0, length);
+                if (in.readInt() != (int) checksum.getValue()) {
+                    break;
+                }
+                if (type == INSERT) {
+                    dbInstance.addSerializedSeminar(id, payload, 0, length);
+                }
+                else {
+                    dbInstance.eraseSeminar(id);
+                }
+                good += RECORD_OVERHEAD + length;
+                count++;
+            }
+        }
+        catch (EOFException torn) {
+            // The tail of the log was never completely written
+        }
+        channel.truncate(good);
+        channel.position(good);
+        synchronized (this) {
+            appendedLsn = good;
+            durableLsn = good;
+            started = true;
+        }
+        flusher.start();
+        return count;
+    }
+
+    /**
+     * Appends an insert record.
+     *
+     * @param id ID of the inserted seminar.
+     * @param data Array holding the serialized seminar.
+     * @param offset Position of the serialized seminar in the array.
+     * @param length Length of the serialized seminar.
+     * @return The log position the record ends at.
+     */
+    public long appendInsert(int id, byte[] data, int offset, int length) {
+        return append(INSERT, id, data, offset, length);
+    }
+
+    /**
+     * Appends an erase record.
+     *
+     * @param id ID of the erased seminar.
+     * @return The log position the record ends at.
+     */
+    public long appendErase(int id) {
+        return append(ERASE, id, null, 0, 0);
+    }
+
+    private synchronized long append(byte type, int id, byte[] data,
+        int offset, int length) {
+        checkFailure();
+        if (!started || closed) {
+            throw new IllegalStateException("Log is not open for appends");
+        }
+        int size = RECORD_OVERHEAD + length;
+        if (pending.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(
+                Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.put(type).putInt(id).putInt(length);
+        if (length > 0) {
+            pending.put(data, offset, length);
+        }
+        checksum.reset();
+        checksum.update(pending.array(), start, size - 4);
+        pending.putInt((int) checksum.getValue());
+
+        if (start == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        appendedLsn += size;
+        if (pending.position() >= FLUSH_THRESHOLD) {
+            urgent = true;
+        }
+        notifyAll();
+        return appendedLsn;
+    }
+
+    /**
+     * Waits until the log is durable up to the given position, flushing
+     * immediately instead of waiting out the latency window.
+     *
+     * @param lsn A position returned by an append.
+     * @throws IOException if writing the log failed.
+     */
+    public synchronized void awaitDurable(long lsn) throws IOException {
+        while (durableLsn < lsn && failure == null) {
+            urgent = true;
+            notifyAll();
+            try {
+                wait();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is durable.
+     *
+     * @throws IOException if writing the log failed.
+     */
+    public void commit() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appendedLsn;
+        }
+        awaitDurable(target);
+    }
+
+    /**
+     * Gets the position up to which the log is known to be durable.
+     *
+     * @return The durable log position.
+     */
+    public synchronized long durablePosition() {
+        return durableLsn;
+    }
+
+    /**
+     * Makes everything durable, stops the flusher and closes the file.
+     *
+     * @throws IOException if the final flush failed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (flusher.isAlive()) {
+                commit();
+            }
+        }
+        finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                flusher.join();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Body of the flusher thread: waits for records, lets the latency
+     * window fill up, then writes and forces everything in one go.
+     */
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long target;
+            synchronized (this) {
+                while (!closed && !readyToFlush()) {
+                    waitForWork();
+                }
+                if (pending.position() == 0) {
+                    return; // closed with nothing left to write
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                target = appendedLsn;
+                urgent = false;
+            }
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            }
+            catch (IOException ex) {
+                error = ex;
+            }
+            batch.clear();
+            synchronized (this) {
+                if (error != null) {
+                    failure = error;
+                }
+                else {
+                    durableLsn = target;
+                }
+                notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean readyToFlush() {
+        if (pending.position() == 0) {
+            return false;
+        }
+        return urgent
+            || System.nanoTime() - firstPendingNanos >= maxLatencyNanos;
+    }
+
+    private void waitForWork() {
+        try {
+            if (pending.position() == 0) {
+                wait();
+            }
+            else {
+                long left = maxLatencyNanos
+                    - (System.nanoTime() - firstPendingNanos);
+                wait(Math.max(1, left / 1_000_000L),
+                    (int) Math.max(0, left % 1_000_000L));
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import student.TestCase;
+
+/**
+ * Test class for WriteAheadLog
+ * 
+ * @author brettn
+ * @version 09/15/2023
+ */
+public class WriteAheadLogTest extends TestCase {
+
+    private File logFile;
+    private Seminar seminar;
+
+    /**
+     * Sets up a fresh log file and a seminar before each test.
+     */
+    @Override
+    public void setUp() {
+        logFile = new File("test.wal");
+        logFile.delete();
+        seminar = new Seminar(1, "Title", "2405231000", 75, (short) 15,
+            (short) 33, 125, new String[] { "A", "B" }, "Desc");
+    }
+
+    /**
+     * Removes the log file after each test.
+     */
+    @Override
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    /**
+     * Tests that a restarted database sees every logged mutation and
+     * that replay prints nothing.
+     * 
+     * @throws Exception if the log cannot be used
+     */
+    public void testRecovery() throws Exception {
+        SeminarDB first = new SeminarDB(256, 4);
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            assertEquals(0, first.recover(log));
+            first.addSeminar(1, seminar);
+            first.addSeminar(2, seminar);
+            first.addSeminar(3, seminar);
+            first.eraseSeminar(2);
+            log.commit();
+            assertEquals(logFile.length(), log.durablePosition());
+        }
+        systemOut().clearHistory();
+
+        SeminarDB second = new SeminarDB(256, 4);
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            assertEquals(4, second.recover(log));
+        }
+        assertEquals("", systemOut().getHistory());
+        assertTrue(second.findSeminar(1));
+        assertFalse(second.findSeminar(2));
+        assertTrue(second.findSeminar(3));
+    }
+
+    /**
+     * Tests that a torn record at the end of the log is dropped.
+     * 
+     * @throws Exception if the log cannot be used
+     */
+    public void testTornTail() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            new SeminarDB(256, 4).recover(log);
+            log.appendInsert(1, seminar.serialize(), 0,
+                seminar.serialize().length);
+            log.appendErase(1);
+        }
+        long intact = logFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(intact - 3);
+        }
+
+        SeminarDB db = new SeminarDB(256, 4);
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            assertEquals(1, db.recover(log));
+        }
+        assertTrue(db.findSeminar(1));
+        assertEquals(intact - 13, logFile.length());
+    }
+
+    /**
+     * Tests that appends are refused before the log is replayed.
+     * 
+     * @throws Exception if the log cannot be used
+     */
+    public void testAppendBeforeReplay() throws Exception {
+        Exception thrown = null;
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            log.appendErase(1);
+        }
+        catch (IllegalStateException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+    }
+
+    /**
+     * Tests that a replay position past the end of the log, such as one
+     * recorded with a longer log, is refused rather than moved to the end.
+     * 
+     * @throws Exception if the log cannot be used
+     */
+    public void testReplayPastEnd() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            new SeminarDB(256, 4).recover(log);
+            log.appendErase(1);
+        }
+        long length = logFile.length();
+        SeminarDB db = new SeminarDB(256, 4);
+        IOException thrown = null;
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            log.replay(db, length + 1);
+        }
+        catch (IOException ex) {
+            thrown = ex;
+        }
+        assertNotNull(thrown);
+        assertEquals("Log ends at " + length + ", before the replay "
+            + "position " + (length + 1), thrown.getMessage());
+        assertEquals(length, logFile.length());
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1)) {
+            assertEquals(1, log.replay(db, 0));
+        }
+    }
+
+    /**
+     * Tests that inserts and erases the log refuses are undone, leaving
+     * memory holding what recovery from the log would rebuild.
+     * 
+     * @throws Exception if the log cannot be used
+     */
+    public void testAppendFailure() throws Exception {
+        SeminarDB db = new SeminarDB(256, 4);
+        WriteAheadLog log = new WriteAheadLog(logFile, 1);
+        db.recover(log);
+        assertTrue(db.addSeminar(1, seminar));
+        log.close();
+        systemOut().clearHistory();
+        db.listFreeBlocks();
+        String blocks = systemOut().getHistory();
+        systemOut().clearHistory();
+
+        assertFalse(db.addSeminar(2, seminar));
+        assertEquals(0, db.addSeminars(new int[] { 3 },
+            new Seminar[] { seminar }, 1));
+        assertFalse(db.eraseSeminar(1));
+        assertEquals("Log is not open for appends\n"
+            + "Log is not open for appends\n"
+            + "Log is not open for appends\n", systemOut().getHistory());
+        systemOut().clearHistory();
+        db.listFreeBlocks();
+        assertEquals(blocks, systemOut().getHistory());
+        assertFalse(db.findSeminar(2));
+        assertFalse(db.findSeminar(3));
+        assertTrue(db.findSeminar(1));
+    }
+}